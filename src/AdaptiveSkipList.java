@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A skip list that raises the towers of frequently read keys, so that they are found in
+ * fewer hops, and lowers them again when the keys cool off (a biased skip list).
+ *
+ * Gets stop as soon as they meet their key.  About one get in SAMPLE is counted, in a fixed
+ * table of counters indexed by the key's hash.  A key read a fraction f of the time should be
+ * found in about log(1/f) steps, so when a sampled key's tower is lower than
+ * height - log2(total / count), it is raised to that level (the search has just found its
+ * predecessors on every level, so that is cheap).  Every so often the counters are halved, so
+ * old heat fades, and raised towers whose keys have cooled are lowered again, never below
+ * their original height.
+ *
+ * The extra memory is bounded: the counter table, plus at most capacity raised towers (each
+ * with at most height extra pointers).  A removed node is forgotten at once, so it neither
+ * stays in memory nor takes the place of a hot key.  Gets move nodes, so, unlike a plain
+ * SkipList, even gets must not run concurrently with anything else.  Gets and removes do not
+ * update the cache, the profile or the operation counts, and the nodes are never compact.
+ */
+public class AdaptiveSkipList<K, V> extends SkipList<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * One get in this many is counted (a power of two).
+   */
+  static final int SAMPLE = 8;
+
+  /**
+   * The default maximum number of raised towers.
+   */
+  static final int DEFAULT_CAPACITY = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The sampled access counts, by hash of the key.
+   */
+  final int[] heat;
+
+  /**
+   * The sum of the counts.
+   */
+  long heatTotal = 0;
+
+  /**
+   * The state of the generator that picks which gets to count (an xorshift, which is much
+   * cheaper than a Random, and does not fall into step with periodic access patterns as a
+   * counter would).
+   */
+  int seed = 0x9E3779B9;
+
+  /**
+   * The number of samples since the counts were last halved.
+   */
+  int samples = 0;
+
+  /**
+   * The number of samples between halvings.
+   */
+  final int agePeriod;
+
+  /**
+   * The maximum number of raised towers.
+   */
+  final int capacity;
+
+  /**
+   * The raised nodes, with their original heights.
+   */
+  final IdentityHashMap<SLNode<K, V>, Integer> raised =
+      new IdentityHashMap<SLNode<K, V>, Integer>();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, list that raises at most DEFAULT_CAPACITY towers.
+   */
+  public AdaptiveSkipList(Comparator<K> comparator) {
+    this(comparator, DEFAULT_CAPACITY);
+  } // AdaptiveSkipList(Comparator<K>)
+
+  /**
+   * Create a new, empty, list that raises at most capacity towers.
+   */
+  public AdaptiveSkipList(Comparator<K> comparator, int capacity) {
+    super(comparator);
+    this.capacity = capacity;
+    this.heat = new int[Integer.highestOneBit(Math.max(1, 4 * capacity - 1)) << 1];
+    this.agePeriod = 4 * this.heat.length;
+  } // AdaptiveSkipList(Comparator<K>, int)
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  /**
+   * Get the value associated with key.  Stops as soon as it meets the key, on whatever level,
+   * which is what makes raising a tower pay off.
+   */
+  @Override
+  public V get(K key) {
+    int r = this.seed;
+    r ^= r << 13;
+    r ^= r >>> 17;
+    r ^= r << 5;
+    this.seed = r;
+    if ((r & (SAMPLE - 1)) == 0) {
+      // sampled gets descend all the way, so that we know where to link a raised tower
+      SLNode<K, V> x = descend(key);
+      if (x == null) {
+        return null;
+      } // if
+      sample(x);
+      return x.value;
+    } // if
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      SLNode<K, V> y;
+      while ((y = x.next(i)) != null) {
+        int c = comparator.compare(y.key, key);
+        if (c == 0) {
+          return (y.value == TOMBSTONE) ? null : y.value;
+        } else if (c > 0) {
+          break;
+        } // if/else
+        x = y;
+      } // while
+    } // for
+    return null;
+  } // get(K)
+
+  /**
+   * Remove the value with the given key, with a single descent (and forget its tower, if it
+   * was raised).
+   */
+  @Override
+  public V remove(K key) {
+    if (this.lazy) {
+      // the node stays, as a tombstone (see bury)
+      return super.remove(key);
+    } // if
+    SLNode<K, V> x = descend(key);
+    if (x == null) {
+      return null;
+    } // if
+    unlink(x);
+    return x.value;
+  } // remove(K)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  @Override
+  public int removeRange(K from, K to) {
+    int removed = super.removeRange(from, to);
+    if (removed > 0) {
+      forget(from, to);
+    } // if
+    return removed;
+  } // removeRange(K, K)
+
+  /**
+   * Move every key that is at least key into a new (plain) list, as in SkipList.  The moved
+   * towers keep their heights, but this list no longer lowers them.
+   */
+  @Override
+  public SkipList<K, V> split(K key) {
+    SkipList<K, V> result = super.split(key);
+    forget(key, null);
+    return result;
+  } // split(K)
+
+  /**
+   * Compact nodes cannot grow, so this list does not use them.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void enableCompactNodes() {
+    throw new UnsupportedOperationException("adaptive lists cannot use compact nodes");
+  } // enableCompactNodes()
+
+  /**
+   * Gets stop at the first node they meet with their key, which, with duplicate keys, might
+   * not be the first entry, so this list does not allow them.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void enableDuplicateKeys() {
+    throw new UnsupportedOperationException("adaptive lists cannot hold duplicate keys");
+  } // enableDuplicateKeys()
+
+  /**
+   * Get the number of towers currently raised.
+   */
+  public int raised() {
+    return this.raised.size();
+  } // raised()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Count a get of the node found by the latest descent, and raise its tower if it is now
+   * too low.
+   */
+  void sample(SLNode<K, V> x) {
+    int count = ++this.heat[slot(x.key)];
+    this.heatTotal++;
+    int top = x.levels() - 1;
+    int want = target(count);
+    // (if there is no room, wait until the next halving lowers some towers)
+    if (want > top && x instanceof SLNodeList
+        && (this.raised.containsKey(x) || this.raised.size() < this.capacity)) {
+      this.raised.putIfAbsent(x, top);
+      SLNodeList<K, V> node = (SLNodeList<K, V>) x;
+      for (int i = top + 1; i <= want; i++) {
+        node.next.add(this.path[i].next(i));
+        this.path[i].setNext(i, x);
+      } // for
+    } // if
+    // (last, since lowering towers spoils path)
+    if (++this.samples == this.agePeriod) {
+      age();
+    } // if
+  } // sample(SLNode)
+
+  /**
+   * Unlink a node found by the latest descent, forgetting its tower.
+   */
+  @Override
+  void unlink(SLNode<K, V> x) {
+    this.raised.remove(x);
+    super.unlink(x);
+  } // unlink(SLNode)
+
+  /**
+   * Unlink the first live node, forgetting its tower.  (Tombstones are never raised.)
+   */
+  @Override
+  SLNode<K, V> unlinkFirst() {
+    SLNode<K, V> x = super.unlinkFirst();
+    if (x != null) {
+      this.raised.remove(x);
+    } // if
+    return x;
+  } // unlinkFirst()
+
+  /**
+   * Turn a node into a tombstone, forgetting its tower.
+   */
+  @Override
+  void bury(SLNode<K, V> x) {
+    this.raised.remove(x);
+    super.bury(x);
+  } // bury(SLNode)
+
+  /**
+   * Forget the raised towers whose keys k have from <= k < to (either bound may be null, for
+   * no bound), in O(capacity).
+   */
+  void forget(K from, K to) {
+    this.raised.keySet().removeIf((x) -> (from == null || comparator.compare(x.key, from) >= 0)
+        && (to == null || comparator.compare(x.key, to) < 0));
+  } // forget(K, K)
+
+  /**
+   * Halve the counts, and lower the towers of keys that have cooled.
+   */
+  void age() {
+    this.samples = 0;
+    this.heatTotal = 0;
+    for (int i = 0; i < this.heat.length; i++) {
+      this.heat[i] >>= 1;
+      this.heatTotal += this.heat[i];
+    } // for
+    // counters are shared by many keys, so to judge whether a key has cooled, take off the
+    // count of an average counter
+    long mean = this.heatTotal / this.heat.length;
+    for (Map.Entry<SLNode<K, V>, Integer> entry :
+        new ArrayList<Map.Entry<SLNode<K, V>, Integer>>(this.raised.entrySet())) {
+      SLNode<K, V> x = entry.getKey();
+      int original = entry.getValue();
+      int want = Math.max(original, target((int) (this.heat[slot(x.key)] - mean)));
+      if (want < x.levels() - 1) {
+        lower(x, original, want);
+      } // if
+    } // for
+  } // age()
+
+  /**
+   * Lower the tower of a raised node to level want.
+   */
+  void lower(SLNode<K, V> x, int original, int want) {
+    if (descend(x.key) != x) {
+      // removed since
+      this.raised.remove(x);
+      return;
+    } // if
+    SLNodeList<K, V> node = (SLNodeList<K, V>) x;
+    for (int i = x.levels() - 1; i > want; i--) {
+      this.path[i].setNext(i, x.next(i));
+      node.next.remove(i);
+    } // for
+    if (want == original) {
+      this.raised.remove(x);
+    } // if
+    shrink();
+  } // lower(SLNode, int, int)
+
+  /**
+   * Find the level a key with the given count should reach: height - log2(total / count),
+   * rounded down.
+   */
+  int target(int count) {
+    if (count <= 1) {
+      return 0;
+    } // if
+    long ratio = Math.max(1, this.heatTotal / count);
+    int depth = 64 - Long.numberOfLeadingZeros(ratio - 1);
+    return Math.max(0, this.height - depth);
+  } // target(int)
+
+  /**
+   * Find a key's counter.
+   */
+  int slot(K key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & (this.heat.length - 1);
+  } // slot(K)
+
+} // class AdaptiveSkipList
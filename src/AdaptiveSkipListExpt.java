@@ -0,0 +1,75 @@
+import java.util.Random;
+
+/**
+ * Compare gets on a SkipList and an AdaptiveSkipList under skewed reads: a fixed Zipfian
+ * distribution, and a hot spot (a small set of keys taking most of the reads) that moves
+ * every so often.  Prints the time and comparator calls per get.
+ *
+ * Usage: java AdaptiveSkipListExpt [keys] [gets] [theta]
+ */
+public class AdaptiveSkipListExpt {
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+    int gets = (args.length > 1) ? Integer.parseInt(args[1]) : 4000000;
+    double theta = (args.length > 2) ? Double.parseDouble(args[2]) : 0.99;
+
+    // the keys, in a random order, so popular keys are spread through the list
+    Random random = new Random(41);
+    int[] keys = new int[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = i;
+    } // for
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int temp = keys[i];
+      keys[i] = keys[j];
+      keys[j] = temp;
+    } // for
+
+    // the reads: Zipfian, then a hot spot of 0.1% of the keys taking 90% of the reads,
+    // moving every gets/10 reads
+    ZipfianGenerator zipf = new ZipfianGenerator(n, theta, random);
+    int[] zipfian = new int[gets];
+    int[] shifting = new int[gets];
+    int hot = Math.max(1, n / 1000);
+    int base = 0;
+    for (int i = 0; i < gets; i++) {
+      zipfian[i] = keys[zipf.next()];
+      if (i % (gets / 10) == 0) {
+        base = random.nextInt(n - hot);
+      } // if
+      shifting[i] = keys[(random.nextInt(10) < 9) ? base + random.nextInt(hot)
+          : random.nextInt(n)];
+    } // for
+
+    for (String workload : new String[] {"zipfian", "shifting"}) {
+      int[] reads = workload.equals("zipfian") ? zipfian : shifting;
+      for (int round = 0; round < 3; round++) {
+        // the first rounds are warm-up
+        for (boolean adaptive : new boolean[] {false, true}) {
+          SkipListExpt.CountingComparator comparator = new SkipListExpt.CountingComparator();
+          SkipList<Integer, Integer> list = adaptive
+              ? new AdaptiveSkipList<Integer, Integer>(comparator)
+              : new SkipList<Integer, Integer>(comparator);
+          for (int i = 0; i < n; i++) {
+            list.set(i, i);
+          } // for
+          long[] count = comparator.counts.get();
+          count[0] = 0;
+          long sum = 0;
+          long start = System.nanoTime();
+          for (int key : reads) {
+            sum += list.get(key);
+          } // for
+          double ns = (double) (System.nanoTime() - start) / gets;
+          if (round == 2) {
+            System.out.printf("%-8s %-9s %6.1f ns/get, %5.1f compares/get (checksum %d)%n",
+                workload, adaptive ? "adaptive" : "static", ns, (double) count[0] / gets, sum);
+          } // if
+        } // for
+      } // for
+    } // for
+  } // main(String[])
+
+} // class AdaptiveSkipListExpt
@@ -0,0 +1,150 @@
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests of AdaptiveSkipList.
+ */
+public class AdaptiveSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    // (a small capacity, so towers are raised and lowered often)
+    return new AdaptiveSkipList<Integer, String>((i, j) -> i - j, 4);
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  /**
+   * Skewed gets mixed with sets and removes, against TreeMap.
+   */
+  @Test
+  public void testAgainstTreeMap() {
+    Random random = new Random(41);
+    AdaptiveSkipList<Integer, String> sl =
+        new AdaptiveSkipList<Integer, String>((i, j) -> i - j, 32);
+    TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+    for (int i = 0; i < 100000; i++) {
+      int key = (random.nextInt(4) == 0) ? random.nextInt(5000) : random.nextInt(20);
+      switch (random.nextInt(10)) {
+        case 0:
+          assertEquals(expected.remove(key), sl.remove(key));
+          break;
+        case 1:
+          assertEquals(expected.put(key, "v" + i), sl.set(key, "v" + i));
+          break;
+        default:
+          assertEquals(expected.get(key), sl.get(key));
+      } // switch
+      if (i % 10000 == 0) {
+        SkipListTests.assertWellFormed(sl);
+      } // if
+      assertTrue(sl.raised() <= 32);
+    } // for
+    SkipListTests.assertWellFormed(sl);
+    assertEquals(expected.size(), sl.size());
+    expected.forEach((k, v) -> assertEquals(v, sl.get(k)));
+  } // testAgainstTreeMap()
+
+  /**
+   * A hot key should be found in far fewer comparisons than a typical one, and should go
+   * back to its old height once it cools off.
+   */
+  @Test
+  public void testHotKeys() {
+    Random random = new Random(41);
+    int[] calls = new int[1];
+    AdaptiveSkipList<Integer, Integer> sl = new AdaptiveSkipList<Integer, Integer>((i, j) -> {
+      calls[0]++;
+      return i - j;
+    }, 16);
+    for (int i = 0; i < 20000; i++) {
+      sl.set(i, i);
+    } // for
+    SLNode<Integer, Integer> hot = sl.findNode(12345);
+    int original = hot.levels();
+    for (int i = 0; i < 20000; i++) {
+      sl.get((i % 2 == 0) ? 12345 : random.nextInt(20000));
+    } // for
+    assertTrue(hot.levels() > original);
+    calls[0] = 0;
+    sl.get(12345);
+    int hotCalls = calls[0];
+    calls[0] = 0;
+    for (int i = 0; i < 1000; i++) {
+      sl.get(random.nextInt(20000));
+    } // for
+    assertTrue(hotCalls * 2 < calls[0] / 1000);
+
+    // now another key is hot
+    for (int i = 0; i < 50000; i++) {
+      sl.get((i % 2 == 0) ? 777 : random.nextInt(20000));
+    } // for
+    assertEquals(original, hot.levels());
+    assertTrue(sl.findNode(777).levels() > 1);
+    SkipListTests.assertWellFormed(sl);
+  } // testHotKeys()
+
+  /**
+   * Removing a raised key, by any route, forgets its tower, so the room goes to other keys.
+   */
+  @Test
+  public void testRemoveForgets() {
+    Random random = new Random(41);
+    AdaptiveSkipList<Integer, Integer> sl =
+        new AdaptiveSkipList<Integer, Integer>((i, j) -> i - j, 4);
+    for (int i = 0; i < 20000; i++) {
+      sl.set(i, i);
+    } // for
+    int[] hot = {3, 5000, 10000, 15000};
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 20000; i++) {
+        sl.get(hot[i % hot.length]);
+      } // for
+      assertTrue(sl.raised() > 0);
+      switch (round) {
+        case 0:
+          for (int key : hot) {
+            sl.remove(key);
+          } // for
+          break;
+        case 1:
+          for (int key : hot) {
+            sl.compute(key, (k, v) -> null);
+          } // for
+          break;
+        case 2:
+          while (sl.size() > 0 && sl.peekFirst().getKey() <= hot[0]) {
+            sl.pollFirst();
+          } // while
+          sl.removeRange(hot[1], hot[3] + 1);
+          break;
+        case 3:
+          sl.split(hot[0]);
+          break;
+        default:
+          sl.enableLazyDeletes();
+          for (int key : hot) {
+            sl.remove(key);
+          } // for
+          sl.compact();
+      } // switch
+      assertEquals(0, sl.raised());
+      SkipListTests.assertWellFormed(sl);
+      // refill, and move the hot keys
+      for (int i = 0; i < 20000; i++) {
+        sl.set(i, i);
+      } // for
+      for (int i = 0; i < hot.length; i++) {
+        hot[i] = random.nextInt(20000);
+      } // for
+      Arrays.sort(hot);
+    } // for
+  } // testRemoveForgets()
+
+} // class AdaptiveSkipListTests
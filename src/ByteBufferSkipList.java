@@ -0,0 +1,309 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * A skip list keyed by the bytes of ByteBuffers, so keys can be looked up straight from
+ * network frames.  A key is the bytes between a buffer's position and limit, and keys are
+ * ordered lexicographically by unsigned byte.
+ *
+ * Lookups never copy or disturb the buffer passed in: a slice or view of a larger frame
+ * (heap or direct) works as a key as is, and is compared against the stored keys with the
+ * vectorized Arrays.compareUnsigned (or ByteBuffer.mismatch, for buffers without an
+ * accessible array).  Only inserting a new key copies its bytes, into an array the node owns,
+ * so callers may reuse their buffers afterwards.  The keys handed out by keys() and forEach
+ * are read-only views of those arrays.
+ */
+public class ByteBufferSkipList<V> implements SimpleMap<ByteBuffer, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The maximum level of a node.
+   */
+  static final int MAX_HEIGHT = SkipList.MAX_HEIGHT;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Pointers to all the front elements.
+   */
+  BufNode<V> front;
+
+  /**
+   * The number of values in the list.
+   */
+  int size;
+
+  /**
+   * The current height of the list.
+   */
+  int height;
+
+  /**
+   * The probability used to determine the height of nodes.
+   */
+  double prob = 0.5;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, list.
+   */
+  public ByteBufferSkipList() {
+    this.front = new BufNode<V>(null, null, MAX_HEIGHT);
+    this.size = 0;
+    this.height = 0;
+  } // ByteBufferSkipList()
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public V set(ByteBuffer key, V value) {
+    BufNode<V>[] update = newUpdate();
+    BufNode<V> x = search(key, update);
+
+    // if the keys match, we update!
+    if (x != null) {
+      V temp = x.value;
+      x.value = value;
+      return temp;
+    } // if
+
+    // otherwise, we copy the key and insert a new node
+    int newLevel = randomLevel();
+    if (newLevel > this.height) {
+      for (int i = this.height + 1; i <= newLevel; i++) {
+        update[i] = this.front;
+      } // for
+      this.height = newLevel;
+    } // if
+    byte[] k = new byte[key.remaining()];
+    key.get(key.position(), k);
+    x = new BufNode<V>(k, value, newLevel);
+    for (int i = 0; i <= newLevel; i++) {
+      x.next[i] = update[i].next[i];
+      update[i].next[i] = x;
+    } // for
+    this.size++;
+    return null;
+  } // set(ByteBuffer, V)
+
+  @Override
+  public V get(ByteBuffer key) {
+    BufNode<V> x = search(key, null);
+    return (x == null) ? null : x.value;
+  } // get(ByteBuffer)
+
+  @Override
+  public int size() {
+    return this.size;
+  } // size()
+
+  @Override
+  public boolean containsKey(ByteBuffer key) {
+    return search(key, null) != null;
+  } // containsKey(ByteBuffer)
+
+  @Override
+  public V remove(ByteBuffer key) {
+    BufNode<V>[] update = newUpdate();
+    BufNode<V> x = search(key, update);
+    if (x == null) {
+      return null;
+    } // if
+    for (int i = 0; i < x.next.length; i++) {
+      update[i].next[i] = x.next[i];
+    } // for
+    while (this.height > 0 && this.front.next[this.height] == null) {
+      this.height--;
+    } // while
+    this.size--;
+    return x.value;
+  } // remove(ByteBuffer)
+
+  @Override
+  public Iterator<ByteBuffer> keys() {
+    return new Iterator<ByteBuffer>() {
+      Iterator<BufNode<V>> nit = ByteBufferSkipList.this.nodes();
+
+      @Override
+      public boolean hasNext() {
+        return nit.hasNext();
+      } // hasNext()
+
+      @Override
+      public ByteBuffer next() {
+        return ByteBuffer.wrap(nit.next().key).asReadOnlyBuffer();
+      } // next()
+    };
+  } // keys()
+
+  @Override
+  public Iterator<V> values() {
+    return new Iterator<V>() {
+      Iterator<BufNode<V>> nit = ByteBufferSkipList.this.nodes();
+
+      @Override
+      public boolean hasNext() {
+        return nit.hasNext();
+      } // hasNext()
+
+      @Override
+      public V next() {
+        return nit.next().value;
+      } // next()
+    };
+  } // values()
+
+  @Override
+  public void forEach(BiConsumer<? super ByteBuffer, ? super V> action) {
+    for (BufNode<V> x = this.front.next[0]; x != null; x = x.next[0]) {
+      action.accept(ByteBuffer.wrap(x.key).asReadOnlyBuffer(), x.value);
+    } // for
+  } // forEach(BiConsumer)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make an array for the nodes we will have to update.
+   */
+  @SuppressWarnings("unchecked")
+  static <V> BufNode<V>[] newUpdate() {
+    return (BufNode<V>[]) new BufNode<?>[MAX_HEIGHT + 1];
+  } // newUpdate()
+
+  /**
+   * Pick a random level for a new node between 0 and MAX_HEIGHT.
+   */
+  int randomLevel() {
+    int newLevel = 0;
+    while (SkipList.rand.nextDouble() < this.prob) {
+      newLevel++;
+    } // while
+    return Math.min(newLevel, MAX_HEIGHT);
+  } // randomLevel()
+
+  /**
+   * Compare a stored key with the remaining bytes of a buffer, as unsigned bytes, without
+   * changing the buffer's position.
+   */
+  static int compare(byte[] key, ByteBuffer probe) {
+    if (probe.hasArray()) {
+      int from = probe.arrayOffset() + probe.position();
+      return Arrays.compareUnsigned(key, 0, key.length, probe.array(), from,
+          from + probe.remaining());
+    } // if
+    ByteBuffer k = ByteBuffer.wrap(key);
+    int i = k.mismatch(probe);
+    if (i < 0) {
+      return 0;
+    } else if (i < key.length && i < probe.remaining()) {
+      return Byte.compareUnsigned(key[i], probe.get(probe.position() + i));
+    } // if/else
+    // one key is a prefix of the other
+    return key.length - probe.remaining();
+  } // compare(byte[], ByteBuffer)
+
+  /**
+   * Find the node with the given key (or null, if there is none).  If update is not null,
+   * fill it with the last node before the key on each level.
+   */
+  BufNode<V> search(ByteBuffer key, BufNode<V>[] update) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    BufNode<V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next[i] != null && compare(x.next[i].key, key) < 0) {
+        x = x.next[i];
+      } // while
+      if (update != null) {
+        update[i] = x;
+      } // if
+    } // for
+    x = x.next[0];
+    return (x != null && compare(x.key, key) == 0) ? x : null;
+  } // search(ByteBuffer, BufNode[])
+
+  /**
+   * Get an iterator for all of the nodes.
+   */
+  Iterator<BufNode<V>> nodes() {
+    return new Iterator<BufNode<V>>() {
+
+      /**
+       * The next node to return.
+       */
+      BufNode<V> next = ByteBufferSkipList.this.front.next[0];
+
+      @Override
+      public boolean hasNext() {
+        return this.next != null;
+      } // hasNext()
+
+      @Override
+      public BufNode<V> next() {
+        if (this.next == null) {
+          throw new NoSuchElementException();
+        } // if
+        BufNode<V> temp = this.next;
+        this.next = this.next.next[0];
+        return temp;
+      } // next()
+    }; // new Iterator
+  } // nodes()
+
+} // class ByteBufferSkipList
+
+/**
+ * Nodes in a ByteBufferSkipList.
+ */
+class BufNode<V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The key (a copy the node owns).
+   */
+  byte[] key;
+
+  /**
+   * The value.
+   */
+  V value;
+
+  /**
+   * Pointers to the next nodes.
+   */
+  BufNode<V>[] next;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new node of height n.
+   */
+  @SuppressWarnings("unchecked")
+  BufNode(byte[] key, V value, int n) {
+    this.key = key;
+    this.value = value;
+    this.next = (BufNode<V>[]) new BufNode<?>[n + 1];
+  } // BufNode(byte[], V, int)
+
+} // BufNode<V>
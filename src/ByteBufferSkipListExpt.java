@@ -0,0 +1,80 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measure lookups of keys that arrive inside a network frame: copying each key into a
+ * String (for a SkipList<String, V>) or a byte[] (for a SkipList<byte[], V>), against looking
+ * it up in a ByteBufferSkipList through a reused view of the frame, which copies nothing.
+ *
+ * Usage: java ByteBufferSkipListExpt [keys] [lookups]
+ */
+public class ByteBufferSkipListExpt {
+
+  /**
+   * Build a key shaped like a session or cache key.
+   */
+  static String key(int i) {
+    return "tenant-" + (i % 13) + "/session/" + Integer.toHexString(i * 0x9E3779B1);
+  } // key(int)
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int lookups = (args.length > 1) ? Integer.parseInt(args[1]) : 2000000;
+    Random random = new Random(35);
+
+    SkipList<String, Integer> strings =
+        new SkipList<String, Integer>((s1, s2) -> s1.compareTo(s2));
+    SkipList<byte[], Integer> arrays = new SkipList<byte[], Integer>(Arrays::compareUnsigned);
+    ByteBufferSkipList<Integer> buffers = new ByteBufferSkipList<Integer>();
+    for (int i = 0; i < n; i++) {
+      String k = key(i);
+      strings.set(k, i);
+      arrays.set(k.getBytes(StandardCharsets.UTF_8), i);
+      buffers.set(ByteBuffer.wrap(k.getBytes(StandardCharsets.UTF_8)), i);
+    } // for
+
+    // one big "frame" of keys, with their offsets and lengths
+    int[] offsets = new int[lookups];
+    int[] lengths = new int[lookups];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lookups; i++) {
+      String k = key(random.nextInt(n));
+      offsets[i] = sb.length();
+      lengths[i] = k.length();
+      sb.append(k);
+    } // for
+    byte[] frame = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    for (int round = 0; round < 5; round++) {
+      // the first rounds are warm-up
+      long sum = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        sum += strings.get(new String(frame, offsets[i], lengths[i], StandardCharsets.UTF_8));
+      } // for
+      double stringNs = (double) (System.nanoTime() - start) / lookups;
+
+      start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        sum += arrays.get(Arrays.copyOfRange(frame, offsets[i], offsets[i] + lengths[i]));
+      } // for
+      double arrayNs = (double) (System.nanoTime() - start) / lookups;
+
+      ByteBuffer view = ByteBuffer.wrap(frame);
+      start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        view.limit(offsets[i] + lengths[i]).position(offsets[i]);
+        sum += buffers.get(view);
+      } // for
+      double bufferNs = (double) (System.nanoTime() - start) / lookups;
+
+      if (round == 4) {
+        System.out.printf("String copy %.1f ns/get, byte[] copy %.1f ns/get, "
+            + "ByteBuffer view %.1f ns/get (checksum %d)%n", stringNs, arrayNs, bufferNs, sum);
+      } // if
+    } // for
+  } // main(String[])
+
+} // class ByteBufferSkipListExpt
@@ -0,0 +1,117 @@
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests of the ByteBuffer-keyed skip lists.
+ */
+public class ByteBufferSkipListTests extends SimpleMapTests<ByteBuffer> {
+
+  @Override
+  SimpleMap<ByteBuffer, String> newMap() {
+    return new ByteBufferSkipList<String>();
+  } // newMap()
+
+  @Override
+  ByteBuffer key(int i) {
+    return ByteBuffer.allocate(4).putInt(0, i);
+  } // key(int)
+
+  /**
+   * Make a buffer holding the bytes of a string.
+   */
+  static ByteBuffer buf(String str) {
+    return ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8));
+  } // buf(String)
+
+  /**
+   * Get the remaining bytes of a buffer (without disturbing it).
+   */
+  static byte[] bytes(ByteBuffer buffer) {
+    byte[] result = new byte[buffer.remaining()];
+    buffer.duplicate().get(result);
+    return result;
+  } // bytes(ByteBuffer)
+
+  @Test
+  public void testSimple() {
+    ByteBufferSkipList<Integer> sl = new ByteBufferSkipList<Integer>();
+    assertNull(sl.set(buf("beta"), 2));
+    assertNull(sl.set(buf("alpha"), 1));
+    assertNull(sl.set(buf("alphabet"), 3));
+    assertEquals((Integer) 2, sl.set(buf("beta"), 4));
+    assertEquals((Integer) 4, sl.get(buf("beta")));
+    assertNull(sl.get(buf("alph")));
+    assertTrue(sl.containsKey(buf("alphabet")));
+    assertEquals((Integer) 1, sl.remove(buf("alpha")));
+    assertFalse(sl.containsKey(buf("alpha")));
+    assertEquals(2, sl.size());
+  } // testSimple()
+
+  /**
+   * Look up keys through slices of a larger frame, heap and direct, and make sure the list
+   * neither copies nor disturbs them, and does not depend on them after an insert.
+   */
+  @Test
+  public void testSlices() {
+    ByteBufferSkipList<String> sl = new ByteBufferSkipList<String>();
+    byte[] frame = "HDR|user:42|user:7|TRL".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer heap = ByteBuffer.wrap(frame, 4, 7);
+    sl.set(heap, "forty-two");
+    assertEquals(4, heap.position());
+    // reusing the frame must not change the stored key
+    frame[9] = '9';
+    assertEquals("forty-two", sl.get(buf("user:42")));
+    assertNull(sl.get(buf("user:92")));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+    direct.put("HDR|user:42|user:7|TRL".getBytes(StandardCharsets.UTF_8));
+    direct.position(4).limit(11);
+    ByteBuffer slice = direct.slice();
+    assertEquals("forty-two", sl.get(slice));
+    assertEquals(0, slice.position());
+    assertEquals(7, slice.remaining());
+
+    Iterator<ByteBuffer> keys = sl.keys();
+    ByteBuffer key = keys.next();
+    assertTrue(key.isReadOnly());
+    key.get(); // moving our view must not affect the list
+    assertEquals("forty-two", sl.get(buf("user:42")));
+  } // testSlices()
+
+  /**
+   * Keys must be ordered by unsigned byte, with prefixes first, just like
+   * Arrays.compareUnsigned.
+   */
+  @Test
+  public void testRandomAgainstTreeMap() {
+    Random random = new Random(35);
+    ByteBufferSkipList<Integer> sl = new ByteBufferSkipList<Integer>();
+    TreeMap<byte[], Integer> expected = new TreeMap<byte[], Integer>(Arrays::compareUnsigned);
+    for (int i = 0; i < 5000; i++) {
+      byte[] key = new byte[random.nextInt(4)];
+      for (int j = 0; j < key.length; j++) {
+        key[j] = (byte) (random.nextInt(4) * 85); // 0, 85, 170, 255
+      } // for
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), sl.remove(ByteBuffer.wrap(key)));
+      } else {
+        assertEquals(expected.put(key, i), sl.set(ByteBuffer.wrap(key), i));
+      } // if/else
+    } // for
+    assertEquals(expected.size(), sl.size());
+    Iterator<ByteBuffer> keys = sl.keys();
+    for (Map.Entry<byte[], Integer> entry : expected.entrySet()) {
+      assertArrayEquals(entry.getKey(), bytes(keys.next()));
+      assertEquals(entry.getValue(), sl.get(ByteBuffer.wrap(entry.getKey())));
+    } // for
+    assertFalse(keys.hasNext());
+  } // testRandomAgainstTreeMap()
+
+} // class ByteBufferSkipListTests
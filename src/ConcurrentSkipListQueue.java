@@ -0,0 +1,333 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * A priority queue that many threads can add to and poll from without taking a lock (say,
+ * the deadlines of a scheduler's timers).  Keys may repeat; entries with equal keys come out
+ * in the order they were added.
+ *
+ * This is Herlihy and Shavit's lock-free skip list, used as a queue.  Each pointer carries a
+ * mark, and a node whose level-0 pointer is marked has been taken.  pollFirst walks level 0
+ * from the front and claims the first unmarked node with one compare-and-set, so pollers
+ * racing for the same node cost each other a failed CAS and a step, not a search.  It then
+ * marks the node's other levels and unlinks it from the head, which is usually its
+ * predecessor on every level; when it is not, a search unlinks it (searches unlink every
+ * marked node they pass).  Every add gets a sequence number, which breaks ties between
+ * equal keys, so no two entries are ever equal.
+ *
+ * Polls are quiescently consistent rather than linearizable: a poll may miss an entry
+ * added, while it runs, ahead of the one it takes.  size() is exact only when nothing else
+ * is going on.
+ */
+public class ConcurrentSkipListQueue<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The highest level of any node.
+   */
+  static final int MAX_HEIGHT = SkipList.MAX_HEIGHT;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The comparator used to determine the ordering of keys.
+   */
+  final Comparator<K> comparator;
+
+  /**
+   * The front of the queue, which comes before every node.
+   */
+  final QNode<K, V> head;
+
+  /**
+   * The end of the queue, which comes after every node.
+   */
+  final QNode<K, V> tail;
+
+  /**
+   * The next sequence number.
+   */
+  final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * The number of entries.
+   */
+  final AtomicInteger size = new AtomicInteger();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, queue that orders keys using the specified comparator.
+   */
+  public ConcurrentSkipListQueue(Comparator<K> comparator) {
+    this.comparator = comparator;
+    this.tail = new QNode<K, V>(null, null, Long.MAX_VALUE, MAX_HEIGHT, null);
+    this.head = new QNode<K, V>(null, null, Long.MIN_VALUE, MAX_HEIGHT, this.tail);
+  } // ConcurrentSkipListQueue(Comparator<K>)
+
+  // +----------------+----------------------------------------------
+  // | Public methods |
+  // +----------------+
+
+  /**
+   * Add an entry, after any with an equal key.
+   *
+   * @throws NullPointerException if the key is null.
+   */
+  public void add(K key, V value) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    long seq = this.sequence.getAndIncrement();
+    int top = randomLevel();
+    QNode<K, V>[] preds = newPath();
+    QNode<K, V>[] succs = newPath();
+    QNode<K, V> node;
+    // count it first, so that a poll never takes the count below zero
+    this.size.incrementAndGet();
+    do {
+      find(key, seq, preds, succs);
+      node = new QNode<K, V>(key, value, seq, top, null);
+      for (int i = 0; i <= top; i++) {
+        node.next[i].set(succs[i], false);
+      } // for
+    } while (!preds[0].next[0].compareAndSet(succs[0], node, false, false));
+    // now it is in the queue; link the levels above as a shortcut
+    boolean[] marked = {false};
+    for (int i = 1; i <= top; i++) {
+      while (true) {
+        QNode<K, V> succ = succs[i];
+        QNode<K, V> old = node.next[i].get(marked);
+        if (marked[0]) {
+          // already taken
+          return;
+        } else if (old != succ && !node.next[i].compareAndSet(old, succ, false, false)) {
+          continue;
+        } else if (preds[i].next[i].compareAndSet(succ, node, false, false)) {
+          break;
+        } // if/else
+        find(key, seq, preds, succs);
+      } // while
+    } // for
+  } // add(K, V)
+
+  /**
+   * Get the first entry (or null, if the queue is empty), without removing it.
+   */
+  public Map.Entry<K, V> peekFirst() {
+    boolean[] marked = {false};
+    QNode<K, V> x = this.head.next[0].getReference();
+    while (x != this.tail) {
+      QNode<K, V> succ = x.next[0].get(marked);
+      if (!marked[0]) {
+        return new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value);
+      } // if
+      x = succ;
+    } // while
+    return null;
+  } // peekFirst()
+
+  /**
+   * Remove and return the first entry (or null, if the queue is empty).
+   */
+  public Map.Entry<K, V> pollFirst() {
+    QNode<K, V> x = claim(this.head.next[0].getReference());
+    if (x == this.tail) {
+      return null;
+    } // if
+    this.size.decrementAndGet();
+    unlink(x);
+    return new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value);
+  } // pollFirst()
+
+  /**
+   * Remove and return up to n entries from the front of the queue, in order, claiming them in
+   * one walk.
+   */
+  public List<Map.Entry<K, V>> pollFirstBatch(int n) {
+    ArrayList<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>();
+    QNode<K, V> x = this.head.next[0].getReference();
+    while (result.size() < n && (x = claim(x)) != this.tail) {
+      this.size.decrementAndGet();
+      result.add(new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value));
+      QNode<K, V> succ = x.next[0].getReference();
+      unlink(x);
+      x = succ;
+    } // while
+    return result;
+  } // pollFirstBatch(int)
+
+  /**
+   * Get the number of entries.
+   */
+  public int size() {
+    return Math.max(0, this.size.get());
+  } // size()
+
+  /**
+   * Determine whether the queue is empty.
+   */
+  public boolean isEmpty() {
+    return peekFirst() == null;
+  } // isEmpty()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Take the first node, at or after x, that no one else has taken, and mark all its levels.
+   * Returns the node (or the tail, if there is none).
+   */
+  QNode<K, V> claim(QNode<K, V> x) {
+    boolean[] marked = {false};
+    while (x != this.tail) {
+      QNode<K, V> succ = x.next[0].get(marked);
+      if (marked[0]) {
+        x = succ;
+      } else if (x.next[0].compareAndSet(succ, succ, false, true)) {
+        for (int i = x.next.length - 1; i > 0; i--) {
+          succ = x.next[i].get(marked);
+          while (!marked[0]) {
+            x.next[i].compareAndSet(succ, succ, false, true);
+            succ = x.next[i].get(marked);
+          } // while
+        } // for
+        return x;
+      } // if/else
+      // (if the CAS failed, someone took x or added after it; look again)
+    } // while
+    return this.tail;
+  } // claim(QNode)
+
+  /**
+   * Unlink a claimed node.  Usually it is first on every level, so it can be unlinked from
+   * the head without searching; if not (other threads got in the way), search for it.
+   */
+  void unlink(QNode<K, V> x) {
+    for (int i = x.next.length - 1; i >= 0; i--) {
+      if (!this.head.next[i].compareAndSet(x, x.next[i].getReference(), false, false)) {
+        find(x.key, x.seq, newPath(), newPath());
+        return;
+      } // if
+    } // for
+  } // unlink(QNode)
+
+  /**
+   * Find, on each level, the last node before (key, seq) and the node after it, unlinking
+   * any marked nodes on the way.
+   */
+  void find(K key, long seq, QNode<K, V>[] preds, QNode<K, V>[] succs) {
+    boolean[] marked = {false};
+    retry:
+    while (true) {
+      QNode<K, V> pred = this.head;
+      for (int i = MAX_HEIGHT; i >= 0; i--) {
+        QNode<K, V> curr = pred.next[i].getReference();
+        while (true) {
+          QNode<K, V> succ = curr.next[i].get(marked);
+          while (marked[0]) {
+            if (!pred.next[i].compareAndSet(curr, succ, false, false)) {
+              continue retry;
+            } // if
+            curr = succ;
+            succ = curr.next[i].get(marked);
+          } // while
+          if (compare(curr, key, seq) < 0) {
+            pred = curr;
+            curr = succ;
+          } else {
+            break;
+          } // if/else
+        } // while
+        preds[i] = pred;
+        succs[i] = curr;
+      } // for
+      return;
+    } // while
+  } // find(K, long, QNode[], QNode[])
+
+  /**
+   * Compare a node (other than the head) with (key, seq).
+   */
+  int compare(QNode<K, V> x, K key, long seq) {
+    if (x == this.tail) {
+      return 1;
+    } // if
+    int c = this.comparator.compare(x.key, key);
+    return (c != 0) ? c : Long.compare(x.seq, seq);
+  } // compare(QNode, K, long)
+
+  /**
+   * Pick the top level of a new node (level i with probability 1/2^(i+1)).
+   */
+  static int randomLevel() {
+    int bits = ThreadLocalRandom.current().nextInt() | (1 << MAX_HEIGHT);
+    return Integer.numberOfTrailingZeros(bits);
+  } // randomLevel()
+
+  /**
+   * Make an array for one node per level.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> QNode<K, V>[] newPath() {
+    return (QNode<K, V>[]) new QNode<?, ?>[MAX_HEIGHT + 1];
+  } // newPath()
+
+} // class ConcurrentSkipListQueue
+
+
+/**
+ * Nodes in the concurrent queue.
+ */
+class QNode<K, V> {
+
+  /**
+   * The key.
+   */
+  final K key;
+
+  /**
+   * The value.
+   */
+  final V value;
+
+  /**
+   * The order in which the node was added (to break ties between equal keys).
+   */
+  final long seq;
+
+  /**
+   * The next node on each level, with marks.
+   */
+  final AtomicMarkableReference<QNode<K, V>>[] next;
+
+  /**
+   * Create a new node of height top + 1, pointing to succ on every level.
+   */
+  @SuppressWarnings("unchecked")
+  QNode(K key, V value, long seq, int top, QNode<K, V> succ) {
+    this.key = key;
+    this.value = value;
+    this.seq = seq;
+    this.next = (AtomicMarkableReference<QNode<K, V>>[]) new AtomicMarkableReference<?>[top + 1];
+    for (int i = 0; i <= top; i++) {
+      this.next[i] = new AtomicMarkableReference<QNode<K, V>>(succ, false);
+    } // for
+  } // QNode(K, V, long, int, QNode)
+
+} // class QNode
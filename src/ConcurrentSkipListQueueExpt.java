@@ -0,0 +1,108 @@
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Measure taking the earliest deadlines from a queue.  First, on one thread, emptying a
+ * SkipList by iterating to the first key and then calling remove (the old way), with
+ * pollFirst, and with pollFirstBatch.  Then a timer workload (take the earliest deadline, add
+ * a new one) on several threads, with ConcurrentSkipListQueue, a SkipList behind a lock, and
+ * java.util.concurrent.PriorityBlockingQueue.
+ *
+ * Usage: java ConcurrentSkipListQueueExpt [size] [ops] [threads]
+ */
+public class ConcurrentSkipListQueueExpt {
+
+  public static void main(String[] args) throws Exception {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    int ops = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+    int threads = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      double[] ns = new double[6];
+      for (int mode = 0; mode < 3; mode++) {
+        SkipList<Long, Integer> list = new SkipList<Long, Integer>((a, b) -> a.compareTo(b));
+        list.enableDuplicateKeys();
+        Random random = new Random(43);
+        for (int i = 0; i < n; i++) {
+          list.set((long) random.nextInt(n), i);
+        } // for
+        long start = System.nanoTime();
+        if (mode == 0) {
+          while (list.size() > 0) {
+            Iterator<Long> keys = list.keys();
+            list.remove(keys.next());
+          } // while
+        } else if (mode == 1) {
+          while (list.pollFirst() != null) {
+          } // while
+        } else {
+          while (!list.pollFirstBatch(64).isEmpty()) {
+          } // while
+        } // if/else
+        ns[mode] = (double) (System.nanoTime() - start) / n;
+      } // for
+      for (int mode = 3; mode < 6; mode++) {
+        ns[mode] = concurrent(mode, n, ops, threads);
+      } // for
+      if (round == 2) {
+        System.out.printf("emptying: iterate and remove %.1f ns/entry, pollFirst %.1f ns/entry, "
+            + "pollFirstBatch(64) %.1f ns/entry%n", ns[0], ns[1], ns[2]);
+        System.out.printf("%d threads: ConcurrentSkipListQueue %.1f ns/op, "
+            + "locked SkipList %.1f ns/op, PriorityBlockingQueue %.1f ns/op%n",
+            threads, ns[3], ns[4], ns[5]);
+      } // if
+    } // for
+  } // main(String[])
+
+  /**
+   * Run the workload on several threads, with the queue selected by mode.  Returns the time
+   * per operation (in wall-clock time, over all threads).
+   */
+  static double concurrent(int mode, int n, int ops, int threads) throws Exception {
+    ConcurrentSkipListQueue<Long, Integer> queue =
+        new ConcurrentSkipListQueue<Long, Integer>((a, b) -> a.compareTo(b));
+    SkipList<Long, Integer> list = new SkipList<Long, Integer>((a, b) -> a.compareTo(b));
+    list.enableDuplicateKeys();
+    PriorityBlockingQueue<Long> pbq = new PriorityBlockingQueue<Long>();
+    Random random = new Random(43);
+    for (int i = 0; i < n; i++) {
+      long deadline = random.nextInt(n);
+      queue.add(deadline, i);
+      list.set(deadline, i);
+      pbq.add(deadline);
+    } // for
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      int seed = t;
+      workers[t] = new Thread(() -> {
+        Random r = new Random(seed);
+        for (int i = 0; i < ops / threads; i++) {
+          long now;
+          if (mode == 3) {
+            now = queue.pollFirst().getKey();
+            queue.add(now + r.nextInt(n), i);
+          } else if (mode == 4) {
+            synchronized (list) {
+              now = list.pollFirst().getKey();
+              list.set(now + r.nextInt(n), i);
+            } // synchronized
+          } else {
+            now = pbq.poll();
+            pbq.add(now + r.nextInt(n));
+          } // if/else
+        } // for
+      });
+    } // for
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    } // for
+    for (Thread worker : workers) {
+      worker.join();
+    } // for
+    return (double) (System.nanoTime() - start) / ops;
+  } // concurrent(int, int, int, int)
+
+} // class ConcurrentSkipListQueueExpt
@@ -0,0 +1,130 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests of ConcurrentSkipListQueue.
+ */
+public class ConcurrentSkipListQueueTests {
+
+  /**
+   * One thread, with duplicate keys, against a TreeMap of lists.
+   */
+  @Test
+  public void testSequential() {
+    Random random = new Random(43);
+    ConcurrentSkipListQueue<Integer, Integer> queue =
+        new ConcurrentSkipListQueue<Integer, Integer>((i, j) -> i - j);
+    assertNull(queue.pollFirst());
+    assertTrue(queue.isEmpty());
+    TreeMap<Integer, ArrayList<Integer>> expected = new TreeMap<Integer, ArrayList<Integer>>();
+    int count = 0;
+    for (int i = 0; i < 20000; i++) {
+      if (random.nextInt(3) == 0) {
+        List<Map.Entry<Integer, Integer>> batch = queue.pollFirstBatch(random.nextInt(4));
+        for (Map.Entry<Integer, Integer> entry : batch) {
+          Map.Entry<Integer, ArrayList<Integer>> first = expected.firstEntry();
+          assertEquals(first.getKey(), entry.getKey());
+          assertEquals(first.getValue().remove(0), entry.getValue());
+          if (first.getValue().isEmpty()) {
+            expected.remove(first.getKey());
+          } // if
+          count--;
+        } // for
+      } else {
+        int key = random.nextInt(500);
+        queue.add(key, i);
+        expected.computeIfAbsent(key, (k) -> new ArrayList<Integer>()).add(i);
+        count++;
+      } // if/else
+      assertEquals(count, queue.size());
+      if (count > 0) {
+        assertEquals(expected.firstKey(), queue.peekFirst().getKey());
+      } // if
+    } // for
+    while (!expected.isEmpty()) {
+      Map.Entry<Integer, Integer> entry = queue.pollFirst();
+      assertEquals(expected.firstKey(), entry.getKey());
+      assertEquals(expected.firstEntry().getValue().remove(0), entry.getValue());
+      if (expected.firstEntry().getValue().isEmpty()) {
+        expected.pollFirstEntry();
+      } // if
+    } // while
+    assertNull(queue.pollFirst());
+    assertEquals(0, queue.size());
+    // everything has been unlinked, on every level
+    for (int i = 0; i <= ConcurrentSkipListQueue.MAX_HEIGHT; i++) {
+      assertSame(queue.tail, queue.head.next[i].getReference());
+    } // for
+  } // testSequential()
+
+  /**
+   * Producers and consumers at once: every entry must come out exactly once, and what is
+   * left at the end must come out in order.
+   */
+  @Test
+  public void testConcurrent() throws Exception {
+    int producers = 4;
+    int consumers = 4;
+    int each = 20000;
+    ConcurrentSkipListQueue<Integer, Integer> queue =
+        new ConcurrentSkipListQueue<Integer, Integer>((i, j) -> i - j);
+    AtomicInteger[] seen = new AtomicInteger[producers * each];
+    for (int i = 0; i < seen.length; i++) {
+      seen[i] = new AtomicInteger();
+    } // for
+    AtomicInteger producing = new AtomicInteger(producers);
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < producers; t++) {
+      int base = t * each;
+      threads.add(new Thread(() -> {
+        Random random = new Random(base);
+        for (int i = 0; i < each; i++) {
+          queue.add(random.nextInt(1000), base + i);
+        } // for
+        producing.decrementAndGet();
+      }));
+    } // for
+    for (int t = 0; t < consumers; t++) {
+      boolean batches = (t % 2 == 0);
+      threads.add(new Thread(() -> {
+        while (producing.get() > 0) {
+          if (batches) {
+            queue.pollFirstBatch(8).forEach((e) -> seen[e.getValue()].incrementAndGet());
+          } else {
+            Map.Entry<Integer, Integer> entry = queue.pollFirst();
+            if (entry != null) {
+              seen[entry.getValue()].incrementAndGet();
+            } // if
+          } // if/else
+        } // while
+      }));
+    } // for
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+
+    int left = queue.size();
+    Integer prev = null;
+    Map.Entry<Integer, Integer> entry;
+    while ((entry = queue.pollFirst()) != null) {
+      assertTrue(prev == null || prev <= entry.getKey());
+      prev = entry.getKey();
+      seen[entry.getValue()].incrementAndGet();
+      left--;
+    } // while
+    assertEquals(0, left);
+    for (int i = 0; i < seen.length; i++) {
+      assertEquals(1, seen[i].get());
+    } // for
+  } // testConcurrent()
+
+} // class ConcurrentSkipListQueueTests
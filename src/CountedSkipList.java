@@ -0,0 +1,416 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A skip list that knows how many keys each of its pointers skips over (its span), so it can
+ * count the keys in a range, or find the rank of a key, exactly in O(log n), rather than
+ * estimating as SkipList does.  (This is the "indexable skip list" of Pugh's cookbook.)
+ *
+ * Keeping the spans up to date costs a little on every change, and an int per pointer.  The
+ * spans are kept by set, remove, the compute methods, pollFirst, removeRange and concat; the
+ * lists made by split and the set operations are plain SkipLists.  Sets and removes do not
+ * update the profile or the operation counts.  Lazy deletes and compact nodes are not
+ * supported.
+ */
+public class CountedSkipList<K, V> extends SkipList<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The rank of each node in path (its position on level 0, where the front is 0), from the
+   * latest descent.
+   */
+  final int[] pathRank = new int[MAX_HEIGHT + 1];
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, list that orders keys using the specified comparator.
+   */
+  public CountedSkipList(Comparator<K> comparator) {
+    super(comparator);
+    this.front = new SLNodeCounted<K, V>(null, null, MAX_HEIGHT);
+  } // CountedSkipList(Comparator<K>)
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public V set(K key, V value) {
+    if (this.duplicates) {
+      addLast(key, value);
+      return null;
+    } // if
+    SLNode<K, V> x = descend(key);
+    if (x != null) {
+      V old = x.value;
+      replace(x, value);
+      return old;
+    } // if
+    insert(key, value);
+    return null;
+  } // set(K, V)
+
+  @Override
+  public V remove(K key) {
+    SLNode<K, V> x = descend(key);
+    if (x == null) {
+      return null;
+    } // if
+    unlink(x);
+    return x.value;
+  } // remove(K)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Count the keys less than key.
+   */
+  public int rank(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        rank += span(x, i);
+        x = x.next(i);
+      } // while
+    } // for
+    return rank;
+  } // rank(K)
+
+  /**
+   * Count the keys k with from <= k < to (either bound may be null, for no bound) exactly,
+   * in O(log n).
+   */
+  public int count(K from, K to) {
+    int hi = (to == null) ? this.size : rank(to);
+    int lo = (from == null) ? 0 : rank(from);
+    return Math.max(0, hi - lo);
+  } // count(K, K)
+
+  /**
+   * Count the keys in a range exactly (see count).
+   */
+  @Override
+  public long estimateCount(K from, K to) {
+    return count(from, to);
+  } // estimateCount(K, K)
+
+  /**
+   * Get a histogram with the nodes on one level as the bucket boundaries (as in SkipList),
+   * but with exact sizes, read from the spans, in time proportional to the number of nodes on
+   * the level.
+   */
+  @Override
+  public List<Bucket<K>> histogram(int level) {
+    if (level < 0 || level > MAX_HEIGHT) {
+      throw new IllegalArgumentException("no level " + level);
+    } // if
+    ArrayList<Bucket<K>> result = new ArrayList<Bucket<K>>();
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    while (x != null) {
+      SLNode<K, V> next = (level < x.levels()) ? x.next(level) : null;
+      int nextRank = (next == null) ? this.size + 1 : rank + span(x, level);
+      // the bucket runs from x (unless it is the front) up to next
+      int count = nextRank - rank - ((x == this.front) ? 1 : 0);
+      result.add(new Bucket<K>((x == this.front) ? null : x.key, count));
+      x = next;
+      rank = nextRank;
+    } // while
+    return result;
+  } // histogram(int)
+
+  /**
+   * Remove the keys k with from <= k < to (either bound may be null, for no bound), fixing
+   * the spans of the pointers that now jump the gap.
+   */
+  @Override
+  public int removeRange(K from, K to) {
+    int[] loRank = new int[MAX_HEIGHT + 1];
+    int[] hiRank = new int[MAX_HEIGHT + 1];
+    SLNode<K, V>[] lo = rankedPredecessors(from, false, loRank);
+    SLNode<K, V>[] hi = rankedPredecessors(to, true, hiRank);
+    int removed = super.removeRange(from, to);
+    if (removed > 0) {
+      for (int i = 0; i <= MAX_HEIGHT; i++) {
+        if (lo[i].next(i) != null) {
+          setSpan(lo[i], i, hiRank[i] + span(hi[i], i) - removed - loRank[i]);
+        } // if
+      } // for
+    } // if
+    return removed;
+  } // removeRange(K, K)
+
+  /**
+   * Move all of other's nodes onto the end of this list, leaving other empty (as in
+   * SkipList).  If other is also counted, its nodes keep their spans, and only the pointers
+   * that cross the join need new ones, so this takes O(log n + log m); otherwise each entry is
+   * added in turn.
+   *
+   * @throws IllegalArgumentException if the keys of the lists overlap.
+   */
+  @Override
+  public void concat(SkipList<K, V> other) {
+    if (other == this) {
+      throw new IllegalArgumentException("cannot concatenate a list with itself");
+    } // if
+    if (!(other instanceof CountedSkipList)) {
+      SLNode<K, V> first = other.front.next(0);
+      if (first == null) {
+        return;
+      } // if
+      SLNode<K, V> last = predecessors(null, true)[0];
+      if (this.size > 0 && comparator.compare(last.key, first.key) >= 0) {
+        throw new IllegalArgumentException("keys overlap");
+      } // if
+      other.forEach((k, v) -> insertLast(k, v));
+      other.removeRange(null, null);
+      return;
+    } // if
+    // a pointer that crosses the join runs to the end of this list, and then as far into
+    // other as the front of other's pointer on the same level
+    int[] ranks = new int[MAX_HEIGHT + 1];
+    SLNode<K, V>[] last = rankedPredecessors(null, true, ranks);
+    int[] spans = new int[MAX_HEIGHT + 1];
+    for (int i = 0; i <= MAX_HEIGHT; i++) {
+      spans[i] = this.size - ranks[i] + span(other.front, i);
+    } // for
+    int otherHeight = other.height;
+    super.concat(other);
+    for (int i = 0; i <= otherHeight; i++) {
+      if (last[i].next(i) != null) {
+        setSpan(last[i], i, spans[i]);
+      } // if
+    } // for
+  } // concat(SkipList)
+
+  /**
+   * Compact nodes have no room for spans, so this list does not use them.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void enableCompactNodes() {
+    throw new UnsupportedOperationException("counted lists cannot use compact nodes");
+  } // enableCompactNodes()
+
+  /**
+   * Tombstones would count as keys, so this list does not leave them.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  public void enableLazyDeletes() {
+    throw new UnsupportedOperationException("counted lists cannot delete lazily");
+  } // enableLazyDeletes()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the node with the given key (or null, if there is none), leaving the last node
+   * before it on each level in path, and their ranks in pathRank.
+   */
+  @Override
+  SLNode<K, V> descend(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        rank += span(x, i);
+        x = x.next(i);
+      } // while
+      this.path[i] = x;
+      this.pathRank[i] = rank;
+    } // for
+    x = x.next(0);
+    return (x == null || comparator.compare(x.key, key) != 0) ? null : x;
+  } // descend(K)
+
+  /**
+   * Add a new node after any with the same key (for duplicate keys).
+   */
+  @Override
+  void addLast(K key, V value) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) <= 0) {
+        rank += span(x, i);
+        x = x.next(i);
+      } // while
+      this.path[i] = x;
+      this.pathRank[i] = rank;
+    } // for
+    insert(key, value);
+  } // addLast(K, V)
+
+  /**
+   * Add an entry whose key is larger than every key in the list.
+   */
+  void insertLast(K key, V value) {
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null) {
+        rank += span(x, i);
+        x = x.next(i);
+      } // while
+      this.path[i] = x;
+      this.pathRank[i] = rank;
+    } // for
+    insert(key, value);
+  } // insertLast(K, V)
+
+  /**
+   * Insert a new node after the nodes in path, and split the spans of the pointers it cuts
+   * (or lengthen those of the pointers that pass over it).
+   */
+  @Override
+  void insert(K key, V value) {
+    int oldHeight = this.height;
+    super.insert(key, value);
+    SLNode<K, V> x = this.path[0].next(0);
+    int rank = this.pathRank[0] + 1;
+    for (int i = 0; i < x.levels(); i++) {
+      // (levels above the old height start at the front)
+      int before = (i > oldHeight) ? 0 : this.pathRank[i];
+      if (x.next(i) != null) {
+        setSpan(x, i, span(this.path[i], i) - (rank - before) + 1);
+      } // if
+      setSpan(this.path[i], i, rank - before);
+    } // for
+    for (int i = x.levels(); i <= this.height; i++) {
+      setSpan(this.path[i], i, span(this.path[i], i) + 1);
+    } // for
+  } // insert(K, V)
+
+  /**
+   * Unlink a node found by the latest descent, joining the spans on either side of it.
+   */
+  @Override
+  void unlink(SLNode<K, V> x) {
+    for (int i = 0; i < x.levels(); i++) {
+      setSpan(this.path[i], i, span(this.path[i], i) + span(x, i) - 1);
+    } // for
+    for (int i = x.levels(); i <= this.height; i++) {
+      setSpan(this.path[i], i, span(this.path[i], i) - 1);
+    } // for
+    super.unlink(x);
+  } // unlink(SLNode)
+
+  /**
+   * Unlink the first node (whose predecessor on every level is the front).
+   */
+  @Override
+  SLNode<K, V> unlinkFirst() {
+    SLNode<K, V> x = this.front.next(0);
+    if (x == null) {
+      return null;
+    } // if
+    for (int i = 0; i < x.levels(); i++) {
+      setSpan(this.front, i, span(this.front, i) + span(x, i) - 1);
+    } // for
+    for (int i = x.levels(); i <= this.height; i++) {
+      setSpan(this.front, i, span(this.front, i) - 1);
+    } // for
+    return super.unlinkFirst();
+  } // unlinkFirst()
+
+  /**
+   * Find, on each level, the last node whose key is less than key (as in predecessors), and
+   * its rank.
+   */
+  @SuppressWarnings("unchecked")
+  SLNode<K, V>[] rankedPredecessors(K key, boolean high, int[] ranks) {
+    SLNode<K, V>[] update = (SLNode<K, V>[]) new SLNode<?, ?>[MAX_HEIGHT + 1];
+    for (int i = MAX_HEIGHT; i > this.height; i--) {
+      update[i] = this.front;
+    } // for
+    SLNode<K, V> x = this.front;
+    int rank = 0;
+    for (int i = this.height; i >= 0; i--) {
+      if (key != null || high) {
+        while (x.next(i) != null
+            && (key == null || comparator.compare(x.next(i).key, key) < 0)) {
+          rank += span(x, i);
+          x = x.next(i);
+        } // while
+      } // if
+      update[i] = x;
+      ranks[i] = rank;
+    } // for
+    return update;
+  } // rankedPredecessors(K, boolean, int[])
+
+  /**
+   * Make a new node that has room for spans.
+   */
+  @Override
+  SLNode<K, V> newNode(K key, V value, int n) {
+    return new SLNodeCounted<K, V>(key, value, n);
+  } // newNode(K, V, int)
+
+  /**
+   * Get the number of level-0 steps that the pointer on level i of x takes (if it is not
+   * null).
+   */
+  static <K, V> int span(SLNode<K, V> x, int i) {
+    return ((SLNodeCounted<K, V>) x).span[i];
+  } // span(SLNode, int)
+
+  /**
+   * Set the span of the pointer on level i of x.
+   */
+  static <K, V> void setSpan(SLNode<K, V> x, int i, int span) {
+    ((SLNodeCounted<K, V>) x).span[i] = span;
+  } // setSpan(SLNode, int, int)
+
+} // class CountedSkipList
+
+
+/**
+ * Nodes that know the span of each of their pointers.
+ */
+class SLNodeCounted<K, V> extends SLNodeList<K, V> {
+
+  /**
+   * The number of level-0 steps each pointer takes.
+   */
+  final int[] span;
+
+  /**
+   * Create a new node of height n with the specified key and value.
+   */
+  SLNodeCounted(K key, V value, int n) {
+    super(key, value, n);
+    this.span = new int[n + 1];
+  } // SLNodeCounted(K, V, int)
+
+  @Override
+  long footprint() {
+    // one more field, and an int array beside the ArrayList's
+    long ints = ((SLNode.Layout.HEADER + 4 + 7) & ~7L) + 4L * this.span.length;
+    return objectSize(4, 0) + objectSize(1, 2) + arraySize(this.next.size()) + align(ints);
+  } // footprint()
+
+} // class SLNodeCounted
@@ -0,0 +1,79 @@
+import java.util.Random;
+
+/**
+ * Measure the ways to count the keys in a range: walking the range, estimating from the
+ * towers (SkipList.estimateCount), and exactly from the spans (CountedSkipList.count); and
+ * what keeping the spans costs sets.
+ *
+ * Usage: java CountedSkipListExpt [keys] [queries] [width]
+ */
+public class CountedSkipListExpt {
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+    int queries = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+    int width = (args.length > 2) ? Integer.parseInt(args[2]) : n / 10;
+
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      SkipList<Integer, Integer> plain = new SkipList<Integer, Integer>((a, b) -> a.compareTo(b));
+      CountedSkipList<Integer, Integer> counted =
+          new CountedSkipList<Integer, Integer>((a, b) -> a.compareTo(b));
+      double[] setNs = new double[2];
+      for (int mode = 0; mode < 2; mode++) {
+        SkipList<Integer, Integer> list = (mode == 0) ? plain : counted;
+        Random random = new Random(44);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+          list.set(random.nextInt(4 * n), i);
+        } // for
+        setNs[mode] = (double) (System.nanoTime() - start) / n;
+      } // for
+
+      double[] ns = new double[3];
+      double error = 0;
+      long[] estimates = new long[queries];
+      for (int mode = 0; mode < 3; mode++) {
+        Random random = new Random(45);
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+          int from = random.nextInt(4 * n);
+          int to = from + random.nextInt(8 * width);
+          if (mode == 0) {
+            sum += walk(plain, from, to);
+          } else if (mode == 1) {
+            estimates[q] = plain.estimateCount(from, to);
+          } else {
+            int actual = counted.count(from, to);
+            error += Math.abs(estimates[q] - actual) / (double) Math.max(1, actual);
+          } // if/else
+        } // for
+        ns[mode] = (double) (System.nanoTime() - start) / queries;
+        if (sum == 42) {
+          System.out.print("");
+        } // if
+      } // for
+      if (round == 2) {
+        System.out.printf("sets: SkipList %.1f ns, CountedSkipList %.1f ns%n",
+            setNs[0], setNs[1]);
+        System.out.printf("counting ranges of about %d keys: walk %.1f ns, estimateCount "
+            + "%.1f ns (mean error %.1f%%), count %.1f ns%n", width, ns[0], ns[1],
+            100 * error / queries, ns[2]);
+      } // if
+    } // for
+  } // main(String[])
+
+  /**
+   * Count the keys in a range by walking it.
+   */
+  static long walk(SkipList<Integer, Integer> list, int from, int to) {
+    long count = 0;
+    for (SLNode<Integer, Integer> x = list.ceilingNode(from); x != null && x.key < to;
+        x = x.next(0)) {
+      count++;
+    } // for
+    return count;
+  } // walk(SkipList, int, int)
+
+} // class CountedSkipListExpt
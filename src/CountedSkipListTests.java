@@ -0,0 +1,195 @@
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests of CountedSkipList.
+ */
+public class CountedSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    return new CountedSkipList<Integer, String>((i, j) -> i - j);
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  /**
+   * Check that the span of every pointer is the distance, on level 0, to the node it points
+   * to.
+   */
+  static <K, V> void assertSpans(CountedSkipList<K, V> sl) {
+    HashMap<SLNode<K, V>, Integer> ranks = new HashMap<SLNode<K, V>, Integer>();
+    int rank = 0;
+    for (SLNode<K, V> x = sl.front; x != null; x = x.next(0)) {
+      ranks.put(x, rank++);
+    } // for
+    assertEquals(sl.size() + 1, rank);
+    for (SLNode<K, V> x = sl.front; x != null; x = x.next(0)) {
+      for (int i = 0; i < x.levels(); i++) {
+        if (x.next(i) != null) {
+          assertEquals(ranks.get(x.next(i)) - ranks.get(x), CountedSkipList.span(x, i));
+        } // if
+      } // for
+    } // for
+  } // assertSpans(CountedSkipList)
+
+  /**
+   * Every kind of change, against TreeMap, checking the spans and the counts as we go.
+   */
+  @Test
+  public void testAgainstTreeMap() {
+    Random random = new Random(44);
+    CountedSkipList<Integer, Integer> sl =
+        new CountedSkipList<Integer, Integer>((i, j) -> i - j);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(3000);
+      switch (random.nextInt(12)) {
+        case 0:
+        case 1:
+          assertEquals(expected.remove(key), sl.remove(key));
+          break;
+        case 2:
+          assertEquals(expected.merge(key, i, (a, b) -> (a % 2 == 0) ? null : a + b),
+              sl.merge(key, i, (a, b) -> (a % 2 == 0) ? null : a + b));
+          break;
+        case 3:
+          if (random.nextInt(20) == 0) {
+            int to = key + random.nextInt(200);
+            int removed = expected.subMap(key, to).size();
+            expected.subMap(key, to).clear();
+            assertEquals(removed, sl.removeRange(key, to));
+          } else if (random.nextBoolean()) {
+            assertEquals(expected.pollFirstEntry(), sl.pollFirst());
+          } else {
+            assertEquals(Math.min(3, expected.size()), sl.pollFirstBatch(3).size());
+            for (int j = 0; j < 3 && !expected.isEmpty(); j++) {
+              expected.pollFirstEntry();
+            } // for
+          } // if/else
+          break;
+        default:
+          assertEquals(expected.put(key, i), sl.set(key, i));
+      } // switch
+      assertEquals(expected.size(), sl.size());
+      int from = random.nextInt(3000);
+      int to = from + random.nextInt(1000);
+      assertEquals(expected.subMap(from, to).size(), sl.count(from, to));
+      assertEquals(expected.headMap(from).size(), sl.rank(from));
+      if (i % 1000 == 0) {
+        assertSpans(sl);
+        SkipListTests.assertWellFormed(sl);
+      } // if
+    } // for
+    assertSpans(sl);
+    assertEquals(expected.size(), sl.count(null, null));
+    assertEquals(expected.tailMap(1000).size(), sl.estimateCount(1000, null));
+
+    // splitting leaves the spans of what is left alone
+    SkipList<Integer, Integer> top = sl.split(1500);
+    assertEquals(expected.tailMap(1500).size(), top.size());
+    assertEquals(expected.headMap(1500).size(), sl.count(null, null));
+    assertSpans(sl);
+  } // testAgainstTreeMap()
+
+  /**
+   * Histograms are exact, and their buckets start at the nodes of their level.
+   */
+  @Test
+  public void testHistogram() {
+    Random random = new Random(44);
+    CountedSkipList<Integer, Integer> sl =
+        new CountedSkipList<Integer, Integer>((i, j) -> i - j);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 10000; i++) {
+      int key = random.nextInt(100000);
+      sl.set(key, i);
+      expected.put(key, i);
+    } // for
+    for (int level = 0; level <= Math.min(sl.height + 1, SkipList.MAX_HEIGHT); level++) {
+      List<SkipList.Bucket<Integer>> buckets = sl.histogram(level);
+      long total = 0;
+      for (int b = 0; b < buckets.size(); b++) {
+        Integer lo = buckets.get(b).from();
+        Integer hi = (b + 1 < buckets.size()) ? buckets.get(b + 1).from() : null;
+        int actual = (lo == null)
+            ? ((hi == null) ? expected.size() : expected.headMap(hi).size())
+            : ((hi == null) ? expected.tailMap(lo).size() : expected.subMap(lo, hi).size());
+        assertEquals(actual, buckets.get(b).count());
+        total += buckets.get(b).count();
+      } // for
+      assertEquals(expected.size(), total);
+    } // for
+    if (sl.height < SkipList.MAX_HEIGHT) {
+      assertEquals(1, sl.histogram(sl.height + 1).size());
+    } // if
+  } // testHistogram()
+
+  /**
+   * Concatenating keeps the spans, whether the other list is counted or not.
+   */
+  @Test
+  public void testConcat() {
+    Random random = new Random(44);
+    for (int round = 0; round < 20; round++) {
+      CountedSkipList<Integer, Integer> low =
+          new CountedSkipList<Integer, Integer>((i, j) -> i - j);
+      SkipList<Integer, Integer> high = (round % 2 == 0)
+          ? new CountedSkipList<Integer, Integer>((i, j) -> i - j)
+          : new SkipList<Integer, Integer>((i, j) -> i - j);
+      TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+      int lowSize = (round < 4) ? round : random.nextInt(500);
+      for (int i = 0; i < lowSize; i++) {
+        int key = random.nextInt(10000);
+        low.set(key, i);
+        expected.put(key, i);
+      } // for
+      int highSize = random.nextInt(500);
+      for (int i = 0; i < highSize; i++) {
+        int key = 10000 + random.nextInt(10000);
+        high.set(key, i);
+        expected.put(key, i);
+      } // for
+      low.concat(high);
+      assertEquals(0, high.size());
+      assertEquals(expected.size(), low.size());
+      assertSpans(low);
+      SkipListTests.assertWellFormed(low);
+      for (int i = 0; i < 50; i++) {
+        int key = random.nextInt(20000);
+        assertEquals(expected.headMap(key).size(), low.rank(key));
+      } // for
+      // and the spans stay right as the list changes
+      for (int i = 0; i < 200; i++) {
+        int key = random.nextInt(20000);
+        if (random.nextBoolean()) {
+          assertEquals(expected.remove(key), low.remove(key));
+        } else {
+          assertEquals(expected.put(key, i), low.set(key, i));
+        } // if/else
+      } // for
+      assertSpans(low);
+    } // for
+
+    CountedSkipList<Integer, Integer> a = new CountedSkipList<Integer, Integer>((i, j) -> i - j);
+    CountedSkipList<Integer, Integer> b = new CountedSkipList<Integer, Integer>((i, j) -> i - j);
+    a.set(5, 5);
+    b.set(5, 5);
+    try {
+      a.concat(b);
+      fail("keys overlap");
+    } catch (IllegalArgumentException e) {
+      // expected
+    } // try/catch
+    assertSpans(a);
+    assertEquals(1, b.size());
+  } // testConcat()
+
+} // class CountedSkipListTests
@@ -0,0 +1,485 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * A deterministic 1-2-3 skip list (Munro, Papadakis and Sedgewick, "Deterministic skip
+ * lists", SODA 1992).  Instead of flipping coins for node heights, the list keeps every gap
+ * between two neighboring nodes of height h or more at one, two or three nodes of height
+ * h-1.  Inserts split gaps of three on the way down and removes widen gaps of one on the way
+ * down, so each operation makes a single top-down pass, and searches take O(log n)
+ * comparisons in the worst case, not just on average.
+ *
+ * We use the linked representation: each level is a list of nodes, and each node above the
+ * bottom level points down to the first node of its "run", the nodes of the level below up to
+ * and including the one with the same key.  (Runs hold two to four nodes, so gaps are one to
+ * three.)  The last node of every level has a key larger than any other, and the header is
+ * the single node on the top level.
+ */
+public class DeterministicSkipList<K, V> implements SimpleMap<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The key of the last node on each level, which is larger than every other key.  (Compared
+   * by identity, so it never reaches the comparator.)
+   */
+  static final Object INF = new Object();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The comparator used to determine the ordering in the list.
+   */
+  Comparator<K> comparator;
+
+  /**
+   * The node below the bottom level (which every bottom-level node points down to).
+   */
+  final DNode<K, V> bottom;
+
+  /**
+   * The node after the last node of every level.
+   */
+  final DNode<K, V> tail;
+
+  /**
+   * The single node on the top level.
+   */
+  DNode<K, V> header;
+
+  /**
+   * The number of values in the list.
+   */
+  int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new deterministic skip list that orders keys using the specified comparator.
+   */
+  @SuppressWarnings("unchecked")
+  public DeterministicSkipList(Comparator<K> comparator) {
+    this.comparator = comparator;
+    this.bottom = new DNode<K, V>(null, null, null, null);
+    this.bottom.right = this.bottom;
+    this.bottom.down = this.bottom;
+    this.tail = new DNode<K, V>((K) INF, null, null, null);
+    this.tail.right = this.tail;
+    this.header = new DNode<K, V>((K) INF, null, this.tail, this.bottom);
+    this.size = 0;
+  } // DeterministicSkipList(Comparator<K>)
+
+  /**
+   * Create a new deterministic skip list that uses the default SkipList comparator.
+   */
+  public DeterministicSkipList() {
+    this((k1, k2) -> k1.toString().compareTo(k2.toString()));
+  } // DeterministicSkipList()
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V set(K key, V value) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    DNode<K, V> x = this.header;
+    while (true) {
+      while (compare(key, x.key) > 0) {
+        x = x.right;
+      } // while
+      if (x.down == this.bottom) {
+        break;
+      } // if
+      DNode<K, V> first = x.down;
+      if (compare(first.right.right.key, x.key) < 0) {
+        // the run below has four nodes; raise the second, leaving two runs of two
+        DNode<K, V> middle = first.right;
+        x.right = new DNode<K, V>(x.key, null, x.right, middle.right);
+        x.key = middle.key;
+      } else {
+        x = first;
+      } // if/else
+    } // while
+
+    // x is the first bottom-level node whose key is at least key
+    V old = null;
+    if (compare(key, x.key) == 0) {
+      old = x.value;
+      x.value = value;
+    } else {
+      // insert before x by moving x's contents into a new node after it (so that the node
+      // above whose run starts at x still finds the smallest key there)
+      x.right = new DNode<K, V>(x.key, x.value, x.right, this.bottom);
+      x.key = key;
+      x.value = value;
+      this.size++;
+    } // if/else
+
+    // if the header was split, the list grows a level
+    if (this.header.right != this.tail) {
+      this.header = new DNode<K, V>((K) INF, null, this.tail, this.header);
+    } // if
+    return old;
+  } // set(K, V)
+
+  @Override
+  public V get(K key) {
+    DNode<K, V> x = search(key);
+    return (compare(key, x.key) == 0) ? x.value : null;
+  } // get(K)
+
+  @Override
+  public int size() {
+    return this.size;
+  } // size()
+
+  @Override
+  public boolean containsKey(K key) {
+    return compare(key, search(key).key) == 0;
+  } // containsKey(K)
+
+  @Override
+  public V remove(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    if (this.header.down == this.bottom) {
+      return null;
+    } // if
+
+    // the nodes above the bottom level that carry key (and must be renamed)
+    ArrayList<DNode<K, V>> copies = new ArrayList<DNode<K, V>>();
+    DNode<K, V> parent = this.header;
+    DNode<K, V> x;
+    while (true) {
+      x = parent.down;
+      while (compare(key, x.key) > 0) {
+        x = x.right;
+      } // while
+      if (x.down == this.bottom) {
+        break;
+      } // if
+      x = widen(parent, x);
+      if (compare(key, x.key) == 0) {
+        copies.add(x);
+      } // if
+      parent = x;
+    } // while
+
+    // x is the first bottom-level node in parent's run whose key is at least key
+    V result = null;
+    if (compare(key, x.key) == 0) {
+      result = x.value;
+      if (x == parent.down) {
+        // parent points at x, so remove x by absorbing the next node (x is not the last
+        // of its run, so no copies of its key are above)
+        DNode<K, V> next = x.right;
+        x.key = next.key;
+        x.value = next.value;
+        x.right = next.right;
+      } else {
+        DNode<K, V> prev = parent.down;
+        while (prev.right != x) {
+          prev = prev.right;
+        } // while
+        prev.right = x.right;
+        // x ended its run, so the copies above now stand for its predecessor
+        for (DNode<K, V> copy : copies) {
+          copy.key = prev.key;
+        } // for
+      } // if/else
+      this.size--;
+    } // if
+
+    // drop levels that no longer have a gap
+    while (this.header.down != this.bottom && this.header.down.right == this.tail) {
+      this.header = this.header.down;
+    } // while
+    return result;
+  } // remove(K)
+
+  @Override
+  public Iterator<K> keys() {
+    return new Iterator<K>() {
+      Iterator<DNode<K, V>> nit = DeterministicSkipList.this.nodes();
+
+      @Override
+      public boolean hasNext() {
+        return nit.hasNext();
+      } // hasNext()
+
+      @Override
+      public K next() {
+        return nit.next().key;
+      } // next()
+    };
+  } // keys()
+
+  @Override
+  public Iterator<V> values() {
+    return new Iterator<V>() {
+      Iterator<DNode<K, V>> nit = DeterministicSkipList.this.nodes();
+
+      @Override
+      public boolean hasNext() {
+        return nit.hasNext();
+      } // hasNext()
+
+      @Override
+      public V next() {
+        return nit.next().value;
+      } // next()
+    };
+  } // values()
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    Iterator<DNode<K, V>> it = nodes();
+    while (it.hasNext()) {
+      DNode<K, V> node = it.next();
+      action.accept(node.key, node.value);
+    } // while
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Get the number of levels above the bottom one.  (At most log_2 (n+1).)
+   */
+  public int height() {
+    int h = 0;
+    for (DNode<K, V> x = this.header; x.down != this.bottom; x = x.down) {
+      h++;
+    } // for
+    return h;
+  } // height()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compare two keys, either of which may be INF.
+   */
+  int compare(K k1, K k2) {
+    if (k1 == INF) {
+      return (k2 == INF) ? 0 : 1;
+    } else if (k2 == INF) {
+      return -1;
+    } // if/else
+    return this.comparator.compare(k1, k2);
+  } // compare(K, K)
+
+  /**
+   * Find the first bottom-level node whose key is at least key.
+   */
+  DNode<K, V> search(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    DNode<K, V> x = this.header;
+    while (true) {
+      while (compare(key, x.key) > 0) {
+        x = x.right;
+      } // while
+      if (x.down == this.bottom) {
+        return x;
+      } // if
+      x = x.down;
+    } // while
+  } // search(K)
+
+  /**
+   * Count the nodes in the run below x.
+   */
+  int run(DNode<K, V> x) {
+    int length = 1;
+    for (DNode<K, V> y = x.down; compare(y.key, x.key) != 0; y = y.right) {
+      length++;
+    } // for
+    return length;
+  } // run(DNode)
+
+  /**
+   * Make sure the run below x (which is in the run below parent) has at least three nodes,
+   * so that the level below can lose one.  Borrows a node from a neighboring run if it can
+   * spare one, and otherwise merges with the neighbor by lowering the node between them.
+   * Returns the node whose run now covers x's old run.
+   */
+  DNode<K, V> widen(DNode<K, V> parent, DNode<K, V> x) {
+    if (run(x) >= 3) {
+      return x;
+    } // if
+    if (compare(x.key, parent.key) != 0) {
+      // use the run to the right
+      DNode<K, V> next = x.right;
+      if (run(next) >= 3) {
+        DNode<K, V> first = next.down;
+        x.key = first.key;
+        next.down = first.right;
+      } else {
+        x.key = next.key;
+        x.right = next.right;
+      } // if/else
+      return x;
+    } // if
+
+    // x ends parent's run, so use the run to the left
+    DNode<K, V> prev = parent.down;
+    while (prev.right != x) {
+      prev = prev.right;
+    } // while
+    if (run(prev) >= 3) {
+      DNode<K, V> secondLast = prev.down;
+      while (secondLast.right.right != x.down) {
+        secondLast = secondLast.right;
+      } // while
+      prev.key = secondLast.key;
+      x.down = secondLast.right;
+      return x;
+    } // if
+    prev.key = x.key;
+    prev.right = x.right;
+    return prev;
+  } // widen(DNode, DNode)
+
+  /**
+   * Get an iterator for the bottom-level nodes, in order.
+   */
+  Iterator<DNode<K, V>> nodes() {
+    DNode<K, V> first = this.header;
+    while (first.down != this.bottom) {
+      first = first.down;
+    } // while
+    final DNode<K, V> start = first;
+    return new Iterator<DNode<K, V>>() {
+
+      /**
+       * The next node to return.
+       */
+      DNode<K, V> next = start;
+
+      @Override
+      public boolean hasNext() {
+        return this.next.key != INF;
+      } // hasNext()
+
+      @Override
+      public DNode<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        DNode<K, V> temp = this.next;
+        this.next = this.next.right;
+        return temp;
+      } // next()
+    }; // new Iterator
+  } // nodes()
+
+  /**
+   * Check the structure of the list, throwing an IllegalStateException if a run is the
+   * wrong length, a key is out of order, or the levels disagree.  (For testing.)
+   */
+  void checkInvariants() {
+    if (this.header.right != this.tail) {
+      throw new IllegalStateException("more than one node on the top level");
+    } // if
+    int count = 0;
+    for (DNode<K, V> level = this.header; level != this.bottom; level = level.down) {
+      if (level.down == this.bottom) {
+        for (DNode<K, V> x = level; x != this.tail; x = x.right) {
+          if (x.right != this.tail && compare(x.key, x.right.key) >= 0) {
+            throw new IllegalStateException("keys out of order at " + x.key);
+          } // if
+          count += (x.key == INF) ? 0 : 1;
+        } // for
+        continue;
+      } // if
+      DNode<K, V> below = level.down;
+      for (DNode<K, V> x = level; x != this.tail; x = x.right) {
+        if (x.down != below) {
+          throw new IllegalStateException("run of " + x.key + " does not follow the last");
+        } // if
+        int length = 0;
+        while (true) {
+          length++;
+          if (below == this.tail) {
+            throw new IllegalStateException("no copy of " + x.key + " below");
+          } // if
+          boolean last = compare(below.key, x.key) == 0;
+          below = below.right;
+          if (last) {
+            break;
+          } // if
+        } // while
+        if (length > 4 || (length < 2 && level != this.header)) {
+          throw new IllegalStateException("run of " + x.key + " has " + length + " nodes");
+        } // if
+      } // for
+      if (below != this.tail) {
+        throw new IllegalStateException("nodes left over below the last run");
+      } // if
+    } // for
+    if (count != this.size) {
+      throw new IllegalStateException("size is " + this.size + " but found " + count);
+    } // if
+  } // checkInvariants()
+
+} // class DeterministicSkipList
+
+/**
+ * Nodes in the deterministic skip list.
+ */
+class DNode<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The key.
+   */
+  K key;
+
+  /**
+   * The value (on the bottom level only).
+   */
+  V value;
+
+  /**
+   * The next node on the same level.
+   */
+  DNode<K, V> right;
+
+  /**
+   * The first node of this node's run on the level below.
+   */
+  DNode<K, V> down;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  DNode(K key, V value, DNode<K, V> right, DNode<K, V> down) {
+    this.key = key;
+    this.value = value;
+    this.right = right;
+    this.down = down;
+  } // DNode(K, V, DNode, DNode)
+
+} // class DNode
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compare the tail latency of the randomized SkipList and the deterministic 1-2-3 skip list.
+ * Each list is loaded with n keys, then runs a churn of gets, sets of new keys and removes;
+ * we time every operation separately and count its comparator calls, and report the p50,
+ * p99, p999 and maximum of each, per kind of operation.  The first few rounds (each on a
+ * fresh list) are warm-up.
+ *
+ * Usage: java DeterministicSkipListExpt [n] [ops] [rounds]
+ */
+public class DeterministicSkipListExpt {
+
+  /**
+   * Comparator calls so far.
+   */
+  static long comparisons = 0;
+
+  /**
+   * Names of the kinds of operations.
+   */
+  static final String[] KINDS = {"get", "set", "remove"};
+
+  /**
+   * Load a fresh map and run the churn, printing the statistics if print is true.
+   */
+  static void run(String label, SimpleMap<Integer, Integer> map, int n, int ops, long seed,
+      boolean print) {
+    Random random = new Random(seed);
+    for (int i = 0; i < n; i++) {
+      map.set(2 * random.nextInt(n), i);
+    } // for
+    long[][] nanos = new long[KINDS.length][ops];
+    long[][] cmps = new long[KINDS.length][ops];
+    int[] counts = new int[KINDS.length];
+    for (int i = 0; i < ops; i++) {
+      int kind = random.nextInt(KINDS.length);
+      int key = 2 * random.nextInt(n) + ((kind == 1) ? 1 : 0);
+      long c = comparisons;
+      long start = System.nanoTime();
+      if (kind == 0) {
+        map.get(key);
+      } else if (kind == 1) {
+        map.set(key, i);
+      } else {
+        map.remove(key);
+      } // if/else
+      nanos[kind][counts[kind]] = System.nanoTime() - start;
+      cmps[kind][counts[kind]] = comparisons - c;
+      counts[kind]++;
+    } // for
+    if (!print) {
+      return;
+    } // if
+    for (int kind = 0; kind < KINDS.length; kind++) {
+      long[] lat = Arrays.copyOf(nanos[kind], counts[kind]);
+      long[] cmp = Arrays.copyOf(cmps[kind], counts[kind]);
+      Arrays.sort(lat);
+      Arrays.sort(cmp);
+      System.out.printf("%-13s %-6s %8.2f %8.2f %8.2f %9.2f %6d %6d %6d %6d%n", label,
+          KINDS[kind], SkipListExpt.percentile(lat, 0.5) / 1e3,
+          SkipListExpt.percentile(lat, 0.99) / 1e3, SkipListExpt.percentile(lat, 0.999) / 1e3,
+          lat[lat.length - 1] / 1e3, SkipListExpt.percentile(cmp, 0.5),
+          SkipListExpt.percentile(cmp, 0.99), SkipListExpt.percentile(cmp, 0.999),
+          cmp[cmp.length - 1]);
+    } // for
+  } // run(String, SimpleMap, int, int, long, boolean)
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int ops = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+    int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+
+    Supplier<SimpleMap<Integer, Integer>> randomized = () -> new SkipList<Integer, Integer>(
+        (i, j) -> {
+          comparisons++;
+          return Integer.compare(i, j);
+        });
+    Supplier<SimpleMap<Integer, Integer>> deterministic =
+        () -> new DeterministicSkipList<Integer, Integer>((i, j) -> {
+          comparisons++;
+          return Integer.compare(i, j);
+        });
+
+    System.out.printf("%d keys, %d operations per round%n", n, ops);
+    System.out.println("list          op        p50(us)  p99(us) p999(us)   max(us)  "
+        + "c-p50  c-p99 c-p999  c-max");
+    for (int round = 0; round < rounds; round++) {
+      boolean last = (round == rounds - 1);
+      run("randomized", randomized.get(), n, ops, round, last);
+      run("deterministic", deterministic.get(), n, ops, round, last);
+    } // for
+  } // main(String[])
+
+} // class DeterministicSkipListExpt
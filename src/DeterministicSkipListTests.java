@@ -0,0 +1,102 @@
+import static org.junit.Assert.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests of the deterministic 1-2-3 skip lists.
+ */
+public class DeterministicSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    return new DeterministicSkipList<Integer, String>((i, j) -> i - j);
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  /**
+   * Make sure the list has exactly the same contents as a TreeMap.
+   */
+  static void assertSame(TreeMap<Integer, Integer> expected,
+      DeterministicSkipList<Integer, Integer> dsl) {
+    dsl.checkInvariants();
+    assertEquals(expected.size(), dsl.size());
+    Iterator<Integer> keys = dsl.keys();
+    Iterator<Integer> values = dsl.values();
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getKey(), keys.next());
+      assertEquals(entry.getValue(), values.next());
+      assertEquals(entry.getValue(), dsl.get(entry.getKey()));
+    } // for
+    assertFalse(keys.hasNext());
+  } // assertSame(TreeMap, DeterministicSkipList)
+
+  @Test
+  public void testSimple() {
+    DeterministicSkipList<String, String> dsl = new DeterministicSkipList<String, String>();
+    assertFalse(dsl.containsKey("hello"));
+    assertNull(dsl.remove("hello"));
+    assertNull(dsl.set("hello", "HELLO"));
+    assertNull(dsl.set("goodbye", "GOODBYE"));
+    assertEquals("HELLO", dsl.set("hello", "Hello"));
+    assertEquals("Hello", dsl.get("hello"));
+    assertTrue(dsl.containsKey("goodbye"));
+    assertNull(dsl.get("hi"));
+    assertEquals("GOODBYE", dsl.remove("goodbye"));
+    assertEquals("Hello", dsl.remove("hello"));
+    assertEquals(0, dsl.size());
+    assertEquals(0, dsl.height());
+    assertFalse(dsl.keys().hasNext());
+  } // testSimple()
+
+  @Test
+  public void testRandomAgainstTreeMap() {
+    Random random = new Random(123);
+    DeterministicSkipList<Integer, Integer> dsl =
+        new DeterministicSkipList<Integer, Integer>((i, j) -> i - j);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(1000);
+      if (random.nextInt(2) == 0) {
+        assertEquals(expected.remove(key), dsl.remove(key));
+      } else {
+        assertEquals(expected.put(key, i), dsl.set(key, i));
+      } // if/else
+      if (i % 97 == 0) {
+        dsl.checkInvariants();
+      } // if
+    } // for
+    assertSame(expected, dsl);
+  } // testRandomAgainstTreeMap()
+
+  /**
+   * Sorted input is the worst case for a randomized list that is unlucky; here it must still
+   * give a tree of logarithmic height, which must shrink as the list empties.
+   */
+  @Test
+  public void testHeight() {
+    DeterministicSkipList<Integer, Integer> dsl =
+        new DeterministicSkipList<Integer, Integer>((i, j) -> i - j);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    int n = 1 << 14;
+    for (int i = 0; i < n; i++) {
+      dsl.set(i, i);
+      expected.put(i, i);
+    } // for
+    assertSame(expected, dsl);
+    assertTrue(dsl.height() <= 14);
+    for (int i = 0; i < n - 3; i++) {
+      assertEquals((Integer) i, dsl.remove(i));
+      expected.remove(i);
+    } // for
+    assertSame(expected, dsl);
+    assertTrue(dsl.height() <= 2);
+  } // testHeight()
+
+} // class DeterministicSkipListTests
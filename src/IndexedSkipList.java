@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A skip list with secondary indexes: entries can also be found, in order, by keys derived
+ * from their values (say, all the sessions of one owner), in O(log n + k) rather than by
+ * scanning every value.
+ *
+ * Each index is a SkipList of (secondary key, primary key) pairs, ordered by secondary key
+ * and then by primary key, holding the entry's value, so a query finds its first pair with one
+ * search and then walks level 0.  A value whose secondary key is null is left out of that
+ * index.  Values must not be changed in place in ways that change their secondary keys; set a
+ * new value instead.
+ *
+ * Each entry remembers its secondary keys, so set and remove find the old index pairs
+ * without running the extractors again.  set and remove update the list and every index under
+ * one lock, and compute every new secondary key before changing anything, so an extractor that
+ * throws leaves the map as it was.  All methods are synchronized; keys and values iterate over
+ * copies taken under the lock.
+ */
+public class IndexedSkipList<K, V> implements SimpleMap<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The entries, with their secondary keys.
+   */
+  SkipList<K, Entry<V>> list;
+
+  /**
+   * The indexes.
+   */
+  ArrayList<Index<?>> indexes = new ArrayList<Index<?>>();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, map that orders keys using the specified comparator.
+   */
+  public IndexedSkipList(Comparator<K> comparator) {
+    this.list = new SkipList<K, Entry<V>>(comparator);
+  } // IndexedSkipList(Comparator<K>)
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public synchronized V set(K key, V value) {
+    Object[] secondaries = new Object[this.indexes.size()];
+    for (int i = 0; i < secondaries.length; i++) {
+      secondaries[i] = this.indexes.get(i).extractor.apply(value);
+    } // for
+    Entry<V> old = this.list.set(key, new Entry<V>(value, secondaries));
+    for (int i = 0; i < secondaries.length; i++) {
+      Index<?> index = this.indexes.get(i);
+      if (old != null) {
+        index.unlink(key, old.secondaries[i]);
+      } // if
+      index.link(key, value, secondaries[i]);
+    } // for
+    return (old == null) ? null : old.value;
+  } // set(K, V)
+
+  @Override
+  public synchronized V get(K key) {
+    Entry<V> entry = this.list.get(key);
+    return (entry == null) ? null : entry.value;
+  } // get(K)
+
+  @Override
+  public synchronized int size() {
+    return this.list.size();
+  } // size()
+
+  @Override
+  public synchronized boolean containsKey(K key) {
+    return this.list.containsKey(key);
+  } // containsKey(K)
+
+  @Override
+  public synchronized V remove(K key) {
+    Entry<V> old = this.list.remove(key);
+    if (old == null) {
+      return null;
+    } // if
+    for (int i = 0; i < this.indexes.size(); i++) {
+      this.indexes.get(i).unlink(key, old.secondaries[i]);
+    } // for
+    return old.value;
+  } // remove(K)
+
+  @Override
+  public synchronized V compute(K key,
+      BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return SimpleMap.super.compute(key, remapping);
+  } // compute(K, BiFunction)
+
+  /**
+   * Iterate over the keys as they are now.  (This copies them, in O(n), so that later changes
+   * cannot disturb the iteration.)
+   */
+  @Override
+  public synchronized Iterator<K> keys() {
+    ArrayList<K> keys = new ArrayList<K>(this.list.size());
+    this.list.forEach((k, e) -> keys.add(k));
+    return keys.iterator();
+  } // keys()
+
+  /**
+   * Iterate over the values as they are now (copying them, as keys does).
+   */
+  @Override
+  public synchronized Iterator<V> values() {
+    ArrayList<V> values = new ArrayList<V>(this.list.size());
+    this.list.forEach((k, e) -> values.add(e.value));
+    return values.iterator();
+  } // values()
+
+  @Override
+  public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+    this.list.forEach((k, e) -> action.accept(k, e.value));
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Add an index on the keys that extractor derives from values, ordered by comparator, and
+   * fill it from the entries already in the map.  (If extractor throws, the map is left as it
+   * was.)
+   */
+  public synchronized <S> Index<S> addIndex(Function<? super V, ? extends S> extractor,
+      Comparator<S> comparator) {
+    Index<S> index = new Index<S>(extractor, comparator);
+    ArrayList<Object> secondaries = new ArrayList<Object>(this.list.size());
+    this.list.forEach((k, e) -> secondaries.add(extractor.apply(e.value)));
+    int n = this.indexes.size();
+    Iterator<Object> it = secondaries.iterator();
+    this.list.forEach((k, e) -> {
+      e.secondaries = Arrays.copyOf(e.secondaries, n + 1);
+      e.secondaries[n] = it.next();
+      index.link(k, e.value, e.secondaries[n]);
+    });
+    this.indexes.add(index);
+    return index;
+  } // addIndex(Function, Comparator)
+
+  /**
+   * Stop maintaining an index.
+   */
+  public synchronized void dropIndex(Index<?> index) {
+    int i = this.indexes.indexOf(index);
+    if (i < 0) {
+      return;
+    } // if
+    this.indexes.remove(i);
+    this.list.forEach((k, e) -> {
+      Object[] secondaries = new Object[e.secondaries.length - 1];
+      System.arraycopy(e.secondaries, 0, secondaries, 0, i);
+      System.arraycopy(e.secondaries, i + 1, secondaries, i, secondaries.length - i);
+      e.secondaries = secondaries;
+    });
+  } // dropIndex(Index)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A value and its secondary keys (one per index, in the order of indexes).
+   */
+  static class Entry<V> {
+
+    /**
+     * The value.
+     */
+    final V value;
+
+    /**
+     * The secondary keys of the value.
+     */
+    Object[] secondaries;
+
+    Entry(V value, Object[] secondaries) {
+      this.value = value;
+      this.secondaries = secondaries;
+    } // Entry(V, Object[])
+  } // class Entry
+
+  /**
+   * A secondary key paired with a primary key.  A null primary key comes before all others,
+   * so it marks where the pairs for a secondary key start.
+   */
+  static class IndexKey<S, K> {
+
+    /**
+     * The secondary key.
+     */
+    final S secondary;
+
+    /**
+     * The primary key.
+     */
+    final K primary;
+
+    IndexKey(S secondary, K primary) {
+      this.secondary = secondary;
+      this.primary = primary;
+    } // IndexKey(S, K)
+  } // class IndexKey
+
+  /**
+   * An index on the keys derived from the values by an extractor.
+   */
+  public class Index<S> {
+
+    /**
+     * Derives secondary keys from values.
+     */
+    final Function<? super V, ? extends S> extractor;
+
+    /**
+     * Orders the secondary keys.
+     */
+    final Comparator<S> comparator;
+
+    /**
+     * The (secondary key, primary key) pairs, with the values.
+     */
+    final SkipList<IndexKey<S, K>, V> entries;
+
+    Index(Function<? super V, ? extends S> extractor, Comparator<S> comparator) {
+      this.extractor = extractor;
+      this.comparator = comparator;
+      Comparator<K> primary = IndexedSkipList.this.list.comparator;
+      this.entries = new SkipList<IndexKey<S, K>, V>((a, b) -> {
+        int c = comparator.compare(a.secondary, b.secondary);
+        if (c != 0) {
+          return c;
+        } else if (a.primary == null || b.primary == null) {
+          return (a.primary == null) ? ((b.primary == null) ? 0 : -1) : 1;
+        } // if/else
+        return primary.compare(a.primary, b.primary);
+      });
+    } // Index(Function, Comparator)
+
+    /**
+     * Get the primary keys of the entries whose secondary key is secondary, in order.
+     * Throws NullPointerException if secondary is null (entries with no secondary key are
+     * not indexed).
+     */
+    public List<K> keys(S secondary) {
+      if (secondary == null) {
+        throw new NullPointerException("null secondary key");
+      } // if
+      ArrayList<K> result = new ArrayList<K>();
+      forEachInRange(secondary, secondary, true, (k, v) -> result.add(k));
+      return result;
+    } // keys(S)
+
+    /**
+     * Apply action to each entry whose secondary key is secondary, in order of primary key.
+     * The action must not change the map.  Throws NullPointerException if secondary is null.
+     */
+    public void forEach(S secondary, BiConsumer<? super K, ? super V> action) {
+      if (secondary == null) {
+        throw new NullPointerException("null secondary key");
+      } // if
+      forEachInRange(secondary, secondary, true, action);
+    } // forEach(S, BiConsumer)
+
+    /**
+     * Apply action to each entry whose secondary key s has from <= s < to (either bound may
+     * be null, for no bound), in order of secondary key and then primary key.  The action
+     * must not change the map.
+     */
+    public void forEachInRange(S from, S to, BiConsumer<? super K, ? super V> action) {
+      forEachInRange(from, to, false, action);
+    } // forEachInRange(S, S, BiConsumer)
+
+    /**
+     * Get the primary keys of the entries whose secondary key s has from <= s < to (either
+     * bound may be null, for no bound), in order of secondary key and then primary key.
+     */
+    public List<K> keysInRange(S from, S to) {
+      ArrayList<K> result = new ArrayList<K>();
+      forEachInRange(from, to, false, (k, v) -> result.add(k));
+      return result;
+    } // keysInRange(S, S)
+
+    /**
+     * Apply action to the entries from from up to to (or through to, if inclusive).
+     */
+    void forEachInRange(S from, S to, boolean inclusive,
+        BiConsumer<? super K, ? super V> action) {
+      synchronized (IndexedSkipList.this) {
+        SLNode<IndexKey<S, K>, V> x = (from == null) ? this.entries.front.next(0)
+            : this.entries.ceilingNode(new IndexKey<S, K>(from, null));
+        for (; x != null; x = x.next(0)) {
+          if (to != null) {
+            int c = this.comparator.compare(x.key.secondary, to);
+            if (c > 0 || (c == 0 && !inclusive)) {
+              break;
+            } // if
+          } // if
+          action.accept(x.key.primary, x.value);
+        } // for
+      } // synchronized
+    } // forEachInRange(S, S, boolean, BiConsumer)
+
+    /**
+     * Add an entry (unless its secondary key is null).
+     */
+    @SuppressWarnings("unchecked")
+    void link(K key, V value, Object secondary) {
+      if (secondary != null) {
+        this.entries.set(new IndexKey<S, K>((S) secondary, key), value);
+      } // if
+    } // link(K, V, Object)
+
+    /**
+     * Remove an entry, given its old secondary key.
+     */
+    @SuppressWarnings("unchecked")
+    void unlink(K key, Object secondary) {
+      if (secondary != null) {
+        this.entries.remove(new IndexKey<S, K>((S) secondary, key));
+      } // if
+    } // unlink(K, Object)
+  } // class Index
+
+} // class IndexedSkipList
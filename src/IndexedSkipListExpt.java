@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compare finding the entries with a given field value by scanning every value with forEach
+ * against asking an index, and measure what the index costs each set.
+ *
+ * Usage: java IndexedSkipListExpt [entries] [owners] [queries]
+ */
+public class IndexedSkipListExpt {
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int owners = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+    int queries = (args.length > 2) ? Integer.parseInt(args[2]) : 2000;
+
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      Random random = new Random(42);
+      SkipList<Integer, Integer> plain = new SkipList<Integer, Integer>((i, j) -> i - j);
+      IndexedSkipList<Integer, Integer> indexed =
+          new IndexedSkipList<Integer, Integer>((i, j) -> i - j);
+      IndexedSkipList<Integer, Integer>.Index<Integer> byOwner =
+          indexed.addIndex((v) -> v % owners, Integer::compareTo);
+      int[] keys = new int[n];
+      int[] values = new int[n];
+      for (int i = 0; i < n; i++) {
+        keys[i] = random.nextInt();
+        values[i] = random.nextInt(Integer.MAX_VALUE);
+      } // for
+
+      long start = System.nanoTime();
+      for (int i = 0; i < n; i++) {
+        plain.set(keys[i], values[i]);
+      } // for
+      double plainSet = (double) (System.nanoTime() - start) / n;
+      start = System.nanoTime();
+      for (int i = 0; i < n; i++) {
+        indexed.set(keys[i], values[i]);
+      } // for
+      double indexedSet = (double) (System.nanoTime() - start) / n;
+
+      long found = 0;
+      start = System.nanoTime();
+      for (int q = 0; q < queries; q++) {
+        int owner = q % owners;
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        plain.forEach((k, v) -> {
+          if (v % owners == owner) {
+            result.add(k);
+          } // if
+        });
+        found += result.size();
+      } // for
+      double scan = (double) (System.nanoTime() - start) / queries;
+      start = System.nanoTime();
+      for (int q = 0; q < queries; q++) {
+        found += byOwner.keys(q % owners).size();
+      } // for
+      double index = (double) (System.nanoTime() - start) / queries;
+
+      if (round == 2) {
+        System.out.printf("set: %.0f ns plain, %.0f ns indexed; query by owner: "
+            + "%.0f ns scanning, %.0f ns with the index (found %d)%n", plainSet, indexedSet,
+            scan, index, found);
+      } // if
+    } // for
+  } // main(String[])
+
+} // class IndexedSkipListExpt
@@ -0,0 +1,203 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests of IndexedSkipList.
+ */
+public class IndexedSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    IndexedSkipList<Integer, String> map = new IndexedSkipList<Integer, String>((i, j) -> i - j);
+    map.addIndex((v) -> v.length(), Integer::compareTo);
+    return map;
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  /**
+   * A value with a couple of fields to index.
+   */
+  static class Session {
+    final String owner;
+    final Integer started;
+
+    Session(String owner, Integer started) {
+      this.owner = owner;
+      this.started = started;
+    } // Session(String, Integer)
+  } // class Session
+
+  @Test
+  public void testSimple() {
+    IndexedSkipList<Integer, Session> sessions =
+        new IndexedSkipList<Integer, Session>((i, j) -> i - j);
+    sessions.set(1, new Session("ann", 100));
+    sessions.set(2, new Session("bob", 50));
+    IndexedSkipList<Integer, Session>.Index<String> byOwner =
+        sessions.addIndex((s) -> s.owner, String::compareTo);
+    IndexedSkipList<Integer, Session>.Index<Integer> byStart =
+        sessions.addIndex((s) -> s.started, Integer::compareTo);
+    sessions.set(3, new Session("ann", 75));
+    sessions.set(4, new Session(null, 20));
+    assertEquals(Arrays.asList(1, 3), byOwner.keys("ann"));
+    assertEquals(Arrays.asList(2), byOwner.keys("bob"));
+    assertEquals(Arrays.asList(), byOwner.keys("cy"));
+    assertEquals(Arrays.asList(1, 3, 2), byOwner.keysInRange(null, null));
+    assertEquals(Arrays.asList(2, 3), byStart.keysInRange(50, 100));
+
+    // moving a session to another owner
+    sessions.set(1, new Session("bob", 100));
+    assertEquals(Arrays.asList(3), byOwner.keys("ann"));
+    assertEquals(Arrays.asList(1, 2), byOwner.keys("bob"));
+    sessions.remove(2);
+    assertEquals(Arrays.asList(1), byOwner.keys("bob"));
+    assertEquals(Arrays.asList(4, 3, 1), byStart.keysInRange(null, null));
+
+    // an extractor that fails must leave everything alone
+    try {
+      sessions.set(5, null);
+      fail("no exception from the extractor");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    assertFalse(sessions.containsKey(5));
+    assertEquals(3, sessions.size());
+
+    sessions.dropIndex(byStart);
+    sessions.set(6, new Session("ann", 1));
+    assertEquals(Arrays.asList(3, 6), byOwner.keys("ann"));
+    assertEquals(Arrays.asList(4, 3, 1), byStart.keysInRange(null, null));
+  } // testSimple()
+
+  /**
+   * Exact matches reject a null secondary key; only the range methods take null as no bound.
+   */
+  @Test
+  public void testNullSecondary() {
+    IndexedSkipList<Integer, Session> sessions =
+        new IndexedSkipList<Integer, Session>((i, j) -> i - j);
+    IndexedSkipList<Integer, Session>.Index<String> byOwner =
+        sessions.addIndex((s) -> s.owner, String::compareTo);
+    sessions.set(1, new Session("ann", 100));
+    sessions.set(2, new Session(null, 50));
+    try {
+      byOwner.keys(null);
+      fail("keys(null) returned");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    try {
+      byOwner.forEach(null, (k, v) -> fail("forEach(null) visited " + k));
+      fail("forEach(null) returned");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    assertEquals(Arrays.asList(1), byOwner.keysInRange(null, null));
+    assertEquals(Arrays.asList(1), byOwner.keysInRange("a", null));
+  } // testNullSecondary()
+
+  /**
+   * Random sets and removes, checking the index against a scan of all the values.
+   */
+  @Test
+  public void testAgainstScan() {
+    Random random = new Random(42);
+    IndexedSkipList<Integer, Session> sessions =
+        new IndexedSkipList<Integer, Session>((i, j) -> i - j);
+    IndexedSkipList<Integer, Session>.Index<Integer> byStart =
+        sessions.addIndex((s) -> s.started, Integer::compareTo);
+    TreeMap<Integer, Session> expected = new TreeMap<Integer, Session>();
+    for (int i = 0; i < 5000; i++) {
+      int key = random.nextInt(500);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        sessions.remove(key);
+      } else {
+        Session s = new Session("o" + random.nextInt(10), random.nextInt(100));
+        expected.put(key, s);
+        sessions.set(key, s);
+      } // if/else
+      if (i % 100 == 0) {
+        int from = random.nextInt(100);
+        int to = from + random.nextInt(20);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int start = from; start < to; start++) {
+          for (Integer k : expected.keySet()) {
+            if (expected.get(k).started == start) {
+              keys.add(k);
+            } // if
+          } // for
+        } // for
+        assertEquals(keys, byStart.keysInRange(from, to));
+        ArrayList<Session> values = new ArrayList<Session>();
+        byStart.forEachInRange(from, to, (k, v) -> values.add(v));
+        for (int j = 0; j < keys.size(); j++) {
+          assertSame(expected.get(keys.get(j)), values.get(j));
+        } // for
+      } // if
+    } // for
+    assertEquals(expected.size(), byStart.entries.size());
+
+    // an index added late sees everything already there
+    IndexedSkipList<Integer, Session>.Index<String> byOwner =
+        sessions.addIndex((s) -> s.owner, String::compareTo);
+    for (Integer k : expected.keySet()) {
+      assertTrue(byOwner.keys(expected.get(k).owner).contains(k));
+    } // for
+  } // testAgainstScan()
+
+  /**
+   * A throwing extractor leaves the map as it was, an extractor that changes its mind leaves
+   * no stale pairs, and dropping an index keeps the others working.
+   */
+  @Test
+  public void testExtractors() {
+    IndexedSkipList<Integer, String> map = new IndexedSkipList<Integer, String>((i, j) -> i - j);
+    IndexedSkipList<Integer, String>.Index<Integer> byLength =
+        map.addIndex((v) -> v.length(), Integer::compareTo);
+    int[] calls = {0};
+    IndexedSkipList<Integer, String>.Index<Integer> byCall =
+        map.addIndex((v) -> calls[0]++, Integer::compareTo);
+    IndexedSkipList<Integer, String>.Index<String> byFirst = map.addIndex((v) -> {
+      if (v.startsWith("!")) {
+        throw new IllegalArgumentException(v);
+      } // if
+      return v.substring(0, 1);
+    }, String::compareTo);
+    map.set(1, "one");
+    map.set(2, "two");
+    try {
+      map.set(1, "!bad");
+      fail("the extractor threw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    } // try/catch
+    assertEquals("one", map.get(1));
+    assertEquals(Arrays.asList(1, 2), byLength.keys(3));
+    assertEquals(Arrays.asList(1), byFirst.keys("o"));
+
+    map.set(1, "uno");
+    assertEquals("two", map.remove(2));
+    assertEquals(1, byCall.entries.size());
+    assertEquals(1, byLength.entries.size());
+    assertEquals(Arrays.asList(1), byFirst.keys("u"));
+    assertTrue(byFirst.keys("o").isEmpty());
+
+    map.dropIndex(byCall);
+    map.set(3, "three");
+    assertEquals(Arrays.asList(3), byLength.keys(5));
+    assertEquals(Arrays.asList(3), byFirst.keys("t"));
+    assertEquals("uno", map.remove(1));
+    assertEquals(1, byFirst.entries.size());
+  } // testExtractors()
+
+} // class IndexedSkipListTests
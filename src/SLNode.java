@@ -0,0 +1,157 @@
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Nodes in the skip list.  Subclasses decide how the pointers to the next nodes are stored.
+ */
+abstract class SLNode<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The key.
+   */
+  K key;
+
+  /**
+   * The value.
+   */
+  V value;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new node with the specified key and value.
+   */
+  SLNode(K key, V value) {
+    this.key = key;
+    this.value = value;
+  } // SLNode(K, V)
+
+  /**
+   * Create a new compact node of height n with the specified key and value.
+   */
+  static <K, V> SLNode<K, V> compact(K key, V value, int n) {
+    switch (n) {
+      case 0:
+        return new SLNode1<K, V>(key, value);
+      case 1:
+        return new SLNode2<K, V>(key, value);
+      case 2:
+        return new SLNode3<K, V>(key, value);
+      case 3:
+        return new SLNode4<K, V>(key, value);
+      default:
+        return new SLNodeArray<K, V>(key, value, n);
+    } // switch
+  } // compact(K, V, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the next node on level i.
+   */
+  abstract SLNode<K, V> next(int i);
+
+  /**
+   * Set the next node on level i.
+   */
+  abstract void setNext(int i, SLNode<K, V> x);
+
+  /**
+   * Get the number of levels the node is on (its height plus one).
+   */
+  abstract int levels();
+
+  /**
+   * Estimate the bytes of heap the node takes, not counting its key and value.
+   */
+  abstract long footprint();
+
+  /**
+   * Estimate the bytes of heap taken by an object with the given numbers of reference and
+   * int fields.
+   */
+  static long objectSize(int refs, int ints) {
+    long fields = Layout.HEADER + 4L * ints;
+    fields = (fields + Layout.REF - 1) / Layout.REF * Layout.REF;
+    return align(fields + (long) Layout.REF * refs);
+  } // objectSize(int, int)
+
+  /**
+   * Estimate the bytes of heap taken by an array of length references.
+   */
+  static long arraySize(int length) {
+    // the header and length are padded to a whole word
+    long base = (Layout.HEADER + 4 + 7) & ~7L;
+    return align(base + (long) Layout.REF * length);
+  } // arraySize(int)
+
+  /**
+   * Estimate the bytes of heap taken by an array of length bytes.
+   */
+  static long byteArraySize(int length) {
+    long base = (Layout.HEADER + 4 + 7) & ~7L;
+    return align(base + length);
+  } // byteArraySize(int)
+
+  /**
+   * Round a size up to the alignment of objects.
+   */
+  static long align(long bytes) {
+    return (bytes + Layout.ALIGN - 1) / Layout.ALIGN * Layout.ALIGN;
+  } // align(long)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The sizes of object headers and references, and the alignment of objects, in the running
+   * JVM.  (In a class of its own, so that we only ask the JVM when someone wants a footprint.)
+   */
+  static class Layout {
+
+    /**
+     * The bytes in a reference.
+     */
+    static final int REF;
+
+    /**
+     * The bytes in an object header.
+     */
+    static final int HEADER;
+
+    /**
+     * The bytes to which objects are aligned.
+     */
+    static final int ALIGN;
+
+    static {
+      boolean compressedOops = true;
+      boolean compressedClasses = true;
+      int alignment = 8;
+      try {
+        HotSpotDiagnosticMXBean hotspot =
+            ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        compressedOops =
+            Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue());
+        compressedClasses =
+            Boolean.parseBoolean(hotspot.getVMOption("UseCompressedClassPointers").getValue());
+        alignment = Integer.parseInt(hotspot.getVMOption("ObjectAlignmentInBytes").getValue());
+      } catch (Throwable e) {
+        // Not HotSpot (or no such options), so assume the usual layout
+      } // try/catch
+      REF = compressedOops ? 4 : 8;
+      HEADER = compressedClasses ? 12 : 16;
+      ALIGN = alignment;
+    } // static
+  } // class Layout
+
+} // SLNode<K,V>
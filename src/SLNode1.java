@@ -0,0 +1,38 @@
+/**
+ * Compact nodes of height 0.
+ */
+class SLNode1<K, V> extends SLNode<K, V> {
+
+  SLNode<K, V> next0;
+
+  SLNode1(K key, V value) {
+    super(key, value);
+  } // SLNode1(K, V)
+
+  @Override
+  SLNode<K, V> next(int i) {
+    if (i != 0) {
+      throw new IndexOutOfBoundsException("level " + i);
+    } // if
+    return this.next0;
+  } // next(int)
+
+  @Override
+  void setNext(int i, SLNode<K, V> x) {
+    if (i != 0) {
+      throw new IndexOutOfBoundsException("level " + i);
+    } // if
+    this.next0 = x;
+  } // setNext(int, SLNode)
+
+  @Override
+  int levels() {
+    return 1;
+  } // levels()
+
+  @Override
+  long footprint() {
+    return objectSize(3, 0);
+  } // footprint()
+
+} // SLNode1<K,V>
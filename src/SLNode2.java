@@ -0,0 +1,49 @@
+/**
+ * Compact nodes of height 1.
+ */
+class SLNode2<K, V> extends SLNode<K, V> {
+
+  SLNode<K, V> next0;
+  SLNode<K, V> next1;
+
+  SLNode2(K key, V value) {
+    super(key, value);
+  } // SLNode2(K, V)
+
+  @Override
+  SLNode<K, V> next(int i) {
+    switch (i) {
+      case 0:
+        return this.next0;
+      case 1:
+        return this.next1;
+      default:
+        throw new IndexOutOfBoundsException("level " + i);
+    } // switch
+  } // next(int)
+
+  @Override
+  void setNext(int i, SLNode<K, V> x) {
+    switch (i) {
+      case 0:
+        this.next0 = x;
+        break;
+      case 1:
+        this.next1 = x;
+        break;
+      default:
+        throw new IndexOutOfBoundsException("level " + i);
+    } // switch
+  } // setNext(int, SLNode)
+
+  @Override
+  int levels() {
+    return 2;
+  } // levels()
+
+  @Override
+  long footprint() {
+    return objectSize(4, 0);
+  } // footprint()
+
+} // SLNode2<K,V>
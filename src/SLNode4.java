@@ -0,0 +1,61 @@
+/**
+ * Compact nodes of height 3.
+ */
+class SLNode4<K, V> extends SLNode<K, V> {
+
+  SLNode<K, V> next0;
+  SLNode<K, V> next1;
+  SLNode<K, V> next2;
+  SLNode<K, V> next3;
+
+  SLNode4(K key, V value) {
+    super(key, value);
+  } // SLNode4(K, V)
+
+  @Override
+  SLNode<K, V> next(int i) {
+    switch (i) {
+      case 0:
+        return this.next0;
+      case 1:
+        return this.next1;
+      case 2:
+        return this.next2;
+      case 3:
+        return this.next3;
+      default:
+        throw new IndexOutOfBoundsException("level " + i);
+    } // switch
+  } // next(int)
+
+  @Override
+  void setNext(int i, SLNode<K, V> x) {
+    switch (i) {
+      case 0:
+        this.next0 = x;
+        break;
+      case 1:
+        this.next1 = x;
+        break;
+      case 2:
+        this.next2 = x;
+        break;
+      case 3:
+        this.next3 = x;
+        break;
+      default:
+        throw new IndexOutOfBoundsException("level " + i);
+    } // switch
+  } // setNext(int, SLNode)
+
+  @Override
+  int levels() {
+    return 4;
+  } // levels()
+
+  @Override
+  long footprint() {
+    return objectSize(6, 0);
+  } // footprint()
+
+} // SLNode4<K,V>
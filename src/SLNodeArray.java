@@ -0,0 +1,34 @@
+/**
+ * Compact nodes of height 4 or more, which keep their pointers in a plain array.
+ */
+class SLNodeArray<K, V> extends SLNode<K, V> {
+
+  SLNode<K, V>[] next;
+
+  @SuppressWarnings("unchecked")
+  SLNodeArray(K key, V value, int n) {
+    super(key, value);
+    this.next = (SLNode<K, V>[]) new SLNode<?, ?>[n + 1];
+  } // SLNodeArray(K, V, int)
+
+  @Override
+  SLNode<K, V> next(int i) {
+    return this.next[i];
+  } // next(int)
+
+  @Override
+  void setNext(int i, SLNode<K, V> x) {
+    this.next[i] = x;
+  } // setNext(int, SLNode)
+
+  @Override
+  int levels() {
+    return this.next.length;
+  } // levels()
+
+  @Override
+  long footprint() {
+    return objectSize(3, 0) + arraySize(this.next.length);
+  } // footprint()
+
+} // SLNodeArray<K,V>
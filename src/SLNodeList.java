@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+
+/**
+ * Nodes that keep their pointers in an ArrayList (the original layout).
+ */
+class SLNodeList<K, V> extends SLNode<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Pointers to the next nodes.
+   */
+  ArrayList<SLNode<K, V>> next;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new node of height n with the specified key and value.
+   */
+  SLNodeList(K key, V value, int n) {
+    super(key, value);
+    this.next = new ArrayList<SLNode<K, V>>(n + 1);
+    for (int i = 0; i <= n; i++) {
+      this.next.add(null);
+    } // for
+  } // SLNodeList(K, V, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  SLNode<K, V> next(int i) {
+    return this.next.get(i);
+  } // next(int)
+
+  @Override
+  void setNext(int i, SLNode<K, V> x) {
+    this.next.set(i, x);
+  } // setNext(int, SLNode)
+
+  @Override
+  int levels() {
+    return this.next.size();
+  } // levels()
+
+  @Override
+  long footprint() {
+    // the node, the ArrayList (elementData, size and modCount) and its array
+    return objectSize(3, 0) + objectSize(1, 2) + arraySize(this.next.size());
+  } // footprint()
+
+} // SLNodeList<K,V>
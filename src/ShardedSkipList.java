@@ -0,0 +1,668 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * A map that splits its key space into contiguous ranges, each held by its own SkipList with
+ * its own lock, so writers to different ranges do not wait for each other.
+ *
+ * The ranges rebalance themselves: a shard that grows well past its share of the keys is split
+ * at its median, and neighboring shards that become small are merged (but never across a
+ * boundary given to the constructor, which stays as the caller chose it).  Rebalancing replaces
+ * the affected shards with new ones and publishes a new shard table; operations that raced
+ * with it notice that their shard was retired and retry.
+ *
+ * Iteration (keys, values, forEach) is weakly consistent: it copies a chunk of pairs at a
+ * time under the lock of the shard they come from.
+ */
+public class ShardedSkipList<K, V> implements SimpleMap<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Shards never split below this size.
+   */
+  static final int MIN_SHARD_SIZE = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The comparator used to determine the ordering of keys.
+   */
+  final Comparator<K> comparator;
+
+  /**
+   * The shards, in key order.  Replaced (never modified) by rebalancing.
+   */
+  volatile ArrayList<Shard<K, V>> shards;
+
+  /**
+   * The number of shards we aim for.
+   */
+  final int targetShards;
+
+  /**
+   * The number of values in the map.
+   */
+  final LongAdder count = new LongAdder();
+
+  /**
+   * A shard bigger than this gets split.
+   */
+  volatile int splitAbove;
+
+  /**
+   * Neighboring shards smaller than this (together) get merged.
+   */
+  volatile int mergeBelow;
+
+  /**
+   * Only one thread rebalances at a time.
+   */
+  final ReentrantLock rebalancing = new ReentrantLock();
+
+  /**
+   * The number of splits and merges so far.
+   */
+  volatile int splits = 0;
+  volatile int merges = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new sharded map that aims for targetShards shards.  The map starts with a
+   * single shard and splits as it grows.
+   */
+  public ShardedSkipList(Comparator<K> comparator, int targetShards) {
+    this.comparator = comparator;
+    this.targetShards = Math.max(1, targetShards);
+    ArrayList<Shard<K, V>> initial = new ArrayList<Shard<K, V>>();
+    initial.add(newShard(null, false));
+    this.shards = initial;
+    updateThresholds(0);
+  } // ShardedSkipList(Comparator<K>, int)
+
+  /**
+   * Create a new sharded map with the given initial boundaries (which must be in increasing
+   * order).  Shard i holds the keys from boundaries[i-1] (inclusive) to boundaries[i]
+   * (exclusive).  Shards may be split between the boundaries, but are never merged across
+   * them.
+   */
+  public ShardedSkipList(Comparator<K> comparator, K[] boundaries) {
+    this(comparator, boundaries.length + 1);
+    ArrayList<Shard<K, V>> initial = new ArrayList<Shard<K, V>>();
+    initial.add(newShard(null, false));
+    for (K boundary : boundaries) {
+      initial.add(newShard(boundary, true));
+    } // for
+    this.shards = initial;
+  } // ShardedSkipList(Comparator<K>, K[])
+
+  /**
+   * Create a new sharded map with four shards per available processor.
+   */
+  public ShardedSkipList(Comparator<K> comparator) {
+    this(comparator, 4 * Runtime.getRuntime().availableProcessors());
+  } // ShardedSkipList(Comparator<K>)
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public V set(K key, V value) {
+    checkKey(key);
+    while (true) {
+      Shard<K, V> shard = route(key);
+      shard.lock.lock();
+      try {
+        if (shard.retired) {
+          continue;
+        } // if
+        int before = shard.list.size();
+        V result = shard.list.set(key, value);
+        if (shard.list.size() != before) {
+          this.count.increment();
+        } // if
+        if (shard.list.size() > this.splitAbove) {
+          shard.unbalanced = true;
+        } // if
+        return result;
+      } finally {
+        shard.lock.unlock();
+        if (shard.unbalanced) {
+          rebalance();
+        } // if
+      } // try/finally
+    } // while
+  } // set(K, V)
+
+  @Override
+  public V get(K key) {
+    checkKey(key);
+    while (true) {
+      Shard<K, V> shard = route(key);
+      shard.lock.lock();
+      try {
+        if (!shard.retired) {
+          return shard.list.get(key);
+        } // if
+      } finally {
+        shard.lock.unlock();
+      } // try/finally
+    } // while
+  } // get(K)
+
+  @Override
+  public int size() {
+    return this.count.intValue();
+  } // size()
+
+  @Override
+  public boolean containsKey(K key) {
+    checkKey(key);
+    while (true) {
+      Shard<K, V> shard = route(key);
+      shard.lock.lock();
+      try {
+        if (!shard.retired) {
+          return shard.list.findNode(key) != null;
+        } // if
+      } finally {
+        shard.lock.unlock();
+      } // try/finally
+    } // while
+  } // containsKey(K)
+
+  @Override
+  public V remove(K key) {
+    checkKey(key);
+    while (true) {
+      Shard<K, V> shard = route(key);
+      shard.lock.lock();
+      try {
+        if (shard.retired) {
+          continue;
+        } // if
+        int before = shard.list.size();
+        V result = shard.list.remove(key);
+        if (shard.list.size() != before) {
+          this.count.decrement();
+          if (mergeable(key, shard)) {
+            shard.unbalanced = true;
+          } // if
+        } // if
+        return result;
+      } finally {
+        shard.lock.unlock();
+        if (shard.unbalanced) {
+          rebalance();
+        } // if
+      } // try/finally
+    } // while
+  } // remove(K)
+
+  /**
+   * Replace the value associated with key by remapping.apply(key, oldValue), removing the key
+   * if the result is null.  Runs under the lock of the key's shard, so it is atomic with
+   * respect to every other update of the key.  (computeIfAbsent, merge and putIfAbsent all
+   * come here.)
+   */
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    checkKey(key);
+    while (true) {
+      Shard<K, V> shard = route(key);
+      shard.lock.lock();
+      try {
+        if (shard.retired) {
+          continue;
+        } // if
+        int before = shard.list.size();
+        V result = shard.list.compute(key, remapping);
+        int after = shard.list.size();
+        if (after > before) {
+          this.count.increment();
+        } else if (after < before) {
+          this.count.decrement();
+        } // if/else
+        if (after > this.splitAbove || (after < before && mergeable(key, shard))) {
+          shard.unbalanced = true;
+        } // if
+        return result;
+      } finally {
+        shard.lock.unlock();
+        if (shard.unbalanced) {
+          rebalance();
+        } // if
+      } // try/finally
+    } // while
+  } // compute(K, BiFunction)
+
+  @Override
+  public Iterator<K> keys() {
+    return new Iterator<K>() {
+      ShardIterator it = new ShardIterator(null, null);
+
+      @Override
+      public boolean hasNext() {
+        return this.it.hasNext();
+      } // hasNext()
+
+      @Override
+      public K next() {
+        this.it.advance();
+        return this.it.key;
+      } // next()
+    };
+  } // keys()
+
+  @Override
+  public Iterator<V> values() {
+    return new Iterator<V>() {
+      ShardIterator it = new ShardIterator(null, null);
+
+      @Override
+      public boolean hasNext() {
+        return this.it.hasNext();
+      } // hasNext()
+
+      @Override
+      public V next() {
+        this.it.advance();
+        return this.it.value;
+      } // next()
+    };
+  } // values()
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    forEachInRange(null, null, action);
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Apply an action to each key/value pair with from <= key < to (either bound may be null,
+   * for no bound).  Only the shards that overlap the range are visited.
+   */
+  public void forEachInRange(K from, K to, BiConsumer<? super K, ? super V> action) {
+    ShardIterator it = new ShardIterator(from, to);
+    while (it.hasNext()) {
+      it.advance();
+      action.accept(it.key, it.value);
+    } // while
+  } // forEachInRange(K, K, BiConsumer)
+
+  /**
+   * Get the number of shards.
+   */
+  public int shardCount() {
+    return this.shards.size();
+  } // shardCount()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make sure a key is not null.
+   */
+  static void checkKey(Object key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+  } // checkKey(Object)
+
+  /**
+   * Make a new, empty, shard (whose lower bound is fixed if the caller gave it).  Each gets
+   * its own random number generator, so that shards do not contend for a shared one.
+   */
+  Shard<K, V> newShard(K lower, boolean fixed) {
+    Shard<K, V> shard = new Shard<K, V>(lower, fixed, new SkipList<K, V>(this.comparator));
+    shard.list.random = new Random();
+    return shard;
+  } // newShard(K, boolean)
+
+  /**
+   * Decide whether a shard that has just shrunk, and that holds key, should be merged with a
+   * neighbor: it is well under the merge threshold, and a neighbor on its side of the fixed
+   * boundaries is small enough to join it.  (The neighbors' sizes are read without their
+   * locks, so this is only a hint; merge checks again.)
+   */
+  boolean mergeable(K key, Shard<K, V> shard) {
+    int size = shard.list.size();
+    if (size >= this.mergeBelow / 2) {
+      return false;
+    } // if
+    ArrayList<Shard<K, V>> table = this.shards;
+    int i = indexOf(table, this.comparator, key);
+    if (table.get(i) != shard) {
+      return false;
+    } // if
+    return (i > 0 && !shard.fixed && size + table.get(i - 1).list.size() < this.mergeBelow)
+        || (i + 1 < table.size() && !table.get(i + 1).fixed
+            && size + table.get(i + 1).list.size() < this.mergeBelow);
+  } // mergeable(K, Shard)
+
+  /**
+   * Find the index of the shard that holds key.
+   */
+  static <K, V> int indexOf(ArrayList<Shard<K, V>> table, Comparator<K> comparator, K key) {
+    // the last shard whose lower bound is <= key (shard 0 has no lower bound)
+    int lo = 0;
+    int hi = table.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (comparator.compare(table.get(mid).lower, key) <= 0) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      } // if/else
+    } // while
+    return lo;
+  } // indexOf(ArrayList, Comparator, K)
+
+  /**
+   * Find the shard that holds key.
+   */
+  Shard<K, V> route(K key) {
+    ArrayList<Shard<K, V>> table = this.shards;
+    return table.get(indexOf(table, this.comparator, key));
+  } // route(K)
+
+  /**
+   * Recompute the split and merge thresholds for a given number of values.
+   */
+  void updateThresholds(long total) {
+    int ideal = (int) Math.max(MIN_SHARD_SIZE, total / this.targetShards);
+    this.splitAbove = 2 * ideal;
+    this.mergeBelow = ideal;
+  } // updateThresholds(long)
+
+  /**
+   * Split and merge shards until none is out of balance.  If another thread is already
+   * rebalancing, leave it to that thread.  The sizes are read without the shard locks, so
+   * they only suggest a split or merge; split and merge check again once they hold the locks.
+   */
+  void rebalance() {
+    if (!this.rebalancing.tryLock()) {
+      return;
+    } // if
+    try {
+      updateThresholds(this.count.sum());
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        ArrayList<Shard<K, V>> table = this.shards;
+        for (int i = 0; i < table.size() && !changed; i++) {
+          Shard<K, V> shard = table.get(i);
+          shard.unbalanced = false;
+          if (shard.list.size() > this.splitAbove) {
+            changed = split(table, i);
+          } else if (i + 1 < table.size() && !table.get(i + 1).fixed
+              && shard.list.size() + table.get(i + 1).list.size() < this.mergeBelow) {
+            changed = merge(table, i);
+          } // if/else
+        } // for
+      } // while
+    } finally {
+      this.rebalancing.unlock();
+    } // try/finally
+  } // rebalance()
+
+  /**
+   * Split shard i of the table at its median key, if it is still too big.  Returns true if
+   * it was split.
+   */
+  boolean split(ArrayList<Shard<K, V>> table, int i) {
+    Shard<K, V> shard = table.get(i);
+    shard.lock.lock();
+    try {
+      if (shard.list.size() <= this.splitAbove) {
+        // writers removed keys since rebalance looked
+        return false;
+      } // if
+      int half = shard.list.size() / 2;
+      Iterator<SLNode<K, V>> nodes = shard.list.nodes();
+      for (int j = 0; j < half; j++) {
+        nodes.next();
+      } // for
+      if (!nodes.hasNext()) {
+        return false;
+      } // if
+      Shard<K, V> left = newShard(shard.lower, shard.fixed);
+      Shard<K, V> right = newShard(nodes.next().key, false);
+      shard.list.forEach((k, v) -> {
+        if (this.comparator.compare(k, right.lower) < 0) {
+          left.list.set(k, v);
+        } else {
+          right.list.set(k, v);
+        } // if/else
+      });
+      ArrayList<Shard<K, V>> next = new ArrayList<Shard<K, V>>(table);
+      next.set(i, left);
+      next.add(i + 1, right);
+      this.shards = next;
+      shard.retired = true;
+      this.splits++;
+      return true;
+    } finally {
+      shard.lock.unlock();
+    } // try/finally
+  } // split(ArrayList, int)
+
+  /**
+   * Merge shards i and i+1 of the table, if they are still small enough together and the
+   * boundary between them was not given by the caller.  Returns true if they were merged.
+   */
+  boolean merge(ArrayList<Shard<K, V>> table, int i) {
+    Shard<K, V> a = table.get(i);
+    Shard<K, V> b = table.get(i + 1);
+    a.lock.lock();
+    b.lock.lock();
+    try {
+      if (b.fixed || a.list.size() + b.list.size() >= this.mergeBelow) {
+        // writers added keys since rebalance looked
+        return false;
+      } // if
+      Shard<K, V> merged = newShard(a.lower, a.fixed);
+      a.list.forEach((k, v) -> merged.list.set(k, v));
+      b.list.forEach((k, v) -> merged.list.set(k, v));
+      ArrayList<Shard<K, V>> next = new ArrayList<Shard<K, V>>(table);
+      next.set(i, merged);
+      next.remove(i + 1);
+      this.shards = next;
+      a.retired = true;
+      b.retired = true;
+      this.merges++;
+      return true;
+    } finally {
+      b.lock.unlock();
+      a.lock.unlock();
+    } // try/finally
+  } // merge(ArrayList, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Walks the pairs with from <= key < to, copying a chunk of a shard at a time under that
+   * shard's lock.
+   */
+  class ShardIterator {
+
+    /**
+     * The number of pairs copied at a time.
+     */
+    static final int CHUNK = 256;
+
+    /**
+     * The upper bound (exclusive), or null.
+     */
+    final K to;
+
+    /**
+     * The shard table we are walking.
+     */
+    final ArrayList<Shard<K, V>> table = ShardedSkipList.this.shards;
+
+    /**
+     * The index of the shard we are copying from.
+     */
+    int shard;
+
+    /**
+     * Where to resume copying in that shard (null for its start).
+     */
+    K resume;
+
+    /**
+     * Whether resume itself has already been copied.
+     */
+    boolean skipResume = false;
+
+    /**
+     * The copied pairs.
+     */
+    ArrayList<K> keys = new ArrayList<K>(CHUNK);
+    ArrayList<V> vals = new ArrayList<V>(CHUNK);
+
+    /**
+     * The position in keys and vals.
+     */
+    int pos = 0;
+
+    /**
+     * The current pair.
+     */
+    K key;
+    V value;
+
+    ShardIterator(K from, K to) {
+      this.resume = from;
+      this.to = to;
+      this.shard = (from == null) ? 0 : indexOf(this.table, comparator, from);
+    } // ShardIterator(K, K)
+
+    boolean hasNext() {
+      while (this.pos == this.keys.size()) {
+        if (this.shard >= this.table.size()) {
+          return false;
+        } // if
+        Shard<K, V> current = this.table.get(this.shard);
+        if (this.to != null && current.lower != null
+            && comparator.compare(current.lower, this.to) >= 0) {
+          this.shard = this.table.size();
+          return false;
+        } // if
+        if (!copy(current)) {
+          this.shard++;
+          this.resume = null;
+          this.skipResume = false;
+        } // if
+      } // while
+      return true;
+    } // hasNext()
+
+    void advance() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      } // if
+      this.key = this.keys.get(this.pos);
+      this.value = this.vals.get(this.pos);
+      this.pos++;
+    } // advance()
+
+    /**
+     * Copy the next chunk of pairs in range from a shard.  Returns true if the shard may have
+     * more.
+     */
+    boolean copy(Shard<K, V> current) {
+      this.keys.clear();
+      this.vals.clear();
+      this.pos = 0;
+      current.lock.lock();
+      try {
+        SLNode<K, V> node = (this.resume == null) ? current.list.front.next(0)
+            : current.list.ceilingNode(this.resume);
+        if (this.skipResume && node != null && comparator.compare(node.key, this.resume) == 0) {
+          node = node.next(0);
+        } // if
+        while (node != null && (this.to == null || comparator.compare(node.key, this.to) < 0)) {
+          if (this.keys.size() == CHUNK) {
+            this.resume = this.keys.get(CHUNK - 1);
+            this.skipResume = true;
+            return true;
+          } // if
+          this.keys.add(node.key);
+          this.vals.add(node.value);
+          node = node.next(0);
+        } // while
+        return false;
+      } finally {
+        current.lock.unlock();
+      } // try/finally
+    } // copy(Shard)
+  } // class ShardIterator
+
+} // class ShardedSkipList
+
+/**
+ * One range of a ShardedSkipList.
+ */
+class Shard<K, V> {
+
+  /**
+   * The smallest key this shard may hold (null for the first shard).
+   */
+  final K lower;
+
+  /**
+   * Whether lower was given by the caller (so the shard is never merged into the one before
+   * it).
+   */
+  final boolean fixed;
+
+  /**
+   * The keys and values.
+   */
+  final SkipList<K, V> list;
+
+  /**
+   * Guards list and retired.
+   */
+  final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Set once the shard has been replaced by rebalancing.
+   */
+  boolean retired = false;
+
+  /**
+   * Set when the shard looks too big or too small.
+   */
+  volatile boolean unbalanced = false;
+
+  Shard(K lower, boolean fixed, SkipList<K, V> list) {
+    this.lower = lower;
+    this.fixed = fixed;
+    this.list = list;
+  } // Shard(K, boolean, SkipList)
+
+} // class Shard
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measure how write throughput scales with threads for a ShardedSkipList and for a SkipList
+ * behind a single lock, using uniformly distributed keys.
+ *
+ * Usage: java ShardedSkipListExpt [opsPerThread] [maxThreads]
+ */
+public class ShardedSkipListExpt {
+
+  /**
+   * Run threads writers, each doing ops random sets, and return operations per second.
+   */
+  static double run(SimpleMap<Integer, Integer> map, int threads, int ops)
+      throws InterruptedException {
+    ArrayList<Thread> workers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      workers.add(new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ops; i++) {
+          int key = random.nextInt(Integer.MAX_VALUE);
+          map.set(key, key);
+        } // for
+      }));
+    } // for
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    } // for
+    for (Thread worker : workers) {
+      worker.join();
+    } // for
+    return threads * (double) ops / ((System.nanoTime() - start) / 1e9);
+  } // run(SimpleMap, int, int)
+
+  public static void main(String[] args) throws Exception {
+    int ops = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int maxThreads = (args.length > 1) ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    System.out.println("threads  locked-SkipList  ShardedSkipList  (sets/s)");
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      SkipList<Integer, Integer> list = new SkipList<Integer, Integer>(Integer::compare);
+      SimpleMap<Integer, Integer> locked = new SynchronizedMap<Integer, Integer>(list);
+      double a = run(locked, threads, ops);
+      ShardedSkipList<Integer, Integer> sharded =
+          new ShardedSkipList<Integer, Integer>(Integer::compare);
+      double b = run(sharded, threads, ops);
+      System.out.printf("%7d  %15.0f  %15.0f  (%d shards)%n", threads, a, b,
+          sharded.shardCount());
+    } // for
+  } // main(String[])
+
+} // class ShardedSkipListExpt
@@ -0,0 +1,210 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.junit.Test;
+
+/**
+ * Tests of sharded skip lists.
+ */
+public class ShardedSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    return new ShardedSkipList<Integer, String>((i, j) -> i - j, new Integer[] {16, 32, 48});
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  @Test
+  public void testSplitsAndMerges() {
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, 4);
+    for (int i = 0; i < 20000; i++) {
+      map.set(i, i);
+    } // for
+    assertEquals(20000, map.size());
+    assertTrue(map.shardCount() > 1);
+    assertTrue(map.splits > 0);
+    Iterator<Integer> keys = map.keys();
+    for (int i = 0; i < 20000; i++) {
+      assertEquals((Integer) i, keys.next());
+    } // for
+    assertFalse(keys.hasNext());
+
+    for (int i = 0; i < 20000; i++) {
+      assertEquals((Integer) i, map.remove(i));
+    } // for
+    assertEquals(0, map.size());
+    assertEquals(1, map.shardCount());
+    assertTrue(map.merges > 0);
+  } // testSplitsAndMerges()
+
+  /**
+   * split and merge look at the sizes again under the locks, so a stale decision by rebalance
+   * does nothing.
+   */
+  @Test
+  public void testStaleDecisions() {
+    // (the shards come from splits, so their boundaries may be merged away)
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, 2);
+    for (int i = 0; i < 20000; i++) {
+      map.set(i, i);
+    } // for
+    assertTrue(map.shardCount() > 1);
+    Object table = map.shards;
+    int changes = map.splits + map.merges;
+    map.splitAbove = 100000;
+    map.mergeBelow = 100;
+    assertFalse(map.split(map.shards, 0));
+    assertFalse(map.merge(map.shards, 0));
+    assertSame(table, map.shards);
+    assertEquals(changes, map.splits + map.merges);
+    assertFalse(map.shards.get(0).retired);
+  } // testStaleDecisions()
+
+  /**
+   * Boundaries given to the constructor survive removes, even from an empty map, and removes
+   * from a small shard with no mergeable neighbor do not keep asking for a rebalance.
+   */
+  @Test
+  public void testFixedBoundaries() {
+    ShardedSkipList<Integer, Integer> map = new ShardedSkipList<Integer, Integer>(
+        (i, j) -> i - j, new Integer[] {1000, 2000, 3000, 4000, 5000, 6000, 7000});
+    assertNull(map.remove(42));
+    assertEquals(8, map.shardCount());
+    for (int i = 0; i < 8000; i += 10) {
+      map.set(i, i);
+    } // for
+    for (int i = 0; i < 8000; i += 10) {
+      assertEquals((Integer) i, map.remove(i));
+      assertFalse(map.shards.get(i / 1000).unbalanced);
+    } // for
+    assertEquals(0, map.size());
+    assertEquals(8, map.shardCount());
+    assertEquals(0, map.merges);
+
+    // shards split between the boundaries can merge back, but not across them
+    for (int i = 0; i < 30000; i++) {
+      map.set(7000 + i, i);
+    } // for
+    int grown = map.shardCount();
+    assertTrue(grown > 8);
+    for (int i = 0; i < 30000; i++) {
+      map.remove(7000 + i);
+    } // for
+    assertEquals(8, map.shardCount());
+    assertEquals(map.splits, map.merges);
+    for (int i = 1; i < 8; i++) {
+      assertEquals((Integer) (1000 * i), map.shards.get(i).lower);
+    } // for
+  } // testFixedBoundaries()
+
+  @Test
+  public void testRange() {
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, new Integer[] {100, 200, 300});
+    for (int i = 0; i < 400; i += 3) {
+      map.set(i, -i);
+    } // for
+    ArrayList<Integer> seen = new ArrayList<Integer>();
+    map.forEachInRange(95, 205, (k, v) -> seen.add(k));
+    assertEquals((Integer) 96, seen.get(0));
+    assertEquals((Integer) 204, seen.get(seen.size() - 1));
+    assertEquals((204 - 96) / 3 + 1, seen.size());
+  } // testRange()
+
+  @Test
+  public void testRandomAgainstTreeMap() {
+    Random random = new Random(29);
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, 8);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 50000; i++) {
+      int key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        assertEquals(expected.put(key, i), map.set(key, i));
+      } // if/else
+    } // for
+    assertEquals(expected.size(), map.size());
+    Iterator<Integer> values = map.values();
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), values.next());
+      assertTrue(map.containsKey(entry.getKey()));
+    } // for
+  } // testRandomAgainstTreeMap()
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, 8);
+    ConcurrentSkipListMap<Integer, Integer> expected =
+        new ConcurrentSkipListMap<Integer, Integer>();
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final Random random = new Random(t);
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 20000; i++) {
+          // each thread owns the keys congruent to t mod 4, so the expected map is exact
+          int key = random.nextInt(10000) * 4 + (int) (Thread.currentThread().getId() % 4);
+          map.set(key, key);
+          expected.put(key, key);
+        } // for
+      });
+      threads.add(thread);
+    } // for
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    assertEquals(expected.size(), map.size());
+    Iterator<Integer> keys = map.keys();
+    for (Integer key : expected.keySet()) {
+      assertEquals(key, keys.next());
+    } // for
+  } // testConcurrentWriters()
+
+  /**
+   * Many threads bump the same counters; merge must not lose an update, even while shards
+   * split.
+   */
+  @Test
+  public void testConcurrentMerge() throws Exception {
+    ShardedSkipList<Integer, Integer> map =
+        new ShardedSkipList<Integer, Integer>((i, j) -> i - j, 4);
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final Random random = new Random(t);
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 20000; i++) {
+          map.merge(random.nextInt(5000), 1, Integer::sum);
+        } // for
+      });
+      threads.add(thread);
+    } // for
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    int[] total = new int[1];
+    map.forEach((k, v) -> total[0] += v);
+    assertEquals(80000, total[0]);
+    assertEquals((Integer) 7, map.compute(-1, (k, v) -> 7));
+    assertNull(map.compute(-1, (k, v) -> null));
+    assertFalse(map.containsKey(-1));
+  } // testConcurrentMerge()
+
+} // class ShardedSkipListTests
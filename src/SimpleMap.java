@@ -1,5 +1,7 @@
 import java.util.Iterator;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * A simple version of the Map interface (more or less).
@@ -55,5 +57,69 @@ public interface SimpleMap<K,V> {
    * Apply a function to each key/value pair.
    */
   public void forEach(BiConsumer<? super K, ? super V> action);
-  
+
+  /**
+   * Replace the value associated with key by remapping.apply(key, oldValue), where oldValue
+   * is null if there is none.  If the new value is null, the key is removed.  Maps that can
+   * should find the key only once, and concurrent maps should apply the change atomically.
+   * The remapping function must not modify this map.
+   *
+   * @return the new value (or null, if there is none).
+   * @throws NullPointerException if the key is null.
+   */
+  public default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    V old = get(key);
+    V result = remapping.apply(key, old);
+    if (result != null) {
+      if (result != old) {
+        set(key, result);
+      } // if
+    } else if (old != null || containsKey(key)) {
+      remove(key);
+    } // if/else
+    return result;
+  } // compute(K, BiFunction)
+
+  /**
+   * If key has no value (or a null one), associate it with mapping.apply(key), unless that
+   * is null.
+   *
+   * @return the current value (or null, if there is none).
+   */
+  public default V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+    return compute(key, (k, old) -> (old != null) ? old : mapping.apply(k));
+  } // computeIfAbsent(K, Function)
+
+  /**
+   * If key has no value (or a null one), associate it with value.  Otherwise replace its
+   * value with remapping.apply(oldValue, value), removing the key if that is null.  (So
+   * merge(key, 1, Integer::sum) counts.)
+   *
+   * @return the new value (or null, if there is none).
+   * @throws NullPointerException if the value is null.
+   */
+  public default V merge(K key, V value,
+      BiFunction<? super V, ? super V, ? extends V> remapping) {
+    if (value == null) {
+      throw new NullPointerException("null value");
+    } // if
+    return compute(key, (k, old) -> (old == null) ? value : remapping.apply(old, value));
+  } // merge(K, V, BiFunction)
+
+  /**
+   * If key has no value (or a null one), associate it with value.
+   *
+   * @return the previous value (or null, if there was none).
+   */
+  public default V putIfAbsent(K key, V value) {
+    Object[] previous = new Object[1];
+    compute(key, (k, old) -> {
+      previous[0] = old;
+      return (old != null) ? old : value;
+    });
+    @SuppressWarnings("unchecked")
+    V result = (V) previous[0];
+    return result;
+  } // putIfAbsent(K, V)
+
 } // SimpleMap
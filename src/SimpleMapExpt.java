@@ -0,0 +1,219 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compare the speed of two SimpleMap engines on the same workload, in pairs of runs.  Each
+ * pair runs both engines on the same operations (in alternating order, so that neither always
+ * goes first), and we report the median time per operation for each engine and the median
+ * and quartiles of the ratio of B's time to A's, which is steadier than either time alone.
+ *
+ * Workloads: read (containsKey and get), mixed (90% reads, 10% sets and removes), and write
+ * (sets and removes).  The map starts with half of the key space.
+ *
+ * Usage: java SimpleMapExpt [engineA] [engineB] [keys] [ops] [pairs] [workload]
+ */
+public class SimpleMapExpt {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The pairs run first and not reported.
+   */
+  static final int WARMUP = 2;
+
+  /**
+   * The engines we know how to build, by name.
+   */
+  static final LinkedHashMap<String, Engine<?>> ENGINES = new LinkedHashMap<String, Engine<?>>();
+
+  static {
+    add(new Engine<Integer>("skiplist", () -> new SkipList<Integer, String>((i, j) -> i - j),
+        (i) -> i));
+    add(new Engine<Integer>("adaptive",
+        () -> new AdaptiveSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("counted",
+        () -> new CountedSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("deterministic",
+        () -> new DeterministicSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("sharded",
+        () -> new ShardedSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("indexed",
+        () -> new IndexedSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("versioned",
+        () -> new VersionedSkipList<Integer, String>((i, j) -> i - j), (i) -> i));
+    add(new Engine<Integer>("synchronized",
+        () -> new SynchronizedMap<Integer, String>(
+            new SkipList<Integer, String>((i, j) -> i - j)), (i) -> i));
+    add(new Engine<String>("string", () -> new StringSkipList<String>(),
+        (i) -> String.format("/metrics/%08d", i)));
+    add(new Engine<ByteBuffer>("bytebuffer", () -> new ByteBufferSkipList<String>(),
+        (i) -> ByteBuffer.allocate(4).putInt(0, i)));
+  } // static
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) {
+    String a = (args.length > 0) ? args[0] : "skiplist";
+    String b = (args.length > 1) ? args[1] : "deterministic";
+    int n = (args.length > 2) ? Integer.parseInt(args[2]) : 100000;
+    int ops = (args.length > 3) ? Integer.parseInt(args[3]) : 1000000;
+    int pairs = (args.length > 4) ? Integer.parseInt(args[4]) : 11;
+    String workload = (args.length > 5) ? args[5] : "mixed";
+    if (!ENGINES.containsKey(a) || !ENGINES.containsKey(b)) {
+      System.err.println("engines: " + ENGINES.keySet());
+      System.exit(1);
+    } // if
+    int writes;
+    switch (workload) {
+      case "read":
+        writes = 0;
+        break;
+      case "mixed":
+        writes = 10;
+        break;
+      case "write":
+        writes = 100;
+        break;
+      default:
+        System.err.println("workloads: read, mixed, write");
+        System.exit(1);
+        return;
+    } // switch
+
+    double[] nsA = new double[pairs];
+    double[] nsB = new double[pairs];
+    double[] ratio = new double[pairs];
+    for (int p = -WARMUP; p < pairs; p++) {
+      long seed = 45 + p;
+      double timeA;
+      double timeB;
+      if ((p & 1) == 0) {
+        timeA = ENGINES.get(a).run(n, ops, writes, seed);
+        timeB = ENGINES.get(b).run(n, ops, writes, seed);
+      } else {
+        timeB = ENGINES.get(b).run(n, ops, writes, seed);
+        timeA = ENGINES.get(a).run(n, ops, writes, seed);
+      } // if/else
+      if (p >= 0) {
+        nsA[p] = timeA;
+        nsB[p] = timeB;
+        ratio[p] = timeB / timeA;
+      } // if
+    } // for
+    Arrays.sort(nsA);
+    Arrays.sort(nsB);
+    Arrays.sort(ratio);
+    System.out.printf("%s workload, %d keys, %d ops, %d pairs%n", workload, n, ops, pairs);
+    System.out.printf("%s %.1f ns/op, %s %.1f ns/op%n", a, quantile(nsA, 0.5), b,
+        quantile(nsB, 0.5));
+    System.out.printf("%s/%s: median %.3f (quartiles %.3f to %.3f)%n", b, a,
+        quantile(ratio, 0.5), quantile(ratio, 0.25), quantile(ratio, 0.75));
+  } // main(String[])
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Register an engine.
+   */
+  static void add(Engine<?> engine) {
+    ENGINES.put(engine.name, engine);
+  } // add(Engine)
+
+  /**
+   * Get a quantile of sorted values (interpolating between neighbours).
+   */
+  static double quantile(double[] sorted, double q) {
+    double pos = q * (sorted.length - 1);
+    int lo = (int) Math.floor(pos);
+    int hi = Math.min(lo + 1, sorted.length - 1);
+    return sorted[lo] + (pos - lo) * (sorted[hi] - sorted[lo]);
+  } // quantile(double[], double)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A way to build a map, and the keys to put in it.
+   */
+  static class Engine<K> {
+
+    /**
+     * The name we know the engine by.
+     */
+    final String name;
+
+    /**
+     * Build an empty map.
+     */
+    final Supplier<SimpleMap<K, String>> factory;
+
+    /**
+     * Make the ith key (in order).
+     */
+    final IntFunction<K> key;
+
+    Engine(String name, Supplier<SimpleMap<K, String>> factory, IntFunction<K> key) {
+      this.name = name;
+      this.factory = factory;
+      this.key = key;
+    } // Engine(String, Supplier, IntFunction)
+
+    /**
+     * Fill a map with every other one of 2n keys, then time ops operations, writes percent of
+     * them sets or removes, chosen by seed.  Returns the time per operation.
+     */
+    @SuppressWarnings("unchecked")
+    double run(int n, int ops, int writes, long seed) {
+      // make everything before we start the clock
+      K[] keys = (K[]) new Object[2 * n];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = this.key.apply(i);
+      } // for
+      SimpleMap<K, String> map = this.factory.get();
+      for (int i = 0; i < keys.length; i += 2) {
+        map.set(keys[i], "v");
+      } // for
+      Random random = new Random(seed);
+      int[] which = new int[ops];
+      int[] kind = new int[ops];
+      for (int i = 0; i < ops; i++) {
+        which[i] = random.nextInt(keys.length);
+        int r = random.nextInt(100);
+        kind[i] = (r >= writes) ? 0 : (r % 2 == 0) ? 1 : 2;
+      } // for
+
+      long sum = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < ops; i++) {
+        K k = keys[which[i]];
+        if (kind[i] == 0) {
+          if (map.containsKey(k)) {
+            sum += map.get(k).length();
+          } // if
+        } else if (kind[i] == 1) {
+          map.set(k, "w");
+        } else {
+          map.remove(k);
+        } // if/else
+      } // for
+      double ns = (double) (System.nanoTime() - start) / ops;
+      if (sum == 42) {
+        System.out.print("");
+      } // if
+      return ns;
+    } // run(int, int, int, long)
+
+  } // class Engine<K>
+
+} // class SimpleMapExpt
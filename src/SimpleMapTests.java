@@ -0,0 +1,417 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Tests that every SimpleMap should pass.  The tests for a kind of map extend this class,
+ * saying how to make an empty map and how to make keys, and so run these tests along with
+ * their own.  Maps are expected to iterate in key order, as all of ours do.
+ *
+ * mapRandomOps is a differential test: it runs random sequences of operations on the map and
+ * on a TreeMap, comparing every result and the whole contents after every step.  When they
+ * disagree, it shrinks the sequence to a short one that still fails, and reports that (so
+ * there is no test source to dig out of stderr).
+ */
+public abstract class SimpleMapTests<K> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of random sequences mapRandomOps tries.
+   */
+  static final int RUNS = 20;
+
+  /**
+   * The number of operations in each random sequence.
+   */
+  static final int OPS = 500;
+
+  /**
+   * Random operations use keys from 0 up to this (few enough that keys come back often).
+   */
+  static final int KEYS = 64;
+
+  // +------------------+--------------------------------------------
+  // | Abstract methods |
+  // +------------------+
+
+  /**
+   * Make a new, empty, map to test.
+   */
+  abstract SimpleMap<K, String> newMap();
+
+  /**
+   * Make the key for a non-negative integer.  Keys must be ordered (by the map) as their
+   * integers are.
+   */
+  abstract K key(int i);
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * A new map is empty.
+   */
+  @Test
+  public void mapEmpty() {
+    SimpleMap<K, String> map = newMap();
+    assertEquals(0, map.size());
+    assertNull(map.get(key(1)));
+    assertFalse(map.containsKey(key(1)));
+    assertNull(map.remove(key(1)));
+    assertFalse(map.keys().hasNext());
+    assertFalse(map.values().hasNext());
+    map.forEach((k, v) -> fail("forEach on an empty map"));
+  } // mapEmpty()
+
+  /**
+   * set and remove return the old values, and get and containsKey see the changes.
+   */
+  @Test
+  public void mapSetAndRemove() {
+    SimpleMap<K, String> map = newMap();
+    assertNull(map.set(key(2), "two"));
+    assertNull(map.set(key(1), "one"));
+    assertEquals("two", map.set(key(2), "deux"));
+    assertEquals(2, map.size());
+    assertEquals("deux", map.get(key(2)));
+    assertTrue(map.containsKey(key(1)));
+    assertFalse(map.containsKey(key(3)));
+    assertEquals("one", map.remove(key(1)));
+    assertNull(map.remove(key(1)));
+    assertFalse(map.containsKey(key(1)));
+    assertNull(map.get(key(1)));
+    assertEquals(1, map.size());
+    assertNull(map.set(key(1), "un"));
+    assertEquals("un", map.get(key(1)));
+  } // mapSetAndRemove()
+
+  /**
+   * keys, values and forEach all visit the entries in key order, and exhausted iterators
+   * say so.
+   */
+  @Test
+  public void mapIteration() {
+    SimpleMap<K, String> map = newMap();
+    TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+    Random random = new Random(45);
+    for (int i = 0; i < 200; i++) {
+      int k = random.nextInt(1000);
+      map.set(key(k), "v" + i);
+      expected.put(k, "v" + i);
+    } // for
+    assertNull(contents(map, expected));
+    Iterator<K> keys = map.keys();
+    while (keys.hasNext()) {
+      keys.next();
+    } // while
+    try {
+      keys.next();
+      fail("next() past the end of keys()");
+    } catch (NoSuchElementException e) {
+      // expected
+    } // try/catch
+  } // mapIteration()
+
+  /**
+   * compute, computeIfAbsent, merge and putIfAbsent behave as their Map namesakes.
+   */
+  @Test
+  public void mapCompute() {
+    SimpleMap<K, String> map = newMap();
+    assertEquals("a", map.compute(key(1), (k, old) -> (old == null) ? "a" : old + "a"));
+    assertEquals("aa", map.compute(key(1), (k, old) -> (old == null) ? "a" : old + "a"));
+    assertNull(map.compute(key(1), (k, old) -> null));
+    assertFalse(map.containsKey(key(1)));
+    assertNull(map.compute(key(1), (k, old) -> null));
+    assertEquals("b", map.computeIfAbsent(key(2), (k) -> "b"));
+    assertEquals("b", map.computeIfAbsent(key(2), (k) -> "c"));
+    assertNull(map.computeIfAbsent(key(3), (k) -> null));
+    assertFalse(map.containsKey(key(3)));
+    assertEquals("x", map.merge(key(4), "x", (a, b) -> a + b));
+    assertEquals("xy", map.merge(key(4), "y", (a, b) -> a + b));
+    assertNull(map.merge(key(4), "z", (a, b) -> null));
+    assertFalse(map.containsKey(key(4)));
+    assertNull(map.putIfAbsent(key(5), "p"));
+    assertEquals("p", map.putIfAbsent(key(5), "q"));
+    assertEquals("p", map.get(key(5)));
+    assertEquals(2, map.size());
+  } // mapCompute()
+
+  /**
+   * Null keys are rejected.
+   */
+  @Test
+  public void mapNullKeys() {
+    SimpleMap<K, String> map = newMap();
+    map.set(key(1), "one");
+    try {
+      map.set(null, "null");
+      fail("set(null, ...)");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    try {
+      map.get(null);
+      fail("get(null)");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    try {
+      map.remove(null);
+      fail("remove(null)");
+    } catch (NullPointerException e) {
+      // expected
+    } // try/catch
+    assertEquals(1, map.size());
+  } // mapNullKeys()
+
+  /**
+   * Random sequences of operations, against TreeMap.
+   */
+  @Test
+  public void mapRandomOps() {
+    for (int seed = 0; seed < RUNS; seed++) {
+      Random random = new Random(seed);
+      ArrayList<Op> ops = new ArrayList<Op>();
+      for (int i = 0; i < OPS; i++) {
+        ops.add(Op.random(random, i));
+      } // for
+      if (check(ops) != null) {
+        List<Op> small = shrink(ops);
+        fail("seed " + seed + ": after " + small + ", " + check(small));
+      } // if
+    } // for
+  } // mapRandomOps()
+
+  // +----------------------+----------------------------------------
+  // | Differential testing |
+  // +----------------------+
+
+  /**
+   * Run a sequence of operations on a new map and on a TreeMap.  Returns a description of
+   * the first difference (or null, if there is none).
+   */
+  String check(List<Op> ops) {
+    SimpleMap<K, String> map = newMap();
+    TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+    for (Op op : ops) {
+      Object result;
+      try {
+        result = op.apply(map, key(op.key));
+      } catch (RuntimeException e) {
+        return op + " threw " + e;
+      } // try/catch
+      Object wanted = op.apply(expected);
+      if ((result == null) ? wanted != null : !result.equals(wanted)) {
+        return op + " returned " + result + ", not " + wanted;
+      } // if
+      String problem = contents(map, expected);
+      if (problem != null) {
+        return "after " + op + ", " + problem;
+      } // if
+    } // for
+    return null;
+  } // check(List<Op>)
+
+  /**
+   * Find a short sequence that still fails: cut it off at the failure, then try dropping
+   * runs of operations, halving the length of the runs until single operations no longer
+   * matter.
+   */
+  List<Op> shrink(List<Op> ops) {
+    List<Op> result = new ArrayList<Op>(ops);
+    while (result.size() > 1 && check(result.subList(0, result.size() - 1)) != null) {
+      result = new ArrayList<Op>(result.subList(0, result.size() - 1));
+    } // while
+    for (int run = result.size() / 2; run > 0; run /= 2) {
+      int i = 0;
+      while (i + run <= result.size()) {
+        ArrayList<Op> fewer = new ArrayList<Op>(result.subList(0, i));
+        fewer.addAll(result.subList(i + run, result.size()));
+        if (!fewer.isEmpty() && check(fewer) != null) {
+          result = fewer;
+        } else {
+          i += run;
+        } // if/else
+      } // while
+    } // for
+    return result;
+  } // shrink(List<Op>)
+
+  /**
+   * Compare the whole contents of a map (its size, and what keys, values and forEach visit)
+   * with a TreeMap.  Returns a description of the first difference (or null, if there is
+   * none).
+   */
+  String contents(SimpleMap<K, String> map, TreeMap<Integer, String> expected) {
+    if (map.size() != expected.size()) {
+      return "size() is " + map.size() + ", not " + expected.size();
+    } // if
+    ArrayList<Object> wantedKeys = new ArrayList<Object>();
+    for (Integer k : expected.keySet()) {
+      wantedKeys.add(key(k));
+    } // for
+    ArrayList<Object> keys = new ArrayList<Object>();
+    map.keys().forEachRemaining(keys::add);
+    if (!keys.equals(wantedKeys)) {
+      return "keys() gives " + keys + ", not " + wantedKeys;
+    } // if
+    ArrayList<Object> values = new ArrayList<Object>();
+    map.values().forEachRemaining(values::add);
+    if (!values.equals(new ArrayList<Object>(expected.values()))) {
+      return "values() gives " + values + ", not " + expected.values();
+    } // if
+    ArrayList<Object> pairs = new ArrayList<Object>();
+    map.forEach((k, v) -> {
+      pairs.add(k);
+      pairs.add(v);
+    });
+    ArrayList<Object> wantedPairs = new ArrayList<Object>();
+    for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+      wantedPairs.add(key(entry.getKey()));
+      wantedPairs.add(entry.getValue());
+    } // for
+    if (!pairs.equals(wantedPairs)) {
+      return "forEach visits " + pairs + ", not " + wantedPairs;
+    } // if
+    return null;
+  } // contents(SimpleMap, TreeMap)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * One operation of a random sequence.
+   */
+  static class Op {
+
+    /**
+     * The names of the kinds of operation.
+     */
+    static final String[] KINDS = {"set", "get", "remove", "containsKey", "compute",
+        "computeIfAbsent", "merge", "putIfAbsent"};
+
+    /**
+     * The kind of operation (an index into KINDS).
+     */
+    final int kind;
+
+    /**
+     * The integer the key is made from.
+     */
+    final int key;
+
+    /**
+     * The value to use (if the operation takes one).
+     */
+    final String value;
+
+    Op(int kind, int key, String value) {
+      this.kind = kind;
+      this.key = key;
+      this.value = value;
+    } // Op(int, int, String)
+
+    /**
+     * Make a random operation (the i'th of its sequence).  Sets are the most common, so
+     * the map grows.
+     */
+    static Op random(Random random, int i) {
+      int kind = random.nextInt(KINDS.length + 2);
+      return new Op((kind >= KINDS.length) ? 0 : kind, random.nextInt(KEYS), "v" + i);
+    } // random(Random, int)
+
+    /**
+     * Apply the operation to a map, with key standing for this.key.
+     */
+    <K> Object apply(SimpleMap<K, String> map, K key) {
+      switch (this.kind) {
+        case 0:
+          return map.set(key, this.value);
+        case 1:
+          return map.get(key);
+        case 2:
+          return map.remove(key);
+        case 3:
+          return map.containsKey(key);
+        case 4:
+          return map.compute(key, this::remap);
+        case 5:
+          return map.computeIfAbsent(key, this::create);
+        case 6:
+          return map.merge(key, this.value, Op::combine);
+        default:
+          return map.putIfAbsent(key, this.value);
+      } // switch
+    } // apply(SimpleMap, K)
+
+    /**
+     * Apply the operation to a TreeMap.
+     */
+    Object apply(TreeMap<Integer, String> map) {
+      switch (this.kind) {
+        case 0:
+          return map.put(this.key, this.value);
+        case 1:
+          return map.get(this.key);
+        case 2:
+          return map.remove(this.key);
+        case 3:
+          return map.containsKey(this.key);
+        case 4:
+          return map.compute(this.key, this::remap);
+        case 5:
+          return map.computeIfAbsent(this.key, this::create);
+        case 6:
+          return map.merge(this.key, this.value, Op::combine);
+        default:
+          return map.putIfAbsent(this.key, this.value);
+      } // switch
+    } // apply(TreeMap)
+
+    /**
+     * The function for compute: start with the value, grow it, and drop it once it is long.
+     */
+    String remap(Object key, String old) {
+      return (old == null) ? this.value : ((old.length() > 8) ? null : old + "'");
+    } // remap(Object, String)
+
+    /**
+     * The function for computeIfAbsent, which sometimes declines.
+     */
+    String create(Object key) {
+      return this.value.endsWith("3") ? null : this.value;
+    } // create(Object)
+
+    /**
+     * The function for merge, which drops long values.
+     */
+    static String combine(String a, String b) {
+      return (a.length() > 8) ? null : a + b;
+    } // combine(String, String)
+
+    @Override
+    public String toString() {
+      switch (this.kind) {
+        case 1:
+        case 2:
+        case 3:
+          return KINDS[this.kind] + "(" + this.key + ")";
+        default:
+          return KINDS[this.kind] + "(" + this.key + ", " + this.value + ")";
+      } // switch
+    } // toString()
+  } // class Op
+
+} // class SimpleMapTests
@@ -1,9 +1,17 @@
 import java.io.PrintWriter;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * An implementation of skip lists.
@@ -19,6 +27,26 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    */
   static final int MAX_HEIGHT = 15;
 
+  /**
+   * The number of cache probes over which the cache hit rate is judged.
+   */
+  static final int CACHE_WINDOW = 1024;
+
+  /**
+   * The value of a node that has been removed lazily (a tombstone).
+   */
+  static final Object TOMBSTONE = new Object();
+
+  /**
+   * The number of nodes each step of compaction looks at.
+   */
+  static final int SWEEP_STEP = 64;
+
+  /**
+   * estimateCount counts nodes on the highest level that has at least this many in the range.
+   */
+  static final int ESTIMATE_SAMPLE = 64;
+
   // +---------------+-----------------------------------------------
   // | Static Fields |
   // +---------------+
@@ -54,6 +82,12 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    */
   double prob = 0.5;
 
+  /**
+   * The random number generator used to pick node heights.  (Shared by default; lists that
+   * are updated in parallel under separate locks should each get their own.)
+   */
+  Random random = rand;
+
   /**
    * Record the cost of the 'get' method
    */
@@ -69,6 +103,75 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    */
   int removeCount = 0;
 
+  /**
+   * A small direct-mapped cache of recently found nodes, indexed by the hash of their keys
+   * (or null, if caching is off).
+   */
+  SLNode<K, V>[] cache = null;
+
+  /**
+   * The number of gets answered from the cache.
+   */
+  long cacheHits = 0;
+
+  /**
+   * The number of gets that missed the cache.
+   */
+  long cacheMisses = 0;
+
+  /**
+   * The number of cache probes and hits in the current window.
+   */
+  int cacheWindowProbes = 0;
+  int cacheWindowHits = 0;
+
+  /**
+   * The number of gets that should skip the cache (because it has not been paying off).
+   */
+  int cacheSkip = 0;
+
+  /**
+   * The cost profile being recorded (or null, if profiling is off).
+   */
+  SkipListProfile profile = null;
+
+  /**
+   * The last node before the key on each level, as found by the latest call to descend.
+   * (Reused, so that read-modify-write operations do not allocate.)
+   */
+  SLNode<K, V>[] path;
+
+  /**
+   * Whether new nodes should be compact (see enableCompactNodes).
+   */
+  boolean compact = false;
+
+  /**
+   * The stream of changes being captured (or null, if there is none).
+   */
+  SkipListChanges<K, V> changes = null;
+
+  /**
+   * Whether remove leaves tombstones (see enableLazyDeletes).
+   */
+  boolean lazy = false;
+
+  /**
+   * The number of tombstones in the list.
+   */
+  int tombstones = 0;
+
+  /**
+   * Where the next step of compaction starts (or null, for the front).
+   */
+  K sweepKey = null;
+
+  /**
+   * Whether set always adds a new node, even if the key is already there (see
+   * enableDuplicateKeys).
+   */
+  boolean duplicates = false;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -76,10 +179,12 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
   /**
    * Create a new skip list that orders values using the specified comparator.
    */
+  @SuppressWarnings("unchecked")
   public SkipList(Comparator<K> comparator) {
-    this.front = new SLNode<K, V>(null, null, MAX_HEIGHT);
+    this.front = new SLNodeList<K, V>(null, null, MAX_HEIGHT);
+    this.path = (SLNode<K, V>[]) new SLNode<?, ?>[MAX_HEIGHT + 1];
     for (int i = 0; i <= MAX_HEIGHT; i++) {
-      front.next.set(i, null);
+      front.setNext(i, null);
     } // for
     this.comparator = comparator;
     this.size = 0;
@@ -112,7 +217,12 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    *      Key order is preserved in the SkipList (and no additional items are added or deleted)
    */
   public V set(K key, V value) {
+    if (this.duplicates) {
+      addLast(key, value);
+      return null;
+    } // if
     this.setCount = 0;
+    SkipListProfile prof = this.profile;
 
     ArrayList<SLNode<K, V>> update = new ArrayList<SLNode<K, V>>(MAX_HEIGHT + 1); // keep track of nodes
                                                                               // to be updated
@@ -126,24 +236,41 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
     // make as much "progress" as possible on each level, noting
     // pointers we will have to update
     for (int i = this.height; i >= 0; i--) {
-      while (x.next.get(i) != null && comparator.compare(x.next.get(i).key, key) < 0) {
-        x = x.next.get(i);
+      int hops = 0;
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
         setCount++;
+        hops++;
       } // while
       setCount++;
       update.set(i, x);
+      if (prof != null) {
+        prof.level(SkipListProfile.SET, i, hops, x.next(i) != null);
+      } // if
     } // for
 
     // when no more progress can be made at the first level, we must be
     // directly before the node that possibly contains the desired element
 
-    x = x.next.get(0);
+    x = x.next(0);
     setCount++;
+    if (prof != null) {
+      prof.done(SkipListProfile.SET, x != null);
+    } // if
 
     // if the keys match, we update!
     if (x != null && comparator.compare(x.key, key) == 0) {
       V temp = x.value;
       x.value = value;
+      if (this.changes != null) {
+        this.changes.set(key, value);
+      } // if
+      if (temp == TOMBSTONE) {
+        // bring a lazily removed node back
+        this.tombstones--;
+        size++;
+        return null;
+      } // if
       return temp; // return affected value
     } // if
 
@@ -160,15 +287,18 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
       }
 
       // make our new node
-      x = new SLNode<K, V>(key, value, newLevel);
+      x = newNode(key, value, newLevel);
 
       // update/add pointers to make list properly connected
       for (int i = 0; i <= newLevel; i++) {
-        x.next.set(i, update.get(i).next.get(i));
-        update.get(i).next.set(i, x);
+        x.setNext(i, update.get(i).next(i));
+        update.get(i).setNext(i, x);
         setCount++;
       } // for
       size++;
+      if (this.changes != null) {
+        this.changes.set(key, value);
+      } // if
     } // else
     return null; // new value was added, so return null
   } // set(K,V)
@@ -177,7 +307,7 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
   // helper function to get a random level for a new node between 0 and MAX_HEIGHT
   private int randomLevel() {
     int newLevel = 0;
-    while (rand.nextDouble() < this.prob) {
+    while (this.random.nextDouble() < this.prob) {
       newLevel++;
     } // while
     return Math.min(newLevel, MAX_HEIGHT);
@@ -196,29 +326,67 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    */
   public V get(K key) {
     this.getCount = 0;
-    
+    SkipListProfile prof = this.profile;
+
     if (key == null) {
       throw new NullPointerException("null key");
     } // if
+
+    // try the cache first (unless it has not been paying off lately)
+    int slot = -1;
+    if (this.cache != null) {
+      if (this.cacheSkip > 0) {
+        this.cacheSkip--;
+        this.cacheMisses++;
+      } else {
+        slot = cacheSlot(key);
+        SLNode<K, V> hit = this.cache[slot];
+        if (hit != null && comparator.compare(hit.key, key) == 0) {
+          this.cacheHits++;
+          this.cacheWindowHits++;
+          getCount++;
+          noteCacheProbe();
+          if (prof != null) {
+            prof.done(SkipListProfile.GET, true);
+          } // if
+          return hit.value;
+        } // if
+        this.cacheMisses++;
+        noteCacheProbe();
+      } // if/else
+    } // if
+
     SLNode<K, V> x = this.front; // node pointer used to search for desired element
 
     // make as much "progress" as possible on each level
     for (int i = this.height; i >= 0; i--) {
-      while (x.next.get(i) != null && comparator.compare(x.next.get(i).key, key) < 0) {
-        x = x.next.get(i);
+      int hops = 0;
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
         getCount++;
+        hops++;
       } // while
       getCount++;
+      if (prof != null) {
+        prof.level(SkipListProfile.GET, i, hops, x.next(i) != null);
+      } // if
     } // for
 
     // when no more progress can be made at the first level, we must be
     // directly before the node that possibly contains the desired element
 
-    x = x.next.get(0);
+    x = x.next(0);
     getCount++;
+    if (prof != null) {
+      prof.done(SkipListProfile.GET, x != null);
+    } // if
 
     // if the keys match, we return the value
-    if (x != null && comparator.compare(x.key, key) == 0) {
+    if (x != null && comparator.compare(x.key, key) == 0 && x.value != TOMBSTONE) {
+      // only cache the node where remove will look for it
+      if (slot >= 0 && this.cache != null && cacheSlot(x.key) == slot) {
+        this.cache[slot] = x;
+      } // if
       return x.value; // return value
     } // if
     return null;
@@ -231,13 +399,7 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
 
   @Override
   public boolean containsKey(K key) {
-    Iterator<K> it = keys();
-    while (it.hasNext()) {
-      if (comparator.compare(it.next(), key) == 0) {
-        return true;
-      }
-    }
-    return false;
+    return findNode(key) != null;
   } // containsKey(K)
 
   @Override
@@ -256,7 +418,8 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
    */
   public V remove(K key) {
     this.removeCount = 0;
-    
+    SkipListProfile prof = this.profile;
+
     ArrayList<SLNode<K, V>> update = new ArrayList<SLNode<K, V>>(MAX_HEIGHT + 1); // keep track of nodes
                                                                               // to be updated
     SLNode<K, V> x = this.front; // node pointer used to search for desired element
@@ -269,34 +432,56 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
     // make as much "progress" as possible on each level, noting
     // pointers we will have to update
     for (int i = this.height; i >= 0; i--) {
-      while (x.next.get(i) != null && comparator.compare(x.next.get(i).key, key) < 0) {
-        x = x.next.get(i);
+      int hops = 0;
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
         removeCount++;
+        hops++;
       } // while
       update.set(i, x);
       removeCount++;
+      if (prof != null) {
+        prof.level(SkipListProfile.REMOVE, i, hops, x.next(i) != null);
+      } // if
     } // for
 
     // when no more progress can be made at the first level, we must be
     // directly before the node that possibly contains the desired element
 
-    x = x.next.get(0);
+    x = x.next(0);
     removeCount++;
+    if (prof != null) {
+      prof.done(SkipListProfile.REMOVE, x != null);
+    } // if
 
     // if the keys match, we remove!
     if (x != null && comparator.compare(x.key, key) == 0) {
+      V old = x.value;
+      if (old == TOMBSTONE) {
+        return null;
+      } else if (this.lazy) {
+        bury(x);
+        if (this.changes != null) {
+          this.changes.remove(key);
+        } // if
+        return old;
+      } // if/else
       for (int i = 0; i <= this.height; i++) {
-        if (update.get(i).next.get(i) != x) {
+        if (update.get(i).next(i) != x) {
           break;
         }
         removeCount++;
-        update.get(i).next.set(i, x.next.get(i));// remove element
+        update.get(i).setNext(i, x.next(i));// remove element
       }
-      while (this.height > 1 && this.front.next.get(this.height) == null) {
+      uncache(x);
+      while (this.height > 0 && this.front.next(this.height) == null) {
         this.height--;
         removeCount++;
       }
       size--;
+      if (this.changes != null) {
+        this.changes.remove(key);
+      } // if
       return x.value; // return removed value
     } // if
     return null;
@@ -359,6 +544,87 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
 
   } // forEach
 
+  /**
+   * Replace the value associated with key by remapping.apply(key, oldValue), removing the key
+   * if the result is null, with a single descent.  The remapping function must not modify
+   * the list.
+   */
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+    SLNode<K, V> x = descend(key);
+    V result = remapping.apply(key, (x == null) ? null : x.value);
+    if (x != null && result == null) {
+      unlink(x);
+    } else if (x != null) {
+      replace(x, result);
+    } else if (result != null) {
+      insert(key, result);
+    } // if/else
+    return result;
+  } // compute(K, BiFunction)
+
+  /**
+   * If key has no value (or a null one), associate it with mapping.apply(key), unless that
+   * is null, with a single descent.
+   */
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+    SLNode<K, V> x = descend(key);
+    if (x != null && x.value != null) {
+      return x.value;
+    } // if
+    V result = mapping.apply(key);
+    if (result != null) {
+      if (x != null) {
+        replace(x, result);
+      } else {
+        insert(key, result);
+      } // if/else
+    } // if
+    return result;
+  } // computeIfAbsent(K, Function)
+
+  /**
+   * If key has no value (or a null one), associate it with value; otherwise replace its value
+   * with remapping.apply(oldValue, value), removing the key if that is null.  Takes a single
+   * descent.
+   */
+  @Override
+  public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+    if (value == null) {
+      throw new NullPointerException("null value");
+    } // if
+    SLNode<K, V> x = descend(key);
+    if (x == null) {
+      insert(key, value);
+      return value;
+    } // if
+    V result = (x.value == null) ? value : remapping.apply(x.value, value);
+    if (result == null) {
+      unlink(x);
+    } else {
+      replace(x, result);
+    } // if/else
+    return result;
+  } // merge(K, V, BiFunction)
+
+  /**
+   * If key has no value (or a null one), associate it with value, with a single descent.
+   */
+  @Override
+  public V putIfAbsent(K key, V value) {
+    SLNode<K, V> x = descend(key);
+    if (x == null) {
+      insert(key, value);
+      return null;
+    } // if
+    V old = x.value;
+    if (old == null) {
+      replace(x, value);
+    } // if
+    return old;
+  } // putIfAbsent(K, V)
+
   // +----------------------+----------------------------------------
   // | Other public methods |
   // +----------------------+
@@ -369,7 +635,7 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
   public void dump(PrintWriter pen) {
     String leading = "          ";
 
-    SLNode<K, V> current = front.next.get(0);
+    SLNode<K, V> current = front.next(0);
 
     // Print some X's at the start
     pen.print(leading);
@@ -395,17 +661,17 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
       } // if/else
 
       // Print an indication for the links it has.
-      for (int level = 0; level < current.next.size(); level++) {
+      for (int level = 0; level < current.levels(); level++) {
         pen.print("-*");
       } // for
       // Print an indication for the links it lacks.
-      for (int level = current.next.size(); level <= this.height; level++) {
+      for (int level = current.levels(); level <= this.height; level++) {
         pen.print(" |");
       } // for
       pen.println();
       printLinks(pen, leading);
 
-      current = current.next.get(0);
+      current = current.next(0);
     } // while
 
     // Print some O's at the start
@@ -416,6 +682,521 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
     pen.println();
   } // dump(PrintWriter)
 
+  /**
+   * Remove every key k with from <= k < to (either bound may be null, for no bound).  Each
+   * level is cut once, around the whole run of removed nodes, so this takes O(log n) to
+   * relink plus O(min(k, n-k)) pointer steps (and no comparisons) to count the k nodes
+   * removed.  Returns k.
+   */
+  public int removeRange(K from, K to) {
+    compact();
+    if (from != null && to != null && comparator.compare(from, to) >= 0) {
+      return 0;
+    } // if
+    SLNode<K, V>[] lo = predecessors(from, false);
+    SLNode<K, V>[] hi = predecessors(to, true);
+    SLNode<K, V> first = lo[0].next(0);
+    SLNode<K, V> stop = hi[0].next(0);
+    if (first == stop) {
+      return 0;
+    } // if
+    for (int i = 0; i <= this.height; i++) {
+      lo[i].setNext(i, hi[i].next(i));
+    } // for
+    shrink();
+    clearCache();
+    int removed = countFirst(first, stop, this.front.next(0), this.size);
+    this.size -= removed;
+    if (this.changes != null) {
+      this.changes.removeRange(from, to);
+    } // if
+    return removed;
+  } // removeRange(K, K)
+
+  /**
+   * Move every key that is at least key into a new list (with the same comparator), which is
+   * returned.  Takes O(log n) to cut the towers plus O(min(k, n-k)) pointer steps to count the
+   * k nodes moved.
+   */
+  public SkipList<K, V> split(K key) {
+    compact();
+    SLNode<K, V>[] update = predecessors(key, false);
+    SkipList<K, V> result = emptyCopy();
+    for (int i = 0; i <= this.height; i++) {
+      result.front.setNext(i, update[i].next(i));
+      update[i].setNext(i, null);
+    } // for
+    result.height = this.height;
+    result.shrink();
+    shrink();
+    clearCache();
+    int moved = countFirst(result.front.next(0), null, this.front.next(0), this.size);
+    result.size = moved;
+    this.size -= moved;
+    if (this.changes != null && moved > 0) {
+      this.changes.removeRange(key, null);
+    } // if
+    return result;
+  } // split(K)
+
+  /**
+   * Move all of other's nodes onto the end of this list in O(log n + log m), leaving other
+   * empty.  Every key in other must be larger than every key in this list, and other should
+   * use the same comparator.
+   *
+   * @throws IllegalArgumentException if the keys of the lists overlap.
+   */
+  public void concat(SkipList<K, V> other) {
+    if (other == this) {
+      throw new IllegalArgumentException("cannot concatenate a list with itself");
+    } // if
+    compact();
+    other.compact();
+    if (other.size == 0) {
+      return;
+    } // if
+    SLNode<K, V>[] last = predecessors(null, true);
+    if (this.size > 0
+        && comparator.compare(last[0].key, other.front.next(0).key) >= 0) {
+      throw new IllegalArgumentException("keys overlap");
+    } // if
+    if (this.changes != null) {
+      for (SLNode<K, V> x = other.front.next(0); x != null; x = x.next(0)) {
+        this.changes.set(x.key, x.value);
+      } // for
+    } // if
+    for (int i = 0; i <= other.height; i++) {
+      last[i].setNext(i, other.front.next(i));
+      other.front.setNext(i, null);
+    } // for
+    this.height = Math.max(this.height, other.height);
+    this.size += other.size;
+    other.height = 0;
+    other.size = 0;
+    other.clearCache();
+    if (other.changes != null) {
+      other.changes.removeRange(null, null);
+    } // if
+  } // concat(SkipList)
+
+  /**
+   * Build a new list of the keys in both this list and other, with the values from this list.
+   * Walks the two lists together, galloping over runs of keys that are in only one of them,
+   * so intersecting a small list with a large one takes about O(m log(n/m)) comparisons.
+   * (Both lists must order keys the same way; we use this list's comparator.)
+   */
+  public <W> SkipList<K, V> intersect(SkipList<K, W> other) {
+    compact();
+    other.compact();
+    SkipList<K, V> result = emptyCopy();
+    SLNode<K, V>[] tails = result.tails();
+    SLNode<K, V> a = this.front.next(0);
+    SLNode<K, W> b = other.front.next(0);
+    while (a != null && b != null) {
+      int c = comparator.compare(a.key, b.key);
+      if (c == 0) {
+        result.append(tails, a.key, a.value);
+        a = a.next(0);
+        b = b.next(0);
+      } else if (c < 0) {
+        a = gallop(a, b.key, comparator);
+      } else {
+        b = gallop(b, a.key, comparator);
+      } // if/else
+    } // while
+    return result;
+  } // intersect(SkipList)
+
+  /**
+   * Build a new list of the keys in this list or other (or both), with the values from this
+   * list where there is a choice.  Runs of keys from only one list are copied without
+   * comparing each key.
+   */
+  public SkipList<K, V> union(SkipList<K, V> other) {
+    compact();
+    other.compact();
+    SkipList<K, V> result = emptyCopy();
+    SLNode<K, V>[] tails = result.tails();
+    SLNode<K, V> a = this.front.next(0);
+    SLNode<K, V> b = other.front.next(0);
+    while (a != null && b != null) {
+      int c = comparator.compare(a.key, b.key);
+      if (c == 0) {
+        result.append(tails, a.key, a.value);
+        a = a.next(0);
+        b = b.next(0);
+      } else if (c < 0) {
+        a = copyRun(result, tails, a, gallop(a, b.key, comparator));
+      } else {
+        b = copyRun(result, tails, b, gallop(b, a.key, comparator));
+      } // if/else
+    } // while
+    copyRun(result, tails, (a != null) ? a : b, null);
+    return result;
+  } // union(SkipList)
+
+  /**
+   * Build a new list of the keys in this list but not in other, with their values.  Gallops
+   * over runs of keys from either list, as in intersect.
+   */
+  public <W> SkipList<K, V> difference(SkipList<K, W> other) {
+    compact();
+    other.compact();
+    SkipList<K, V> result = emptyCopy();
+    SLNode<K, V>[] tails = result.tails();
+    SLNode<K, V> a = this.front.next(0);
+    SLNode<K, W> b = other.front.next(0);
+    while (a != null && b != null) {
+      int c = comparator.compare(a.key, b.key);
+      if (c == 0) {
+        a = a.next(0);
+        b = b.next(0);
+      } else if (c < 0) {
+        a = copyRun(result, tails, a, gallop(a, b.key, comparator));
+      } else {
+        b = gallop(b, a.key, comparator);
+      } // if/else
+    } // while
+    copyRun(result, tails, a, null);
+    return result;
+  } // difference(SkipList)
+
+  /**
+   * Lazily join this list with other on their keys: iterate the keys in both lists, in order,
+   * with the value from each.  Each step gallops ahead as intersect does.  The lists should
+   * not change while the iterator is in use.
+   */
+  public <W> Iterator<Match<K, V, W>> mergeJoin(SkipList<K, W> other) {
+    compact();
+    other.compact();
+    return new Iterator<Match<K, V, W>>() {
+      SLNode<K, V> a = SkipList.this.front.next(0);
+      SLNode<K, W> b = other.front.next(0);
+
+      /**
+       * The next match (or null, if we have not looked for it yet or there is none).
+       */
+      Match<K, V, W> match = null;
+
+      @Override
+      public boolean hasNext() {
+        while (this.match == null && this.a != null && this.b != null) {
+          int c = comparator.compare(this.a.key, this.b.key);
+          if (c == 0) {
+            this.match = new Match<K, V, W>(this.a.key, this.a.value, this.b.value);
+            this.a = this.a.next(0);
+            this.b = this.b.next(0);
+          } else if (c < 0) {
+            this.a = gallop(this.a, this.b.key, comparator);
+          } else {
+            this.b = gallop(this.b, this.a.key, comparator);
+          } // if/else
+        } // while
+        return this.match != null;
+      } // hasNext()
+
+      @Override
+      public Match<K, V, W> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        Match<K, V, W> result = this.match;
+        this.match = null;
+        return result;
+      } // next()
+    };
+  } // mergeJoin(SkipList)
+
+  /**
+   * Cache up to (about) capacity recently found nodes, so that repeated gets of popular keys
+   * skip the search.  The cache relies on equal keys having equal hash codes.  When the hit
+   * rate is too low to pay for itself, the cache is mostly bypassed (and rechecked now and
+   * then).
+   */
+  @SuppressWarnings("unchecked")
+  public void enableCache(int capacity) {
+    int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.cache = (SLNode<K, V>[]) new SLNode<?, ?>[slots];
+    this.cacheHits = 0;
+    this.cacheMisses = 0;
+    this.cacheWindowProbes = 0;
+    this.cacheWindowHits = 0;
+    this.cacheSkip = 0;
+  } // enableCache(int)
+
+  /**
+   * Stop caching nodes.
+   */
+  public void disableCache() {
+    this.cache = null;
+  } // disableCache()
+
+  /**
+   * Get the fraction of gets answered from the cache since it was enabled.
+   */
+  public double cacheHitRate() {
+    long total = this.cacheHits + this.cacheMisses;
+    return (total == 0) ? 0 : (double) this.cacheHits / total;
+  } // cacheHitRate()
+
+  /**
+   * Start recording a cost profile of gets, sets and removes (replacing any profile already
+   * being recorded).  Returns the new profile.
+   */
+  public SkipListProfile enableProfiling() {
+    this.profile = new SkipListProfile(this);
+    return this.profile;
+  } // enableProfiling()
+
+  /**
+   * Stop recording the cost profile.
+   */
+  public void disableProfiling() {
+    this.profile = null;
+  } // disableProfiling()
+
+  /**
+   * Get the cost profile being recorded (or null, if profiling is off).
+   */
+  public SkipListProfile profile() {
+    return this.profile;
+  } // profile()
+
+  /**
+   * Start capturing every change to the list in a new stream, which buffers at least
+   * capacity changes and applies policy when full (replacing, and closing, any stream already
+   * capturing).  Returns the new stream.  Costs nothing but a null check while off.
+   */
+  public SkipListChanges<K, V> enableChangeCapture(int capacity,
+      SkipListChanges.Policy policy) {
+    disableChangeCapture();
+    this.changes = new SkipListChanges<K, V>(capacity, policy);
+    return this.changes;
+  } // enableChangeCapture(int, Policy)
+
+  /**
+   * Stop capturing changes, and close the stream (so its consumer can tell it has seen
+   * them all).
+   */
+  public void disableChangeCapture() {
+    if (this.changes != null) {
+      this.changes.close();
+      this.changes = null;
+    } // if
+  } // disableChangeCapture()
+
+  /**
+   * Make remove lazy: it just marks the node it finds as a tombstone, which reads skip, and
+   * leaves unlinking it to compaction.  Compaction runs a step (of SWEEP_STEP nodes) at a
+   * time, from later removes, once tombstones outnumber the live nodes, or all at once when
+   * compact is called (say, when the list is idle).  Operations on whole ranges of the list
+   * compact it first.  An eager remove only relinks the node's own levels, so lazy removes
+   * are not faster by themselves (tombstones lengthen searches); they pay off when removed
+   * keys tend to come back, since set revives a tombstone in place.
+   */
+  public void enableLazyDeletes() {
+    if (this.duplicates) {
+      throw new IllegalStateException("lazy deletes do not work with duplicate keys");
+    } // if
+    this.lazy = true;
+  } // enableLazyDeletes()
+
+  /**
+   * Make remove unlink nodes right away again, after compacting the list.
+   */
+  public void disableLazyDeletes() {
+    this.lazy = false;
+    compact();
+  } // disableLazyDeletes()
+
+  /**
+   * Unlink every tombstone, and lower the height past any empty levels.  Returns the number
+   * of tombstones unlinked.
+   */
+  public int compact() {
+    if (this.tombstones == 0) {
+      return 0;
+    } // if
+    this.sweepKey = null;
+    return sweep(Integer.MAX_VALUE);
+  } // compact()
+
+  /**
+   * Get the number of tombstones waiting to be unlinked.
+   */
+  public int tombstones() {
+    return this.tombstones;
+  } // tombstones()
+
+  /**
+   * Let the list hold several entries with the same key (a multimap), as a queue of
+   * deadlines needs: set always adds a new entry, after any with an equal key, so entries
+   * with equal keys come out of pollFirst in the order they were set.  get, remove and the
+   * compute methods work on the first entry with the key.  Cannot be combined with lazy
+   * deletes, and the changes captured from such a list cannot be replayed faithfully.
+   */
+  public void enableDuplicateKeys() {
+    if (this.lazy) {
+      throw new IllegalStateException("duplicate keys do not work with lazy deletes");
+    } // if
+    this.duplicates = true;
+  } // enableDuplicateKeys()
+
+  /**
+   * Make set replace the value of an existing key again.  Duplicates already in the list stay.
+   */
+  public void disableDuplicateKeys() {
+    this.duplicates = false;
+  } // disableDuplicateKeys()
+
+  /**
+   * Get the first entry (or null, if the list is empty), without removing it.
+   */
+  public Map.Entry<K, V> peekFirst() {
+    SLNode<K, V> x = live(this.front.next(0));
+    return (x == null) ? null : new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value);
+  } // peekFirst()
+
+  /**
+   * Remove and return the first entry (or null, if the list is empty).  The front is the
+   * first node's predecessor on every one of its levels, so there is nothing to search for:
+   * this takes expected O(1) time (O(height) at worst).
+   */
+  public Map.Entry<K, V> pollFirst() {
+    SLNode<K, V> x = unlinkFirst();
+    shrink();
+    return (x == null) ? null : new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value);
+  } // pollFirst()
+
+  /**
+   * Remove and return up to n entries from the front of the list, in order.  Takes expected
+   * O(n) time, with no searching.
+   */
+  public List<Map.Entry<K, V>> pollFirstBatch(int n) {
+    ArrayList<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>(Math.min(n, this.size));
+    SLNode<K, V> x;
+    while (result.size() < n && (x = unlinkFirst()) != null) {
+      result.add(new AbstractMap.SimpleImmutableEntry<K, V>(x.key, x.value));
+    } // while
+    shrink();
+    return result;
+  } // pollFirstBatch(int)
+
+  /**
+   * Store the nodes added from now on compactly: nodes of height up to 4 (about 94% of them,
+   * when prob is 0.5) keep their pointers in fields, and taller ones in a plain array, rather
+   * than in an ArrayList.  That cuts the list's own memory by more than half.  Calls through
+   * the node classes can no longer be inlined, but on large lists the fewer cache misses more
+   * than make up for it.
+   */
+  public void enableCompactNodes() {
+    this.compact = true;
+  } // enableCompactNodes()
+
+  /**
+   * Go back to storing new nodes' pointers in ArrayLists.
+   */
+  public void disableCompactNodes() {
+    this.compact = false;
+  } // disableCompactNodes()
+
+  /**
+   * Estimate the bytes of heap taken by the nodes of the list (including the front node and
+   * the storage for their pointers), but not by the keys and values themselves.  The estimate
+   * follows HotSpot's object layout for the running JVM.
+   */
+  public long memoryFootprint() {
+    long bytes = 0;
+    for (SLNode<K, V> x = this.front; x != null; x = x.next(0)) {
+      bytes += x.footprint();
+    } // for
+    return bytes;
+  } // memoryFootprint()
+
+  /**
+   * Estimate the bytes of heap taken by the list, as in memoryFootprint(), plus the keys and
+   * values, as sized by keySize and valueSize.  (For example, a boxed Integer or Long takes
+   * SLNode.objectSize(0, 1) bytes.)  Keys and values shared between entries are counted each
+   * time.
+   */
+  public long memoryFootprint(ToLongFunction<? super K> keySize,
+      ToLongFunction<? super V> valueSize) {
+    long bytes = memoryFootprint();
+    for (SLNode<K, V> x = this.front.next(0); x != null; x = x.next(0)) {
+      bytes += keySize.applyAsLong(x.key) + valueSize.applyAsLong(x.value);
+    } // for
+    return bytes;
+  } // memoryFootprint(ToLongFunction, ToLongFunction)
+
+  /**
+   * Estimate the number of keys k with from <= k < to (either bound may be null, for no
+   * bound), in expected O(log n) time.  The towers are a built-in sample: about a fraction
+   * p^i of the keys reach level i, so we descend to the highest level with at least
+   * ESTIMATE_SAMPLE nodes in the range and scale their count by (1/p)^i, which is typically
+   * within 1/sqrt(ESTIMATE_SAMPLE) (about 12%) of the truth.  Ranges with fewer nodes than
+   * that are counted exactly, on level 0.
+   */
+  public long estimateCount(K from, K to) {
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      if (from != null) {
+        while (x.next(i) != null && comparator.compare(x.next(i).key, from) < 0) {
+          x = x.next(i);
+        } // while
+      } // if
+      int count = 0;
+      for (SLNode<K, V> y = x.next(i);
+          y != null && (to == null || comparator.compare(y.key, to) < 0); y = y.next(i)) {
+        if (i > 0 || y.value != TOMBSTONE) {
+          count++;
+        } // if
+      } // for
+      if (i == 0) {
+        return count;
+      } else if (count >= ESTIMATE_SAMPLE) {
+        return Math.round(count * Math.pow(1 / this.prob, i));
+      } // if/else
+    } // for
+    return 0;
+  } // estimateCount(K, K)
+
+  /**
+   * Get a histogram of the keys with the nodes on one level as the bucket boundaries: one
+   * bucket for the keys before the first node on the level, and one starting at each node.
+   * The higher the level, the fewer and larger the buckets (about (1/p)^level keys each).  The
+   * sizes of the buckets are estimated from the nodes on the level below, so they are exact
+   * for levels 0 and 1.  Takes time proportional to the number of nodes on the level below.
+   *
+   * @throws IllegalArgumentException if level is not between 0 and MAX_HEIGHT.
+   */
+  public List<Bucket<K>> histogram(int level) {
+    if (level < 0 || level > MAX_HEIGHT) {
+      throw new IllegalArgumentException("no level " + level);
+    } // if
+    ArrayList<Bucket<K>> result = new ArrayList<Bucket<K>>();
+    int below = Math.max(0, level - 1);
+    double scale = Math.pow(1 / this.prob, below);
+    SLNode<K, V> x = this.front;
+    while (x != null) {
+      SLNode<K, V> stop = (level < x.levels()) ? x.next(level) : null;
+      // on level 0 each bucket holds just the node that starts it
+      long count = 0;
+      if (level == 0) {
+        count = (x == this.front || x.value == TOMBSTONE) ? 0 : 1;
+      } else {
+        for (SLNode<K, V> y = (x == this.front) ? x.next(below) : x; y != stop;
+            y = y.next(below)) {
+          if (below > 0 || y.value != TOMBSTONE) {
+            count++;
+          } // if
+        } // for
+      } // if/else
+      result.add(new Bucket<K>((x == this.front) ? null : x.key, Math.round(count * scale)));
+      x = stop;
+    } // while
+    return result;
+  } // histogram(int)
+
   /**
    * Print some links (for dump).
    */
@@ -452,7 +1233,7 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
       /**
        * A reference to the next node to return.
        */
-      SLNode<K, V> next = SkipList.this.front.next.get(0);
+      SLNode<K, V> next = live(SkipList.this.front.next(0));
 
       @Override
       public boolean hasNext() {
@@ -462,64 +1243,458 @@ public class SkipList<K, V> implements SimpleMap<K, V> {
       @Override
       public SLNode<K, V> next() {
         if (this.next == null) {
-          throw new IllegalStateException();
+          throw new NoSuchElementException();
         }
         SLNode<K, V> temp = this.next;
-        this.next = this.next.next.get(0);
+        this.next = live(this.next.next(0));
         return temp;
       } // next();
     }; // new Iterator
   } // nodes()
 
-  // +---------+-----------------------------------------------------
-  // | Helpers |
-  // +---------+
+  /**
+   * Find the cache slot for a key.
+   */
+  int cacheSlot(K key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & (this.cache.length - 1);
+  } // cacheSlot(K)
 
-} // class SkipList
+  /**
+   * Count a cache probe.  At the end of each window of probes, if the hit rate was too low to
+   * pay for the probes (as with uniformly distributed keys), skip the cache for a while.
+   */
+  void noteCacheProbe() {
+    if (++this.cacheWindowProbes == CACHE_WINDOW) {
+      if (this.cacheWindowHits * 20 < CACHE_WINDOW) {
+        this.cacheSkip = 15 * CACHE_WINDOW;
+      } // if
+      this.cacheWindowProbes = 0;
+      this.cacheWindowHits = 0;
+    } // if
+  } // noteCacheProbe()
 
+  /**
+   * Make sure the cache no longer refers to a node that is leaving the list.
+   */
+  void uncache(SLNode<K, V> node) {
+    if (this.cache != null) {
+      int slot = cacheSlot(node.key);
+      if (this.cache[slot] == node) {
+        this.cache[slot] = null;
+      } // if
+    } // if
+  } // uncache(SLNode)
 
-/**
- * Nodes in the skip list.
- */
-class SLNode<K, V> {
+  /**
+   * Find, on each level, the last node whose key is less than key.  A null key is below
+   * every key if high is false (so we get the front) and above every key if high is true (so
+   * we get the last node).  Levels above the height get the front.
+   */
+  @SuppressWarnings("unchecked")
+  SLNode<K, V>[] predecessors(K key, boolean high) {
+    SLNode<K, V>[] update = (SLNode<K, V>[]) new SLNode<?, ?>[MAX_HEIGHT + 1];
+    for (int i = MAX_HEIGHT; i > this.height; i--) {
+      update[i] = this.front;
+    } // for
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      if (key != null || high) {
+        while (x.next(i) != null
+            && (key == null || comparator.compare(x.next(i).key, key) < 0)) {
+          x = x.next(i);
+        } // while
+      } // if
+      update[i] = x;
+    } // for
+    return update;
+  } // predecessors(K, boolean)
 
-  // +--------+------------------------------------------------------
-  // | Fields |
-  // +--------+
+  /**
+   * Find the node with the given key (or null, if there is none), leaving the last node
+   * before it on each level in path.
+   */
+  SLNode<K, V> descend(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
+      } // while
+      this.path[i] = x;
+    } // for
+    x = x.next(0);
+    if (x == null || comparator.compare(x.key, key) != 0) {
+      return null;
+    } else if (x.value == TOMBSTONE) {
+      // we have its predecessors, so finish removing it
+      for (int i = 0; i < x.levels(); i++) {
+        this.path[i].setNext(i, x.next(i));
+      } // for
+      this.tombstones--;
+      shrink();
+      return null;
+    } // if/else
+    return x;
+  } // descend(K)
 
   /**
-   * The key.
+   * Insert a new node after the nodes in path (which must come from a descent for key).
    */
-  K key;
+  void insert(K key, V value) {
+    int newLevel = randomLevel();
+    for (int i = this.height + 1; i <= newLevel; i++) {
+      this.path[i] = this.front;
+    } // for
+    this.height = Math.max(this.height, newLevel);
+    SLNode<K, V> x = newNode(key, value, newLevel);
+    for (int i = 0; i <= newLevel; i++) {
+      x.setNext(i, this.path[i].next(i));
+      this.path[i].setNext(i, x);
+    } // for
+    this.size++;
+    if (this.changes != null) {
+      this.changes.set(key, value);
+    } // if
+  } // insert(K, V)
 
   /**
-   * The value.
+   * Replace the value of a node.
    */
-  V value;
+  void replace(SLNode<K, V> x, V value) {
+    x.value = value;
+    if (this.changes != null) {
+      this.changes.set(x.key, value);
+    } // if
+  } // replace(SLNode, V)
 
   /**
-   * Pointers to the next nodes.
+   * Unlink a node found by the latest descent.
    */
-  ArrayList<SLNode<K, V>> next;
+  void unlink(SLNode<K, V> x) {
+    for (int i = 0; i < x.levels(); i++) {
+      this.path[i].setNext(i, x.next(i));
+    } // for
+    uncache(x);
+    shrink();
+    this.size--;
+    if (this.changes != null) {
+      this.changes.remove(x.key);
+    } // if
+  } // unlink(SLNode)
 
-  // +--------------+------------------------------------------------
-  // | Constructors |
-  // +--------------+
+  /**
+   * Unlink the first live node (and any tombstones before it) and return it (or null, if
+   * there is none).  Leaves lowering the height to the caller.
+   */
+  SLNode<K, V> unlinkFirst() {
+    SLNode<K, V> x;
+    while ((x = this.front.next(0)) != null) {
+      for (int i = 0; i < x.levels(); i++) {
+        this.front.setNext(i, x.next(i));
+      } // for
+      if (x.value != TOMBSTONE) {
+        uncache(x);
+        this.size--;
+        if (this.changes != null) {
+          this.changes.remove(x.key);
+        } // if
+        return x;
+      } // if
+      this.tombstones--;
+    } // while
+    return null;
+  } // unlinkFirst()
 
   /**
-   * Create a new node of height n with the specified key and value.
+   * Add a new node after any with the same key (for duplicate keys).
    */
-  public SLNode(K key, V value, int n) {
-    this.key = key;
-    this.value = value;
-    this.next = new ArrayList<SLNode<K, V>>(n + 1);
-    for (int i = 0; i <= n; i++) {
-      this.next.add(null);
+  void addLast(K key, V value) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) <= 0) {
+        x = x.next(i);
+      } // while
+      this.path[i] = x;
     } // for
-  } // SLNode(K, V, int)
+    insert(key, value);
+  } // addLast(K, V)
 
-  // +---------+-----------------------------------------------------
-  // | Methods |
-  // +---------+
+  /**
+   * Mark a node as removed, and take a step of compaction if there are too many tombstones.
+   */
+  @SuppressWarnings("unchecked")
+  void bury(SLNode<K, V> x) {
+    x.value = (V) TOMBSTONE;
+    uncache(x);
+    this.size--;
+    this.tombstones++;
+    if (this.tombstones > this.size + SWEEP_STEP) {
+      sweep(SWEEP_STEP);
+    } // if
+  } // bury(SLNode)
+
+  /**
+   * Look at up to budget nodes, starting at sweepKey, unlinking any tombstones, and move
+   * sweepKey past them (back to the front at the end of the list).  Returns the number of
+   * tombstones unlinked.
+   */
+  int sweep(int budget) {
+    // the last node before x on each level, once the tombstones are gone
+    SLNode<K, V>[] update = predecessors(this.sweepKey, false);
+    SLNode<K, V> x = update[0].next(0);
+    int removed = 0;
+    for (; x != null && budget > 0; x = x.next(0), budget--) {
+      if (x.value == TOMBSTONE) {
+        for (int i = 0; i < x.levels(); i++) {
+          update[i].setNext(i, x.next(i));
+        } // for
+        removed++;
+      } else {
+        for (int i = 0; i < x.levels(); i++) {
+          update[i] = x;
+        } // for
+      } // if/else
+    } // for
+    this.sweepKey = (x == null) ? null : x.key;
+    this.tombstones -= removed;
+    shrink();
+    return removed;
+  } // sweep(int)
+
+  /**
+   * Skip past any tombstones, starting at x.
+   */
+  static <K, V> SLNode<K, V> live(SLNode<K, V> x) {
+    while (x != null && x.value == TOMBSTONE) {
+      x = x.next(0);
+    } // while
+    return x;
+  } // live(SLNode)
+
+  /**
+   * Make a new node of the kind this list uses.
+   */
+  SLNode<K, V> newNode(K key, V value, int n) {
+    return this.compact ? SLNode.compact(key, value, n) : new SLNodeList<K, V>(key, value, n);
+  } // newNode(K, V, int)
+
+  /**
+   * Make a new, empty, list like this one.
+   */
+  SkipList<K, V> emptyCopy() {
+    SkipList<K, V> result = new SkipList<K, V>(this.comparator);
+    result.prob = this.prob;
+    result.random = this.random;
+    result.compact = this.compact;
+    result.lazy = this.lazy;
+    result.duplicates = this.duplicates;
+    return result;
+  } // emptyCopy()
+
+  /**
+   * Get the last node on each level (for appending).
+   */
+  SLNode<K, V>[] tails() {
+    return predecessors(null, true);
+  } // tails()
+
+  /**
+   * Add a key larger than any in the list to the end, given the last node on each level
+   * (which is kept up to date).
+   */
+  void append(SLNode<K, V>[] tails, K key, V value) {
+    int newLevel = randomLevel();
+    this.height = Math.max(this.height, newLevel);
+    SLNode<K, V> x = newNode(key, value, newLevel);
+    for (int i = 0; i <= newLevel; i++) {
+      tails[i].setNext(i, x);
+      tails[i] = x;
+    } // for
+    this.size++;
+  } // append(SLNode[], K, V)
+
+  /**
+   * Append the nodes from start up to (but not including) stop to result.  Returns stop.
+   */
+  static <K, V> SLNode<K, V> copyRun(SkipList<K, V> result, SLNode<K, V>[] tails,
+      SLNode<K, V> start, SLNode<K, V> stop) {
+    for (SLNode<K, V> x = start; x != stop; x = x.next(0)) {
+      if (x.value != TOMBSTONE) {
+        result.append(tails, x.key, x.value);
+      } // if
+    } // for
+    return stop;
+  } // copyRun(SkipList, SLNode[], SLNode, SLNode)
+
+  /**
+   * Find the first node at or after x whose key is at least key, where x's key is less than
+   * key.  Climbs x's tower (and those of the nodes it reaches) while the next node on a higher
+   * level is still too small, then descends, so the cost grows with the log of the distance
+   * covered rather than with the distance.
+   */
+  static <K, V> SLNode<K, V> gallop(SLNode<K, V> x, K key, Comparator<K> comparator) {
+    int i = 0;
+    while (true) {
+      while (i + 1 < x.levels() && x.next(i + 1) != null
+          && comparator.compare(x.next(i + 1).key, key) < 0) {
+        i++;
+      } // while
+      if (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
+      } else {
+        break;
+      } // if/else
+    } // while
+    for (; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
+      } // while
+    } // for
+    return x.next(0);
+  } // gallop(SLNode, K, Comparator)
+
+  /**
+   * Lower the height past any empty levels.
+   */
+  void shrink() {
+    while (this.height > 0 && this.front.next(this.height) == null) {
+      this.height--;
+    } // while
+  } // shrink()
+
+  /**
+   * Empty the cache (after removing many nodes at once).
+   */
+  void clearCache() {
+    if (this.cache != null) {
+      Arrays.fill(this.cache, null);
+    } // if
+  } // clearCache()
+
+  /**
+   * Count the nodes on level 0 from a up to (but not including) aStop, given that there are
+   * total nodes between that chain and the one starting at b.  Walks both chains together,
+   * so it only takes as long as the shorter one.
+   */
+  static <K, V> int countFirst(SLNode<K, V> a, SLNode<K, V> aStop, SLNode<K, V> b, int total) {
+    int steps = 0;
+    while (a != aStop && b != null) {
+      a = a.next(0);
+      b = b.next(0);
+      steps++;
+    } // while
+    return (a == aStop) ? steps : total - steps;
+  } // countFirst(SLNode, SLNode, SLNode, int)
+
+  /**
+   * Find the node with the given key (or null, if there is no such node).
+   */
+  SLNode<K, V> findNode(K key) {
+    SLNode<K, V> x = ceilingNode(key);
+    if (x != null && comparator.compare(x.key, key) == 0 && x.value != TOMBSTONE) {
+      return x;
+    } // if
+    return null;
+  } // findNode(K)
 
-} // SLNode<K,V>
+  /**
+   * Find the first node whose key is at least key (or null, if there is no such node).
+   * The node may be a tombstone.
+   */
+  SLNode<K, V> ceilingNode(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    SLNode<K, V> x = this.front;
+    for (int i = this.height; i >= 0; i--) {
+      while (x.next(i) != null && comparator.compare(x.next(i).key, key) < 0) {
+        x = x.next(i);
+      } // while
+    } // for
+    return x.next(0);
+  } // ceilingNode(K)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A key found by mergeJoin, with its value in each list.
+   */
+  public static class Match<K, V, W> {
+
+    /**
+     * The key.
+     */
+    final K key;
+
+    /**
+     * The value in the first list.
+     */
+    final V left;
+
+    /**
+     * The value in the second list.
+     */
+    final W right;
+
+    Match(K key, V left, W right) {
+      this.key = key;
+      this.left = left;
+      this.right = right;
+    } // Match(K, V, W)
+
+    public K key() {
+      return this.key;
+    } // key()
+
+    public V left() {
+      return this.left;
+    } // left()
+
+    public W right() {
+      return this.right;
+    } // right()
+  } // class Match
+
+  /**
+   * A bucket of a histogram: the keys from one key up to the start of the next bucket.
+   */
+  public static class Bucket<K> {
+
+    /**
+     * The first key in the bucket (or null, for the first bucket).
+     */
+    final K from;
+
+    /**
+     * The (estimated) number of keys in the bucket.
+     */
+    final long count;
+
+    Bucket(K from, long count) {
+      this.from = from;
+      this.count = count;
+    } // Bucket(K, long)
+
+    public K from() {
+      return this.from;
+    } // from()
+
+    public long count() {
+      return this.count;
+    } // count()
+
+    @Override
+    public String toString() {
+      return "[" + this.from + ": " + this.count + "]";
+    } // toString()
+  } // class Bucket
+
+} // class SkipList
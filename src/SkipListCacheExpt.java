@@ -0,0 +1,70 @@
+import java.util.Random;
+
+/**
+ * Measure the latency of SkipList.get with and without the hot-key cache, on a skewed (Zipf
+ * 1.1) workload and on a uniform one.
+ *
+ * Usage: java SkipListCacheExpt [keys] [gets] [cacheSize]
+ */
+public class SkipListCacheExpt {
+
+  /**
+   * Time gets of the given keys, returning nanoseconds per get.
+   */
+  static double time(SkipList<Integer, Integer> list, int[] probes) {
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int probe : probes) {
+      sum += list.get(probe);
+    } // for
+    long elapsed = System.nanoTime() - start;
+    if (sum == 42) {
+      System.out.print(""); // keep the loop from being optimized away
+    } // if
+    return (double) elapsed / probes.length;
+  } // time(SkipList, int[])
+
+  /**
+   * Compare the plain and cached lists on one workload.
+   */
+  static void compare(String label, int n, int[] probes, int cacheSize) {
+    SkipList<Integer, Integer> plain = new SkipList<Integer, Integer>(Integer::compare);
+    SkipList<Integer, Integer> cached = new SkipList<Integer, Integer>(Integer::compare);
+    for (int i = 0; i < n; i++) {
+      plain.set(i, i);
+      cached.set(i, i);
+    } // for
+    cached.enableCache(cacheSize);
+    double a = 0;
+    double b = 0;
+    for (int round = 0; round < 5; round++) {
+      // the first rounds are warm-up
+      a = time(plain, probes);
+      b = time(cached, probes);
+    } // for
+    System.out.printf("%-8s plain %7.1f ns/get   cached %7.1f ns/get   hit rate %5.1f%%%n",
+        label, a, b, 100 * cached.cacheHitRate());
+  } // compare(String, int, int[], int)
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+    int gets = (args.length > 1) ? Integer.parseInt(args[1]) : 2000000;
+    int cacheSize = (args.length > 2) ? Integer.parseInt(args[2]) : 4096;
+    Random random = new Random(30);
+
+    // Zipfian ranks, scattered over the key space so hot keys are not neighbors
+    ZipfianGenerator zipf = new ZipfianGenerator(n, 1.1, random);
+    int[] skewed = new int[gets];
+    for (int i = 0; i < gets; i++) {
+      skewed[i] = (int) ((zipf.next() * 2654435761L) % n);
+    } // for
+    int[] uniform = new int[gets];
+    for (int i = 0; i < gets; i++) {
+      uniform[i] = random.nextInt(n);
+    } // for
+
+    compare("zipf1.1", n, skewed, cacheSize);
+    compare("uniform", n, uniform, cacheSize);
+  } // main(String[])
+
+} // class SkipListCacheExpt
@@ -0,0 +1,255 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A stream of the changes made to a SkipList, for keeping replicas and indexes in sync
+ * without diffing the whole list.
+ *
+ * The list appends an event for every set and remove (and one per removeRange or split) to
+ * a bounded ring buffer, and a consumer, usually on another thread, takes them off in
+ * batches with poll.  There is one producer (the thread updating the list) and one consumer,
+ * so the buffer needs no locks: each side publishes its position with an ordered write, and
+ * the consumer reads the producer's position once per batch.  When the buffer is full, the
+ * policy decides whether the producer waits for the consumer, fails, or drops the event.
+ */
+public class SkipListChanges<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The kinds of events.
+   */
+  static final byte SET = 0;
+  static final byte REMOVE = 1;
+  static final byte REMOVE_RANGE = 2;
+
+  /**
+   * What to do when an event arrives and the buffer is full.
+   */
+  public enum Policy {
+    /**
+     * Wait for the consumer to make room.  (So the consumer must not be on the thread that
+     * updates the list.)
+     */
+    BLOCK,
+
+    /**
+     * Throw an IllegalStateException (after the list has changed).
+     */
+    FAIL,
+
+    /**
+     * Drop the event and count it.  Only for consumers that can tolerate gaps.
+     */
+    DROP
+  } // enum Policy
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The kind, key, value and (for ranges) end key of each buffered event.
+   */
+  final byte[] kinds;
+  final Object[] keys;
+  final Object[] values;
+  final Object[] ends;
+
+  /**
+   * The buffer's capacity, less one (the capacity is a power of two).
+   */
+  final int mask;
+
+  /**
+   * What to do when the buffer is full.
+   */
+  final Policy policy;
+
+  /**
+   * The number of events taken by the consumer.
+   */
+  final AtomicLong head = new AtomicLong();
+
+  /**
+   * The number of events added by the producer.
+   */
+  final AtomicLong tail = new AtomicLong();
+
+  /**
+   * The producer's last look at head (so that it rarely has to read the consumer's
+   * position).
+   */
+  long knownHead = 0;
+
+  /**
+   * The number of events dropped.
+   */
+  volatile long dropped = 0;
+
+  /**
+   * Whether the producer has stopped adding events.
+   */
+  volatile boolean closed = false;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a stream that buffers at least capacity events.
+   */
+  public SkipListChanges(int capacity, Policy policy) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.kinds = new byte[size];
+    this.keys = new Object[size];
+    this.values = new Object[size];
+    this.ends = new Object[size];
+    this.mask = size - 1;
+    this.policy = policy;
+  } // SkipListChanges(int, Policy)
+
+  // +-----------+---------------------------------------------------
+  // | Consuming |
+  // +-----------+
+
+  /**
+   * Pass up to max buffered events to handler, in order.  Returns the number passed.
+   */
+  @SuppressWarnings("unchecked")
+  public int poll(Handler<? super K, ? super V> handler, int max) {
+    long first = this.head.get();
+    int n = (int) Math.min(max, this.tail.get() - first);
+    for (int i = 0; i < n; i++) {
+      int slot = (int) (first + i) & this.mask;
+      K key = (K) this.keys[slot];
+      switch (this.kinds[slot]) {
+        case SET:
+          handler.set(key, (V) this.values[slot]);
+          break;
+        case REMOVE:
+          handler.remove(key);
+          break;
+        default:
+          handler.removeRange(key, (K) this.ends[slot]);
+      } // switch
+      // let the garbage collector have them
+      this.keys[slot] = null;
+      this.values[slot] = null;
+      this.ends[slot] = null;
+    } // for
+    this.head.lazySet(first + n);
+    return n;
+  } // poll(Handler, int)
+
+  /**
+   * Determine how many events are waiting.
+   */
+  public int pending() {
+    return (int) (this.tail.get() - this.head.get());
+  } // pending()
+
+  /**
+   * Determine whether the producer has stopped adding events and the consumer has taken all
+   * of them.
+   */
+  public boolean finished() {
+    return this.closed && pending() == 0;
+  } // finished()
+
+  /**
+   * Get the number of events dropped because the buffer was full.
+   */
+  public long dropped() {
+    return this.dropped;
+  } // dropped()
+
+  // +-----------+---------------------------------------------------
+  // | Producing |
+  // +-----------+
+
+  /**
+   * Note that key was set to value.
+   */
+  void set(K key, V value) {
+    add(SET, key, value, null);
+  } // set(K, V)
+
+  /**
+   * Note that key was removed.
+   */
+  void remove(K key) {
+    add(REMOVE, key, null, null);
+  } // remove(K)
+
+  /**
+   * Note that every key k with from <= k < to was removed (where null is no bound).
+   */
+  void removeRange(K from, K to) {
+    add(REMOVE_RANGE, from, null, to);
+  } // removeRange(K, K)
+
+  /**
+   * Stop adding events.
+   */
+  void close() {
+    this.closed = true;
+  } // close()
+
+  /**
+   * Append an event, if there is room (or the policy makes some).
+   */
+  void add(byte kind, K key, V value, K end) {
+    long t = this.tail.get();
+    if (t - this.knownHead > this.mask) {
+      this.knownHead = this.head.get();
+      if (t - this.knownHead > this.mask) {
+        switch (this.policy) {
+          case FAIL:
+            throw new IllegalStateException("change buffer full");
+          case DROP:
+            this.dropped++;
+            return;
+          default:
+            while (t - this.knownHead > this.mask) {
+              LockSupport.parkNanos(1000);
+              this.knownHead = this.head.get();
+            } // while
+        } // switch
+      } // if
+    } // if
+    int slot = (int) t & this.mask;
+    this.kinds[slot] = kind;
+    this.keys[slot] = key;
+    this.values[slot] = value;
+    this.ends[slot] = end;
+    this.tail.lazySet(t + 1);
+  } // add(byte, K, V, K)
+
+  // +------------+--------------------------------------------------
+  // | Interfaces |
+  // +------------+
+
+  /**
+   * Something that takes change events.
+   */
+  public interface Handler<K, V> {
+    /**
+     * Key was set to value.
+     */
+    public void set(K key, V value);
+
+    /**
+     * Key was removed.
+     */
+    public void remove(K key);
+
+    /**
+     * Every key k with from <= k < to was removed (where null is no bound).
+     */
+    public void removeRange(K from, K to);
+  } // interface Handler
+
+} // class SkipListChanges
@@ -1,11 +1,120 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Random;
-import java.util.function.BiConsumer;
-import java.io.PrintWriter;
 
+/**
+ * Experiments with skip lists (and other SimpleMaps).
+ *
+ * <pre>
+ * java SkipListExpt counts
+ *   The original cost analysis: print the cost counters of set and remove as the list grows.
+ *
+ * java SkipListExpt profile [N [P]]
+ *   Build a list of N random keys (default 100000) with probability P (default 0.5), get,
+ *   replace and remove keys while profiling it, and compare the hops per level, comparator
+ *   calls and level sizes with the cost model, flagging anything degenerate.
+ *
+ * java SkipListExpt memory [N]
+ *   Build lists of N random Integer keys (default 1000000) with each kind of node, and
+ *   print the bytes per entry (node, pointer storage and boxed key) and the time per get.
+ *
+ * java SkipListExpt deletes [N]
+ *   Load N random keys (default 1000000), remove half of them in one batch, eagerly and
+ *   lazily, and print the latency of the removes and the time to compact afterwards.
+ *
+ * java SkipListExpt ycsb [options]
+ *   Load a map and run a YCSB-style mix of reads, updates, inserts and scans against it.
+ *
+ * java SkipListExpt replay FILE [options]
+ *   Replay a recorded trace of operations, one per line:
+ *     get KEY | set KEY [VALUE] | remove KEY | scan KEY LENGTH
+ *   (blank lines and lines starting with # are ignored).
+ *
+ * Options (all of the form --name=value):
+ *   map        the SimpleMap class to test, with Integer keys (default SkipList); it needs a
+ *              constructor that takes a Comparator, or failing that a no-argument one
+ *   records    keys loaded before the run (default 100000 for ycsb, 0 for replay)
+ *   ops        operations to run (default 1000000; ycsb only)
+ *   threads    client threads (default 1)
+ *   read, update, insert, scan
+ *              the operation mix (default read=0.5, update=0.5)
+ *   dist       uniform, zipfian or latest (default zipfian)
+ *   theta      the Zipfian skew (default 0.99)
+ *   scanlength the number of pairs per scan (default 100)
+ *   concurrent true if the map is thread-safe; otherwise a multi-threaded run wraps it in a
+ *              SynchronizedMap (default false)
+ *   record     also write the generated operations to this trace file
+ *   seed       the random seed (default 31)
+ * </pre>
+ *
+ * Runs report throughput and, for each kind of operation, the p50/p99/p999 latency and the
+ * distribution of comparisons per operation.
+ */
 public class SkipListExpt {
-  public static void main(String[] args) {  
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Kinds of operations.
+   */
+  static final int GET = 0;
+  static final int SET = 1;
+  static final int REMOVE = 2;
+  static final int SCAN = 3;
+
+  /**
+   * Names of the kinds of operations (as they appear in traces).
+   */
+  static final String[] KINDS = {"get", "set", "remove", "scan"};
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) throws Exception {
+    String mode = (args.length > 0) ? args[0] : "counts";
+    if (mode.equals("counts")) {
+      counts();
+    } else if (mode.equals("profile")) {
+      int n = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+      double p = (args.length > 2) ? Double.parseDouble(args[2]) : 0.5;
+      profile(n, p);
+    } else if (mode.equals("memory")) {
+      memory((args.length > 1) ? Integer.parseInt(args[1]) : 1000000);
+    } else if (mode.equals("deletes")) {
+      deletes((args.length > 1) ? Integer.parseInt(args[1]) : 1000000);
+    } else if (mode.equals("ycsb")) {
+      Options opts = new Options(args, 1, 100000);
+      run(opts, generate(opts));
+    } else if (mode.equals("replay") && args.length > 1) {
+      Options opts = new Options(args, 2, 0);
+      run(opts, read(args[1], opts.threads));
+    } else {
+      System.err.println("usage: java SkipListExpt counts | profile [N [P]] | memory [N] "
+          + "| deletes [N] | ycsb [--option=value ...] | replay FILE [--option=value ...]");
+      System.exit(1);
+    } // if/else
+  } // main(String[])
+
+  // +-------------------+-------------------------------------------
+  // | Cost counter runs |
+  // +-------------------+
+
+  /**
+   * Our original cost analysis: print the counters after each set (and remove) as the list
+   * grows.
+   */
+  static void counts() {
     Comparator<Integer> comp = new Comparator<Integer>() {
 
       @Override
@@ -14,7 +123,7 @@ public class SkipListExpt {
       }
 
     };
-    
+
     // These are our cost analysis tests
     // LINK TO GRAPH/TABLE: https://docs.google.com/spreadsheets/d/1r5SE8zE0NX_u_9QgU_hTFw718Oyfs8Myfxm5xfXCGaA/edit?usp=sharing
     // To our eyes, the graphs appear to be logarithmic, and so the major functions are all probably in O(log(n)) (on average).
@@ -26,7 +135,7 @@ public class SkipListExpt {
       System.out.println(sl.setCount);
       //System.out.println(sl.getCount);
     }
-    
+
     SkipList<Integer, Integer> slr = new SkipList<Integer, Integer>(comp);
     for (int i = 1; i < 1000; i++) {
       slr.set(i, i);
@@ -34,51 +143,524 @@ public class SkipListExpt {
       slr.set(i, i);
       System.out.println(slr.removeCount);
     }
-    
-    /*
-    The following comment includes basic tests
-  
-    SkipList<Integer, String> sl = new SkipList<Integer, String>(comp);
-
-    sl.set(1, "test");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(2, "word");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(1, "newtest");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(5, "continue");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(3, "banana");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(2, "howdy");
-    sl.dump(new PrintWriter(System.out, true));
-    sl.set(-1, "negative");
-    sl.dump(new PrintWriter(System.out, true));
-    System.out.println(sl.height);
-    
-    System.out.println(sl.get(2));
-    System.out.println(sl.get(6));
-    System.out.println(sl.get(2));
-    System.out.println(sl.get(-1));
-    System.out.println(sl.get(5));
-    // BiConsumer to compare both lists
-    BiConsumer<Integer, String> inc = (a, b) -> {
-      if (a == 2) {
-        System.out.println("it is 2");
-      } else {
-        System.out.println("it is not 2");
-      }
-    };
+  } // counts()
+
+  /**
+   * Profile a list of n random keys built with probability p: load it, then get every key,
+   * replace every key, and remove half of them (and put them back) while profiling.
+   */
+  static void profile(int n, double p) {
+    Random random = new Random(31);
+    SkipList<Integer, Integer> list =
+        new SkipList<Integer, Integer>((i1, i2) -> i1.compareTo(i2));
+    list.prob = p;
+    list.random = random;
+    ArrayList<Integer> keys = new ArrayList<Integer>(n);
+    for (int i = 0; i < n; i++) {
+      keys.add(i);
+    } // for
+    Collections.shuffle(keys, random);
+    for (int key : keys) {
+      list.set(key, key);
+    } // for
+
+    SkipListProfile prof = list.enableProfiling();
+    Collections.shuffle(keys, random);
+    for (int key : keys) {
+      list.get(key);
+    } // for
+    for (int key : keys) {
+      list.set(key, -key);
+    } // for
+    for (int i = 0; i < n / 2; i++) {
+      list.remove(keys.get(i));
+    } // for
+    for (int i = 0; i < n / 2; i++) {
+      list.set(keys.get(i), keys.get(i));
+    } // for
+    prof.report(new PrintWriter(System.out, true));
+  } // profile(int, double)
 
-    sl.dump(new PrintWriter(System.out, true));
-    
-    sl.forEach(inc);
-    Iterator<SLNode<Integer, String>> it = sl.nodes();
+  /**
+   * Compare the memory per entry, and the speed of gets, of lists of n random keys with the
+   * original and the compact nodes.
+   */
+  static void memory(int n) {
+    Random random = new Random(31);
+    Integer[] keys = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = random.nextInt();
+    } // for
+    long box = SLNode.objectSize(0, 1);
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      for (boolean compact : new boolean[] {false, true}) {
+        SkipList<Integer, Integer> list =
+            new SkipList<Integer, Integer>((i1, i2) -> i1.compareTo(i2));
+        if (compact) {
+          list.enableCompactNodes();
+        } // if
+        for (Integer key : keys) {
+          list.set(key, key);
+        } // for
+        long sum = 0;
+        long start = System.nanoTime();
+        for (Integer key : keys) {
+          sum += list.get(key);
+        } // for
+        double ns = (double) (System.nanoTime() - start) / n;
+        if (round == 2) {
+          double nodes = (double) list.memoryFootprint() / list.size();
+          System.out.printf("%-8s %5.1f bytes/entry in nodes + %d per boxed key = %5.1f, "
+              + "%5.1f ns/get (checksum %d)%n", compact ? "compact" : "original", nodes, box,
+              nodes + box, ns, sum);
+        } // if
+      } // for
+    } // for
+  } // memory(int)
 
-    while (it.hasNext()) {
-      SLNode<Integer, String> temp = it.next();
-      pen.println(temp.key + ", " + temp.value);
+  /**
+   * Compare the latency of removing half of a list of n random keys in one batch, eagerly
+   * and lazily.
+   */
+  static void deletes(int n) {
+    Random random = new Random(31);
+    Integer[] keys = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = random.nextInt();
+    } // for
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      for (boolean lazy : new boolean[] {false, true}) {
+        SkipList<Integer, Integer> list =
+            new SkipList<Integer, Integer>((i1, i2) -> i1.compareTo(i2));
+        for (Integer key : keys) {
+          list.set(key, key);
+        } // for
+        if (lazy) {
+          list.enableLazyDeletes();
+        } // if
+        long[] latencies = new long[n / 2];
+        long start = System.nanoTime();
+        for (int i = 0; i < n / 2; i++) {
+          long before = System.nanoTime();
+          list.remove(keys[i]);
+          latencies[i] = System.nanoTime() - before;
+        } // for
+        long total = System.nanoTime() - start;
+        long compacting = System.nanoTime();
+        list.compact();
+        compacting = System.nanoTime() - compacting;
+        Arrays.sort(latencies);
+        if (round == 2) {
+          System.out.printf("%-5s removes: %.1f ns/op, p50 %d, p99 %d, p999 %d, max %d ns; "
+              + "then compact %.1f ms%n", lazy ? "lazy" : "eager", (double) total / (n / 2),
+              percentile(latencies, 0.5), percentile(latencies, 0.99),
+              percentile(latencies, 0.999), latencies[latencies.length - 1],
+              compacting / 1e6);
+        } // if
+      } // for
+    } // for
+  } // deletes(int)
+
+  // +-----------+---------------------------------------------------
+  // | Workloads |
+  // +-----------+
+
+  /**
+   * Generate a YCSB-style workload, one list of operations per thread.
+   */
+  static ArrayList<ArrayList<Op>> generate(Options opts) throws IOException {
+    Random random = new Random(opts.seed);
+    ZipfianGenerator zipf = new ZipfianGenerator(Math.max(1, opts.records), opts.theta, random);
+    double total = opts.read + opts.update + opts.insert + opts.scan;
+    int inserted = opts.records;
+    ArrayList<ArrayList<Op>> result = new ArrayList<ArrayList<Op>>();
+    for (int t = 0; t < opts.threads; t++) {
+      result.add(new ArrayList<Op>());
+    } // for
+    for (int i = 0; i < opts.ops; i++) {
+      double r = random.nextDouble() * total;
+      Op op;
+      if (r < opts.insert) {
+        op = new Op(SET, inserted++, 0);
+      } else {
+        int key;
+        if (opts.dist.equals("uniform")) {
+          key = random.nextInt(Math.max(1, inserted));
+        } else if (opts.dist.equals("latest")) {
+          key = Math.max(0, inserted - 1 - zipf.next());
+        } else {
+          // scatter the popular ranks over the key space
+          key = (int) ((zipf.next() * 2654435761L) % Math.max(1, inserted));
+        } // if/else
+        r -= opts.insert;
+        if (r < opts.read) {
+          op = new Op(GET, key, 0);
+        } else if (r < opts.read + opts.update) {
+          op = new Op(SET, key, 0);
+        } else {
+          op = new Op(SCAN, key, opts.scanLength);
+        } // if/else
+      } // if/else
+      result.get(i % opts.threads).add(op);
+    } // for
+    if (opts.record != null) {
+      PrintWriter pen = new PrintWriter(opts.record);
+      for (int i = 0; i < opts.ops; i++) {
+        pen.println(result.get(i % opts.threads).get(i / opts.threads));
+      } // for
+      pen.close();
+    } // if
+    return result;
+  } // generate(Options)
+
+  /**
+   * Read a trace, dealing its operations out to the threads in turn.
+   */
+  static ArrayList<ArrayList<Op>> read(String file, int threads) throws IOException {
+    ArrayList<ArrayList<Op>> result = new ArrayList<ArrayList<Op>>();
+    for (int t = 0; t < threads; t++) {
+      result.add(new ArrayList<Op>());
+    } // for
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    String line;
+    int n = 0;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      } // if
+      String[] parts = line.split("\\s+");
+      int kind = Arrays.asList(KINDS).indexOf(parts[0]);
+      if (kind < 0 || parts.length < 2 || (kind == SCAN && parts.length < 3)) {
+        in.close();
+        throw new IOException(file + ":" + lineNumber + ": cannot parse '" + line + "'");
+      } // if
+      int arg = (parts.length > 2) ? Integer.parseInt(parts[2]) : 0;
+      result.get(n++ % threads).add(new Op(kind, Integer.parseInt(parts[1]), arg));
     } // while
-    */
-  } // main
-} // class
+    in.close();
+    return result;
+  } // read(String, int)
+
+  /**
+   * Load the map, run the operations and report.
+   */
+  static void run(Options opts, ArrayList<ArrayList<Op>> work) throws Exception {
+    CountingComparator comparator = new CountingComparator();
+    SimpleMap<Integer, Integer> map = makeMap(opts.map, comparator);
+    if (opts.threads > 1 && !opts.concurrent) {
+      map = new SynchronizedMap<Integer, Integer>(map);
+    } // if
+
+    // load the initial records in random order
+    ArrayList<Integer> keys = new ArrayList<Integer>();
+    for (int i = 0; i < opts.records; i++) {
+      keys.add(i);
+    } // for
+    Collections.shuffle(keys, new Random(opts.seed));
+    for (Integer key : keys) {
+      map.set(key, key);
+    } // for
+
+    // run
+    final SimpleMap<Integer, Integer> target = map;
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    ArrayList<Result> results = new ArrayList<Result>();
+    for (ArrayList<Op> ops : work) {
+      Result result = new Result(ops.size());
+      results.add(result);
+      threads.add(new Thread(() -> result.run(target, ops, comparator)));
+    } // for
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    double secs = (System.nanoTime() - start) / 1e9;
+    report(opts, results, secs, comparator.works);
+  } // run(Options, ArrayList)
+
+  /**
+   * Print throughput and per-operation statistics.
+   */
+  static void report(Options opts, ArrayList<Result> results, double secs, boolean counted) {
+    int total = 0;
+    for (Result result : results) {
+      total += result.kinds.length;
+    } // for
+    System.out.printf("map %s, %d records, %d threads: %d ops in %.2f s = %.0f ops/s%n",
+        opts.map, opts.records, opts.threads, total, secs, total / secs);
+    System.out.println("op       count    p50(us)   p99(us)  p999(us)   cmp-mean cmp-p50 "
+        + "cmp-p99 cmp-max");
+    for (int kind = 0; kind < KINDS.length; kind++) {
+      long[] lat = new long[total];
+      long[] cmp = new long[total];
+      int n = 0;
+      for (Result result : results) {
+        for (int i = 0; i < result.kinds.length; i++) {
+          if (result.kinds[i] == kind) {
+            lat[n] = result.nanos[i];
+            cmp[n] = result.comparisons[i];
+            n++;
+          } // if
+        } // for
+      } // for
+      if (n == 0) {
+        continue;
+      } // if
+      lat = Arrays.copyOf(lat, n);
+      cmp = Arrays.copyOf(cmp, n);
+      Arrays.sort(lat);
+      Arrays.sort(cmp);
+      double mean = 0;
+      for (long c : cmp) {
+        mean += c;
+      } // for
+      mean /= n;
+      if (counted) {
+        System.out.printf("%-6s %8d %10.2f %9.2f %9.2f %10.1f %7d %7d %7d%n", KINDS[kind], n,
+            percentile(lat, 0.5) / 1e3, percentile(lat, 0.99) / 1e3,
+            percentile(lat, 0.999) / 1e3, mean, percentile(cmp, 0.5), percentile(cmp, 0.99),
+            cmp[n - 1]);
+      } else {
+        System.out.printf("%-6s %8d %10.2f %9.2f %9.2f        n/a%n", KINDS[kind], n,
+            percentile(lat, 0.5) / 1e3, percentile(lat, 0.99) / 1e3,
+            percentile(lat, 0.999) / 1e3);
+      } // if/else
+    } // for
+  } // report(Options, ArrayList, double, boolean)
+
+  /**
+   * Get a percentile of sorted values.
+   */
+  static long percentile(long[] sorted, double p) {
+    return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+  } // percentile(long[], double)
+
+  /**
+   * Make a map of the named class, with the given comparator if it takes one.
+   */
+  @SuppressWarnings("unchecked")
+  static SimpleMap<Integer, Integer> makeMap(String name, CountingComparator comparator)
+      throws ReflectiveOperationException {
+    Class<?> c = Class.forName(name);
+    try {
+      Constructor<?> con = c.getConstructor(Comparator.class);
+      comparator.works = true;
+      return (SimpleMap<Integer, Integer>) con.newInstance(comparator);
+    } catch (NoSuchMethodException e) {
+      return (SimpleMap<Integer, Integer>) c.getConstructor().newInstance();
+    } // try/catch
+  } // makeMap(String, CountingComparator)
+
+  /**
+   * Visit up to length pairs starting at key start; returns the number visited.
+   */
+  static int scan(SimpleMap<Integer, Integer> map, int start, int length) {
+    int n = 0;
+    if (map instanceof SynchronizedMap) {
+      synchronized (map) {
+        return scan(((SynchronizedMap<Integer, Integer>) map).map, start, length);
+      } // synchronized
+    } else if (map instanceof SkipList) {
+      SLNode<Integer, Integer> node = ((SkipList<Integer, Integer>) map).ceilingNode(start);
+      for (; node != null && n < length; node = node.next(0)) {
+        n++;
+      } // for
+    } else if (map instanceof ShardedSkipList) {
+      ShardedSkipList<Integer, Integer>.ShardIterator it =
+          ((ShardedSkipList<Integer, Integer>) map).new ShardIterator(start, null);
+      for (; n < length && it.hasNext(); n++) {
+        it.advance();
+      } // for
+    } else {
+      // no way to seek, so walk from the beginning
+      Iterator<Integer> keys = map.keys();
+      while (keys.hasNext() && n < length) {
+        if (keys.next() >= start) {
+          n++;
+        } // if
+      } // while
+    } // if/else
+    return n;
+  } // scan(SimpleMap, int, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The settings for a run.
+   */
+  static class Options {
+    String map = "SkipList";
+    int records;
+    int ops = 1000000;
+    int threads = 1;
+    double read = 0.5;
+    double update = 0.5;
+    double insert = 0;
+    double scan = 0;
+    String dist = "zipfian";
+    double theta = 0.99;
+    int scanLength = 100;
+    boolean concurrent = false;
+    String record = null;
+    long seed = 31;
+
+    /**
+     * Parse the --name=value options in args, starting at args[from].
+     */
+    Options(String[] args, int from, int records) {
+      this.records = records;
+      for (int i = from; i < args.length; i++) {
+        String[] nv = args[i].replaceFirst("^--", "").split("=", 2);
+        String v = (nv.length > 1) ? nv[1] : "true";
+        switch (nv[0]) {
+          case "map":
+            this.map = v;
+            break;
+          case "records":
+            this.records = Integer.parseInt(v);
+            break;
+          case "ops":
+            this.ops = Integer.parseInt(v);
+            break;
+          case "threads":
+            this.threads = Integer.parseInt(v);
+            break;
+          case "read":
+            this.read = Double.parseDouble(v);
+            break;
+          case "update":
+            this.update = Double.parseDouble(v);
+            break;
+          case "insert":
+            this.insert = Double.parseDouble(v);
+            break;
+          case "scan":
+            this.scan = Double.parseDouble(v);
+            break;
+          case "dist":
+            this.dist = v;
+            break;
+          case "theta":
+            this.theta = Double.parseDouble(v);
+            break;
+          case "scanlength":
+            this.scanLength = Integer.parseInt(v);
+            break;
+          case "concurrent":
+            this.concurrent = Boolean.parseBoolean(v);
+            break;
+          case "record":
+            this.record = v;
+            break;
+          case "seed":
+            this.seed = Long.parseLong(v);
+            break;
+          default:
+            throw new IllegalArgumentException("unknown option " + args[i]);
+        } // switch
+      } // for
+    } // Options(String[], int, int)
+  } // class Options
+
+  /**
+   * One operation of a workload.
+   */
+  static class Op {
+    final int kind;
+    final int key;
+    final int arg;
+
+    Op(int kind, int key, int arg) {
+      this.kind = kind;
+      this.key = key;
+      this.arg = arg;
+    } // Op(int, int, int)
+
+    @Override
+    public String toString() {
+      switch (this.kind) {
+        case SCAN:
+          return "scan " + this.key + " " + this.arg;
+        default:
+          return KINDS[this.kind] + " " + this.key;
+      } // switch
+    } // toString()
+  } // class Op
+
+  /**
+   * The measurements of one thread.
+   */
+  static class Result {
+    final int[] kinds;
+    final long[] nanos;
+    final long[] comparisons;
+
+    Result(int n) {
+      this.kinds = new int[n];
+      this.nanos = new long[n];
+      this.comparisons = new long[n];
+    } // Result(int)
+
+    /**
+     * Run the operations, recording each one's latency and comparisons.
+     */
+    void run(SimpleMap<Integer, Integer> map, ArrayList<Op> ops, CountingComparator counter) {
+      long[] count = counter.counts.get();
+      for (int i = 0; i < ops.size(); i++) {
+        Op op = ops.get(i);
+        long before = count[0];
+        long start = System.nanoTime();
+        switch (op.kind) {
+          case GET:
+            map.get(op.key);
+            break;
+          case SET:
+            map.set(op.key, op.arg);
+            break;
+          case REMOVE:
+            map.remove(op.key);
+            break;
+          default:
+            scan(map, op.key, op.arg);
+            break;
+        } // switch
+        this.nanos[i] = System.nanoTime() - start;
+        this.comparisons[i] = count[0] - before;
+        this.kinds[i] = op.kind;
+      } // for
+    } // run(SimpleMap, ArrayList, CountingComparator)
+  } // class Result
+
+  /**
+   * Compares integers, counting comparisons per thread.
+   */
+  static class CountingComparator implements Comparator<Integer> {
+
+    /**
+     * Each thread's count.
+     */
+    final ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Whether the map under test actually uses this comparator.
+     */
+    boolean works = false;
+
+    @Override
+    public int compare(Integer i1, Integer i2) {
+      this.counts.get()[0]++;
+      return Integer.compare(i1, i2);
+    } // compare(Integer, Integer)
+  } // class CountingComparator
+
+} // class SkipListExpt
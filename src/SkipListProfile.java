@@ -0,0 +1,311 @@
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Cost-model instrumentation for a SkipList.  While profiling is on (see
+ * SkipList.enableProfiling), every get, set and remove records how many nodes it hopped over
+ * on each level and how many times it called the comparator.  The profile can then compare
+ * those, and the current distribution of node heights, with what Pugh's analysis predicts for
+ * the list's probability, and flag anything that looks degenerate.
+ *
+ * Like the list itself, a profile is not thread-safe.
+ */
+public class SkipListProfile {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The operations we profile.
+   */
+  static final int GET = 0;
+  static final int SET = 1;
+  static final int REMOVE = 2;
+
+  /**
+   * Names of the operations.
+   */
+  static final String[] NAMES = {"get", "set", "remove"};
+
+  /**
+   * The number of buckets in the comparisons-per-operation histograms (the last one also
+   * holds everything larger).
+   */
+  static final int BUCKETS = 256;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The list being profiled.
+   */
+  final SkipList<?, ?> list;
+
+  /**
+   * The number of operations of each kind.
+   */
+  long[] ops = new long[NAMES.length];
+
+  /**
+   * hops[op][i] is the number of nodes skipped on level i by operations of kind op.
+   */
+  long[][] hops = new long[NAMES.length][SkipList.MAX_HEIGHT + 1];
+
+  /**
+   * visits[op][i] is the number of operations of kind op that searched level i.
+   */
+  long[][] visits = new long[NAMES.length][SkipList.MAX_HEIGHT + 1];
+
+  /**
+   * compares[op][c] is the number of operations of kind op that called the comparator c
+   * times.
+   */
+  long[][] compares = new long[NAMES.length][BUCKETS];
+
+  /**
+   * The comparator calls made so far by the current operation.
+   */
+  int current = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create an empty profile of list.
+   */
+  SkipListProfile(SkipList<?, ?> list) {
+    this.list = list;
+  } // SkipListProfile(SkipList)
+
+  // +-----------+---------------------------------------------------
+  // | Recording |
+  // +-----------+
+
+  /**
+   * Note that the current operation searched a level, skipping hopped nodes.  If stopped is
+   * true, it stopped at a node (rather than at the end of the level), which took one more
+   * comparison.
+   */
+  void level(int op, int level, int hopped, boolean stopped) {
+    this.hops[op][level] += hopped;
+    this.visits[op][level]++;
+    this.current += hopped + (stopped ? 1 : 0);
+  } // level(int, int, int, boolean)
+
+  /**
+   * Note that the current operation is done.  If compared is true, it made one last
+   * comparison to see whether it found the key.
+   */
+  void done(int op, boolean compared) {
+    this.current += compared ? 1 : 0;
+    this.compares[op][Math.min(this.current, BUCKETS - 1)]++;
+    this.ops[op]++;
+    this.current = 0;
+  } // done(int, boolean)
+
+  // +-------------+-------------------------------------------------
+  // | Observation |
+  // +-------------+
+
+  /**
+   * Forget everything recorded so far.
+   */
+  public void reset() {
+    this.ops = new long[NAMES.length];
+    this.hops = new long[NAMES.length][SkipList.MAX_HEIGHT + 1];
+    this.visits = new long[NAMES.length][SkipList.MAX_HEIGHT + 1];
+    this.compares = new long[NAMES.length][BUCKETS];
+    this.current = 0;
+  } // reset()
+
+  /**
+   * Get the number of operations of kind op recorded.
+   */
+  public long operations(int op) {
+    return this.ops[op];
+  } // operations(int)
+
+  /**
+   * Get the average number of nodes skipped on a level by operations of kind op.
+   */
+  public double meanHops(int op, int level) {
+    long v = this.visits[op][level];
+    return (v == 0) ? 0 : (double) this.hops[op][level] / v;
+  } // meanHops(int, int)
+
+  /**
+   * Get the average number of comparator calls made by operations of kind op.
+   */
+  public double meanCompares(int op) {
+    long total = 0;
+    for (int c = 0; c < BUCKETS; c++) {
+      total += c * this.compares[op][c];
+    } // for
+    return (this.ops[op] == 0) ? 0 : (double) total / this.ops[op];
+  } // meanCompares(int)
+
+  /**
+   * Get the pth percentile (0 < p <= 1) of the comparator calls made by operations of kind
+   * op.
+   */
+  public int percentileCompares(int op, double p) {
+    long rank = (long) Math.ceil(p * this.ops[op]);
+    long seen = 0;
+    for (int c = 0; c < BUCKETS; c++) {
+      seen += this.compares[op][c];
+      if (seen >= rank && seen > 0) {
+        return c;
+      } // if
+    } // for
+    return 0;
+  } // percentileCompares(int, double)
+
+  /**
+   * Count the nodes currently on each level of the list.
+   */
+  public long[] levelSizes() {
+    long[] sizes = new long[SkipList.MAX_HEIGHT + 1];
+    SLNode<?, ?> node = this.list.front.next(0);
+    while (node != null) {
+      for (int i = 0; i < node.levels(); i++) {
+        sizes[i]++;
+      } // for
+      node = node.next(0);
+    } // while
+    return sizes;
+  } // levelSizes()
+
+  // +------------+--------------------------------------------------
+  // | Prediction |
+  // +------------+
+
+  /**
+   * Get the expected number of nodes on a level: n p^level.
+   */
+  public double expectedLevelSize(int level) {
+    return this.list.size * Math.pow(this.list.prob, level);
+  } // expectedLevelSize(int)
+
+  /**
+   * Get the level at which we expect about one node, log_{1/p} n (Pugh's L(n)).
+   */
+  public double expectedLevels() {
+    if (this.list.size < 2) {
+      return 0;
+    } // if
+    return Math.log(this.list.size) / Math.log(1 / this.list.prob);
+  } // expectedLevels()
+
+  /**
+   * Get the expected number of nodes skipped on each of the lower levels of a search,
+   * (1-p)/p.  (Fewer are skipped on the levels above L(n).)
+   */
+  public double expectedHops() {
+    return (1 - this.list.prob) / this.list.prob;
+  } // expectedHops()
+
+  /**
+   * Get Pugh's bound on the expected length of a search path, L(n)/p + 1/(1-p), which is
+   * roughly the number of comparator calls a search should make.
+   */
+  public double expectedCompares() {
+    return expectedLevels() / this.list.prob + 1 / (1 - this.list.prob);
+  } // expectedCompares()
+
+  /**
+   * Look for signs that the list (or the way it is used) is degenerate.  Returns a
+   * description of each problem found.
+   */
+  public ArrayList<String> flags() {
+    ArrayList<String> flags = new ArrayList<String>();
+    int n = this.list.size;
+    double p = this.list.prob;
+    double levels = expectedLevels();
+    long[] sizes = levelSizes();
+
+    // levels whose population is far from n p^i
+    for (int i = 0; i <= SkipList.MAX_HEIGHT && i <= levels; i++) {
+      double expected = expectedLevelSize(i);
+      double sigma = Math.sqrt(expected * (1 - Math.pow(p, i)));
+      if (Math.abs(sizes[i] - expected) > 4 * sigma + 1) {
+        flags.add(String.format("level %d has %d nodes; expected about %.0f", i, sizes[i],
+            expected));
+      } // if
+    } // for
+
+    // towers much taller than the rest of the list
+    int tallest = -1;
+    for (int i = 0; i <= SkipList.MAX_HEIGHT; i++) {
+      if (sizes[i] > 0) {
+        tallest = i;
+      } // if
+    } // for
+    if (n > 0 && tallest > levels + 3) {
+      flags.add(String.format("tallest tower reaches level %d; expected about %.1f", tallest,
+          levels));
+    } // if
+    if (n > 0 && expectedLevelSize(SkipList.MAX_HEIGHT) > 1) {
+      flags.add(String.format("%d nodes is too many for MAX_HEIGHT %d; the top level is "
+          + "crowded", n, SkipList.MAX_HEIGHT));
+    } // if
+    if (this.list.height > Math.max(tallest, 0)) {
+      flags.add(String.format("height is %d but no node is taller than level %d; every "
+          + "search pays for the empty levels", this.list.height, tallest));
+    } // if
+
+    // levels that take far too many hops to cross
+    for (int op = 0; op < NAMES.length; op++) {
+      for (int i = 0; i <= SkipList.MAX_HEIGHT; i++) {
+        if (this.visits[op][i] > 0 && meanHops(op, i) + 1 > 2 / p) {
+          flags.add(String.format("%s skips %.1f nodes on level %d; expected at most %.1f",
+              NAMES[op], meanHops(op, i), i, expectedHops()));
+        } // if
+      } // for
+    } // for
+    return flags;
+  } // flags()
+
+  // +-----------+---------------------------------------------------
+  // | Reporting |
+  // +-----------+
+
+  /**
+   * Print the profile, with the model's predictions alongside.
+   */
+  public void report(PrintWriter pen) {
+    long[] sizes = levelSizes();
+    pen.printf("n = %d, p = %.3f, height = %d, L(n) = %.1f%n", this.list.size,
+        this.list.prob, this.list.height, expectedLevels());
+    pen.println();
+    pen.printf("%5s %10s %10s %9s %9s %9s%n", "level", "nodes", "expected", "get hops",
+        "set hops", "rm hops");
+    for (int i = Math.max(this.list.height, 0); i >= 0; i--) {
+      pen.printf("%5d %10d %10.1f %9.2f %9.2f %9.2f%n", i, sizes[i], expectedLevelSize(i),
+          meanHops(GET, i), meanHops(SET, i), meanHops(REMOVE, i));
+    } // for
+    pen.printf("(expected hops per level: at most %.2f)%n", expectedHops());
+    pen.println();
+    pen.printf("%-7s %10s %10s %6s %6s %6s%n", "op", "count", "compares", "p50", "p99",
+        "max");
+    for (int op = 0; op < NAMES.length; op++) {
+      pen.printf("%-7s %10d %10.2f %6d %6d %6d%n", NAMES[op], this.ops[op], meanCompares(op),
+          percentileCompares(op, 0.5), percentileCompares(op, 0.99),
+          percentileCompares(op, 1.0));
+    } // for
+    pen.printf("(expected compares per search: about %.2f)%n", expectedCompares());
+    pen.println();
+    ArrayList<String> flags = flags();
+    if (flags.isEmpty()) {
+      pen.println("no problems found");
+    } else {
+      for (String flag : flags) {
+        pen.println("WARNING: " + flag);
+      } // for
+    } // if/else
+    pen.flush();
+  } // report(PrintWriter)
+
+} // class SkipListProfile
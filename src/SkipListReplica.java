@@ -0,0 +1,119 @@
+/**
+ * A copy of a SkipList kept up to date from its stream of changes.
+ *
+ * follow copies the source list and starts capturing its changes; after that, whoever owns
+ * the replica (usually another thread) calls catchUp now and then to apply the changes made
+ * since.  Only that thread should touch the replica's list.
+ */
+public class SkipListReplica<K, V> implements SkipListChanges.Handler<K, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The maximum number of events taken from the stream at a time.
+   */
+  static final int BATCH = 256;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The changes to apply.
+   */
+  final SkipListChanges<K, V> changes;
+
+  /**
+   * The copy.
+   */
+  final SkipList<K, V> list;
+
+  /**
+   * The number of events applied so far.
+   */
+  long applied = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a replica that applies changes to list.
+   */
+  public SkipListReplica(SkipListChanges<K, V> changes, SkipList<K, V> list) {
+    this.changes = changes;
+    this.list = list;
+  } // SkipListReplica(SkipListChanges, SkipList)
+
+  /**
+   * Copy source (in O(n), with no comparisons) and capture its changes from now on, in a
+   * buffer of the given capacity.  Must be called by the thread that updates source.
+   */
+  public static <K, V> SkipListReplica<K, V> follow(SkipList<K, V> source, int capacity,
+      SkipListChanges.Policy policy) {
+    SkipList<K, V> copy = source.emptyCopy();
+    SkipList.copyRun(copy, copy.tails(), source.front.next(0), null);
+    return new SkipListReplica<K, V>(source.enableChangeCapture(capacity, policy), copy);
+  } // follow(SkipList, int, Policy)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Apply all the waiting changes.  Returns the number applied.
+   */
+  public int catchUp() {
+    int total = 0;
+    int n;
+    while ((n = this.changes.poll(this, BATCH)) > 0) {
+      total += n;
+    } // while
+    this.applied += total;
+    return total;
+  } // catchUp()
+
+  /**
+   * Get the copy.
+   */
+  public SkipList<K, V> list() {
+    return this.list;
+  } // list()
+
+  /**
+   * Determine whether the source has stopped capturing changes and all of them have been
+   * applied.
+   */
+  public boolean finished() {
+    return this.changes.finished();
+  } // finished()
+
+  /**
+   * Get the number of changes applied so far.
+   */
+  public long applied() {
+    return this.applied;
+  } // applied()
+
+  // +-----------------+---------------------------------------------
+  // | Handler methods |
+  // +-----------------+
+
+  @Override
+  public void set(K key, V value) {
+    this.list.set(key, value);
+  } // set(K, V)
+
+  @Override
+  public void remove(K key) {
+    this.list.remove(key);
+  } // remove(K)
+
+  @Override
+  public void removeRange(K from, K to) {
+    this.list.removeRange(from, to);
+  } // removeRange(K, K)
+
+} // class SkipListReplica
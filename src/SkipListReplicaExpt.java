@@ -0,0 +1,71 @@
+import java.util.Random;
+
+/**
+ * Measure the cost of keeping a second list in sync with a busy one: with no capture at all,
+ * by applying the captured changes every so often, and by the old way, diffing the two lists
+ * with forEach every so often.
+ *
+ * Usage: java SkipListReplicaExpt [keys] [ops] [every]
+ */
+public class SkipListReplicaExpt {
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    int ops = (args.length > 1) ? Integer.parseInt(args[1]) : 1000000;
+    int every = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+
+    for (int round = 0; round < 3; round++) {
+      // the first rounds are warm-up
+      double[] ns = new double[3];
+      for (int mode = 0; mode < 3; mode++) {
+        Random random = new Random(39);
+        SkipList<Integer, Integer> list =
+            new SkipList<Integer, Integer>((i1, i2) -> i1.compareTo(i2));
+        for (int i = 0; i < n; i++) {
+          list.set(random.nextInt(2 * n), i);
+        } // for
+        SkipListReplica<Integer, Integer> replica = (mode == 1)
+            ? SkipListReplica.follow(list, 2 * every, SkipListChanges.Policy.FAIL)
+            : null;
+        SkipList<Integer, Integer> copy = list.emptyCopy();
+        list.forEach(copy::set);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+          int key = random.nextInt(2 * n);
+          if (random.nextBoolean()) {
+            list.set(key, i);
+          } else {
+            list.remove(key);
+          } // if/else
+          if (i % every == every - 1) {
+            if (mode == 1) {
+              replica.catchUp();
+            } else if (mode == 2) {
+              sync(list, copy);
+            } // if/else
+          } // if
+        } // for
+        ns[mode] = (double) (System.nanoTime() - start) / ops;
+      } // for
+      if (round == 2) {
+        System.out.printf("no replica %.1f ns/op, captured changes %.1f ns/op, "
+            + "forEach diff every %d ops %.1f ns/op%n", ns[0], ns[1], every, ns[2]);
+      } // if
+    } // for
+  } // main(String[])
+
+  /**
+   * Bring copy up to date with list by walking both.
+   */
+  static void sync(SkipList<Integer, Integer> list, SkipList<Integer, Integer> copy) {
+    SkipList<Integer, Integer> gone = copy.difference(list);
+    gone.forEach((k, v) -> copy.remove(k));
+    list.forEach((k, v) -> {
+      if (!v.equals(copy.get(k))) {
+        copy.set(k, v);
+      } // if
+    });
+  } // sync(SkipList, SkipList)
+
+} // class SkipListReplicaExpt
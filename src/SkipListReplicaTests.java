@@ -0,0 +1,150 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests of change capture and replicas.
+ */
+public class SkipListReplicaTests {
+
+  /**
+   * A handler that writes down the events it gets.
+   */
+  static class Recorder implements SkipListChanges.Handler<Integer, String> {
+    ArrayList<String> events = new ArrayList<String>();
+
+    @Override
+    public void set(Integer key, String value) {
+      events.add("set " + key + " " + value);
+    } // set(Integer, String)
+
+    @Override
+    public void remove(Integer key) {
+      events.add("remove " + key);
+    } // remove(Integer)
+
+    @Override
+    public void removeRange(Integer from, Integer to) {
+      events.add("removeRange " + from + " " + to);
+    } // removeRange(Integer, Integer)
+  } // class Recorder
+
+  /**
+   * Make sure two lists hold the same pairs.
+   */
+  static void assertSame(SkipList<Integer, String> expected, SkipList<Integer, String> actual) {
+    assertEquals(expected.size(), actual.size());
+    Iterator<Integer> keys = actual.keys();
+    expected.forEach((k, v) -> {
+      assertEquals(k, keys.next());
+      assertEquals(v, actual.get(k));
+    });
+  } // assertSame(SkipList, SkipList)
+
+  @Test
+  public void testEvents() {
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    sl.set(1, "one");
+    SkipListChanges<Integer, String> changes =
+        sl.enableChangeCapture(16, SkipListChanges.Policy.FAIL);
+    sl.set(2, "two");
+    sl.set(1, "uno");
+    sl.remove(3);
+    sl.remove(2);
+    sl.merge(4, "four", String::concat);
+    sl.compute(4, (k, v) -> null);
+    sl.removeRange(0, 2);
+    Recorder recorder = new Recorder();
+    assertEquals(6, changes.pending());
+    assertEquals(2, changes.poll(recorder, 2));
+    assertEquals(4, changes.poll(recorder, 100));
+    assertEquals(0, changes.poll(recorder, 100));
+    assertEquals("[set 2 two, set 1 uno, remove 2, set 4 four, remove 4, removeRange 0 2]",
+        recorder.events.toString());
+    assertFalse(changes.finished());
+    sl.disableChangeCapture();
+    sl.set(5, "five");
+    assertTrue(changes.finished());
+  } // testEvents()
+
+  @Test
+  public void testFullBuffer() {
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    SkipListChanges<Integer, String> changes =
+        sl.enableChangeCapture(4, SkipListChanges.Policy.FAIL);
+    for (int i = 0; i < 4; i++) {
+      sl.set(i, "x");
+    } // for
+    try {
+      sl.set(4, "x");
+      fail("no exception when the buffer was full");
+    } catch (IllegalStateException e) {
+      // expected
+    } // try/catch
+    changes.poll(new Recorder(), 1);
+    sl.set(5, "x");
+
+    changes = sl.enableChangeCapture(4, SkipListChanges.Policy.DROP);
+    for (int i = 0; i < 10; i++) {
+      sl.remove(i);
+    } // for
+    assertEquals(4, changes.pending());
+    assertEquals(2, changes.dropped());
+  } // testFullBuffer()
+
+  /**
+   * Replicate a list on another thread, through a small buffer, while changing it every way
+   * we can.
+   */
+  @Test
+  public void testReplica() throws Exception {
+    Random random = new Random(39);
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    for (int i = 0; i < 500; i++) {
+      sl.set(random.nextInt(1000), "v" + i);
+    } // for
+    SkipListReplica<Integer, String> replica =
+        SkipListReplica.follow(sl, 64, SkipListChanges.Policy.BLOCK);
+    Thread follower = new Thread(() -> {
+      while (!replica.finished()) {
+        replica.catchUp();
+      } // while
+    });
+    follower.start();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(1000);
+      switch (random.nextInt(10)) {
+        case 0:
+          sl.remove(key);
+          break;
+        case 1:
+          sl.merge(key, "m", (a, b) -> (a.length() > 4) ? null : a + b);
+          break;
+        case 2:
+          sl.computeIfAbsent(key, (k) -> "c" + k);
+          break;
+        case 3:
+          if (random.nextInt(20) == 0) {
+            sl.removeRange(key, key + random.nextInt(50));
+          } // if
+          break;
+        case 4:
+          if (random.nextInt(50) == 0) {
+            SkipList<Integer, String> tail = sl.split(key);
+            sl.concat(tail);
+          } // if
+          break;
+        default:
+          sl.set(key, "s" + i);
+      } // switch
+    } // for
+    sl.disableChangeCapture();
+    follower.join(10000);
+    assertFalse(follower.isAlive());
+    assertSame(sl, replica.list());
+    SkipListTests.assertWellFormed(replica.list());
+  } // testReplica()
+
+} // class SkipListReplicaTests
@@ -0,0 +1,392 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A SkipList that many threads can share without taking a lock.
+ *
+ * Mutations are queued and applied by a single writer thread, which drains the queue in
+ * batches and completes the returned futures once the batch is visible to readers.  Reads
+ * never lock: the service keeps two copies of the list, and readers use whichever copy is
+ * currently published.  The writer applies a batch to the unpublished copy, publishes it,
+ * waits for the readers of the old copy to finish, and then replays the batch on the old copy
+ * (the "left-right" technique).  That costs twice the memory of one list, but readers never
+ * block and never see a half-applied batch.
+ *
+ * Nothing here blocks on a monitor, so the service is friendly to virtual threads.
+ */
+public class SkipListService<K, V> implements AutoCloseable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default maximum number of mutations applied per batch.
+   */
+  static final int DEFAULT_MAX_BATCH = 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The two copies of the list.
+   */
+  final ArrayList<SkipList<K, V>> copies = new ArrayList<SkipList<K, V>>(2);
+
+  /**
+   * The number of readers currently using each copy.
+   */
+  final AtomicInteger[] readers = {new AtomicInteger(), new AtomicInteger()};
+
+  /**
+   * The copy readers should use.
+   */
+  volatile int published = 0;
+
+  /**
+   * Pending mutations.
+   */
+  final LinkedBlockingQueue<Op<K, V>> queue = new LinkedBlockingQueue<Op<K, V>>();
+
+  /**
+   * The maximum number of mutations applied per batch.
+   */
+  final int maxBatch;
+
+  /**
+   * The writer thread.
+   */
+  final Thread writer;
+
+  /**
+   * Whether the service still accepts mutations.
+   */
+  volatile boolean open = true;
+
+  /**
+   * The number of batches applied so far.
+   */
+  volatile long batches = 0;
+
+  /**
+   * The number of mutations applied so far.
+   */
+  volatile long mutations = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new service that orders keys using the specified comparator and applies up to
+   * maxBatch mutations per batch.
+   */
+  public SkipListService(Comparator<K> comparator, int maxBatch) {
+    this.copies.add(new SkipList<K, V>(comparator));
+    this.copies.add(new SkipList<K, V>(comparator));
+    this.maxBatch = maxBatch;
+    this.writer = new Thread(this::drain, "SkipListService-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  } // SkipListService(Comparator<K>, int)
+
+  /**
+   * Create a new service that orders keys using the specified comparator.
+   */
+  public SkipListService(Comparator<K> comparator) {
+    this(comparator, DEFAULT_MAX_BATCH);
+  } // SkipListService(Comparator<K>)
+
+  // +-----------+---------------------------------------------------
+  // | Mutations |
+  // +-----------+
+
+  /**
+   * Set the value associated with key.  The future completes with the previous value once
+   * the change is visible to readers.
+   *
+   * @throws NullPointerException if the key is null.
+   */
+  public CompletableFuture<V> set(K key, V value) {
+    return submit(new Op<K, V>(key, value, false));
+  } // set(K, V)
+
+  /**
+   * Remove the value with the given key.  The future completes with the removed value (or
+   * null) once the change is visible to readers.
+   *
+   * @throws NullPointerException if the key is null.
+   */
+  public CompletableFuture<V> remove(K key) {
+    return submit(new Op<K, V>(key, null, true));
+  } // remove(K)
+
+  /**
+   * Replace the value associated with key by remapping.apply(key, oldValue), removing the key
+   * if the result is null.  The writer applies it, so it is atomic with respect to every
+   * other mutation.  The future completes with the new value once it is visible to readers.
+   *
+   * @throws NullPointerException if the key is null.
+   */
+  public CompletableFuture<V> compute(K key,
+      BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return submit(new Op<K, V>(key, remapping));
+  } // compute(K, BiFunction)
+
+  /**
+   * Associate key with value if it has none; otherwise combine the two with remapping (as in
+   * SimpleMap.merge).  The future completes with the new value.
+   *
+   * @throws NullPointerException if the key or value is null.
+   */
+  public CompletableFuture<V> merge(K key, V value,
+      BiFunction<? super V, ? super V, ? extends V> remapping) {
+    if (value == null) {
+      throw new NullPointerException("null value");
+    } // if
+    return compute(key, (k, old) -> (old == null) ? value : remapping.apply(old, value));
+  } // merge(K, V, BiFunction)
+
+  // +-------+-------------------------------------------------------
+  // | Reads |
+  // +-------+
+
+  /**
+   * Get the value associated with key (or null, if there is none).
+   */
+  public V get(K key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    return read((list) -> list.get(key));
+  } // get(K)
+
+  /**
+   * Determine if a key appears in the map.
+   */
+  public boolean containsKey(K key) {
+    return read((list) -> list.findNode(key) != null);
+  } // containsKey(K)
+
+  /**
+   * Determine how many values are in the map.
+   */
+  public int size() {
+    return read((list) -> list.size());
+  } // size()
+
+  /**
+   * Apply a function to each key/value pair of the published copy.  (The writer cannot
+   * replay the next batch until this finishes, so keep it short.)
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    read((list) -> {
+      list.forEach(action);
+      return null;
+    });
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Get the average number of mutations applied per batch.
+   */
+  public double averageBatchSize() {
+    long b = this.batches;
+    return (b == 0) ? 0 : (double) this.mutations / b;
+  } // averageBatchSize()
+
+  /**
+   * Stop accepting mutations, apply the ones already queued, and stop the writer.  (If the
+   * calling thread is interrupted while waiting for the writer, this returns early with the
+   * interrupt flag set.)
+   */
+  @Override
+  public void close() {
+    if (this.open) {
+      this.open = false;
+      this.queue.add(new Op<K, V>(null, null, false)); // wake the writer
+    } // if
+    try {
+      this.writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } // try/catch
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Queue a mutation.
+   */
+  CompletableFuture<V> submit(Op<K, V> op) {
+    if (op.key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    if (!this.open) {
+      op.result.completeExceptionally(new IllegalStateException("service closed"));
+      return op.result;
+    } // if
+    this.queue.add(op);
+    // If close slipped in between the check and the add, our op may be behind the closing
+    // marker, where the writer may never see it.  Either we take it back, or the writer has
+    // already taken it and will apply it.  (If the service is still open, the marker will come
+    // after us.)
+    if (!this.open && this.queue.remove(op)) {
+      op.result.completeExceptionally(new IllegalStateException("service closed"));
+    } // if
+    return op.result;
+  } // submit(Op)
+
+  /**
+   * Run a read against the published copy.
+   */
+  <T> T read(Function<SkipList<K, V>, T> reader) {
+    while (true) {
+      int i = this.published;
+      this.readers[i].incrementAndGet();
+      try {
+        // If the writer switched copies before it could see us, try again with the new one.
+        if (this.published == i) {
+          return reader.apply(this.copies.get(i));
+        } // if
+      } finally {
+        this.readers[i].decrementAndGet();
+      } // try/finally
+    } // while
+  } // read(Function)
+
+  /**
+   * Apply one mutation to a list.
+   */
+  static <K, V> V apply(SkipList<K, V> list, Op<K, V> op) {
+    if (op.remapping != null) {
+      return list.compute(op.key, op.remapping);
+    } // if
+    return op.remove ? list.remove(op.key) : list.set(op.key, op.value);
+  } // apply(SkipList, Op)
+
+  /**
+   * The writer's loop: take a batch, apply it to the hidden copy, publish, then bring the
+   * other copy up to date.  (Computes are replayed as the sets or removes they turned into,
+   * so each remapping function runs once.)  A mutation that throws (say, from its remapping
+   * function or the comparator) fails its own future, leaves the list as it was, and is not
+   * replayed; the rest of the batch goes on.
+   */
+  void drain() {
+    ArrayList<Op<K, V>> batch = new ArrayList<Op<K, V>>(this.maxBatch);
+    ArrayList<V> results = new ArrayList<V>(this.maxBatch);
+    ArrayList<Op<K, V>> applied = new ArrayList<Op<K, V>>(this.maxBatch);
+    ArrayList<Op<K, V>> replay = new ArrayList<Op<K, V>>(this.maxBatch);
+    boolean done = false;
+    while (!done || !this.queue.isEmpty()) {
+      batch.clear();
+      results.clear();
+      applied.clear();
+      replay.clear();
+      try {
+        batch.add(this.queue.take());
+      } catch (InterruptedException e) {
+        continue;
+      } // try/catch
+      this.queue.drainTo(batch, this.maxBatch - 1);
+      // the closing marker (null key) ends the loop once the queue is empty
+      if (batch.removeIf((op) -> op.key == null)) {
+        done = true;
+      } // if
+
+      int hidden = 1 - this.published;
+      SkipList<K, V> list = this.copies.get(hidden);
+      for (Op<K, V> op : batch) {
+        V result;
+        try {
+          result = apply(list, op);
+        } catch (RuntimeException | Error e) {
+          op.result.completeExceptionally(e);
+          continue;
+        } // try/catch
+        applied.add(op);
+        results.add(result);
+        replay.add((op.remapping == null) ? op : new Op<K, V>(op.key, result, result == null));
+      } // for
+      this.published = hidden;
+      for (int i = 0; i < applied.size(); i++) {
+        applied.get(i).result.complete(results.get(i));
+      } // for
+
+      // wait for the stragglers on the old copy, then replay the batch there
+      int old = 1 - hidden;
+      while (this.readers[old].get() != 0) {
+        Thread.onSpinWait();
+      } // while
+      list = this.copies.get(old);
+      for (Op<K, V> op : replay) {
+        apply(list, op);
+      } // for
+      this.batches++;
+      this.mutations += applied.size();
+    } // while
+  } // drain()
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A queued mutation.
+   */
+  static class Op<K, V> {
+
+    /**
+     * The key to change.
+     */
+    final K key;
+
+    /**
+     * The new value (for a set).
+     */
+    final V value;
+
+    /**
+     * Whether this is a remove.
+     */
+    final boolean remove;
+
+    /**
+     * The remapping function (for a compute), or null.
+     */
+    final BiFunction<? super K, ? super V, ? extends V> remapping;
+
+    /**
+     * Completed with the previous value (or, for a compute, the new value) once the
+     * mutation is visible.
+     */
+    final CompletableFuture<V> result = new CompletableFuture<V>();
+
+    Op(K key, V value, boolean remove) {
+      this.key = key;
+      this.value = value;
+      this.remove = remove;
+      this.remapping = null;
+    } // Op(K, V, boolean)
+
+    Op(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+      this.key = key;
+      this.value = null;
+      this.remove = false;
+      this.remapping = remapping;
+    } // Op(K, BiFunction)
+  } // class Op
+
+} // class SkipListService
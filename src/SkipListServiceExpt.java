@@ -0,0 +1,96 @@
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare SkipListService with a synchronized SkipList when many clients (virtual threads,
+ * where the JDK has them) each do a mix of reads and writes.
+ *
+ * Usage: java SkipListServiceExpt [clients] [opsPerClient] [writePercent]
+ */
+public class SkipListServiceExpt {
+
+  /**
+   * The key space.
+   */
+  static final int KEYS = 100000;
+
+  /**
+   * Make an executor with one virtual thread per task if this JDK supports them, and a pool
+   * of platform threads otherwise.
+   */
+  static ExecutorService clients() {
+    try {
+      Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) m.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      System.out.println("(no virtual threads in this JDK; using 256 platform threads)");
+      return Executors.newFixedThreadPool(256);
+    } // try/catch
+  } // clients()
+
+  /**
+   * Run the clients and report throughput.
+   */
+  static void run(String label, int clients, int ops, int writePercent, Client client)
+      throws InterruptedException {
+    ExecutorService pool = clients();
+    long start = System.nanoTime();
+    for (int c = 0; c < clients; c++) {
+      final long seed = c;
+      pool.execute(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < ops; i++) {
+          int key = random.nextInt(KEYS);
+          client.op(random.nextInt(100) < writePercent, key);
+        } // for
+      });
+    } // for
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.HOURS);
+    double secs = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-24s %10.0f ops/s%n", label, clients * (double) ops / secs);
+  } // run(String, int, int, int, Client)
+
+  /**
+   * One client operation.
+   */
+  interface Client {
+    void op(boolean write, int key);
+  } // interface Client
+
+  public static void main(String[] args) throws Exception {
+    int clients = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+    int ops = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+    int writePercent = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+    System.out.println(clients + " clients x " + ops + " ops, " + writePercent + "% writes");
+
+    for (int round = 0; round < 3; round++) {
+      SkipList<Integer, Integer> list = new SkipList<Integer, Integer>((i, j) -> i - j);
+      run("synchronized SkipList", clients, ops, writePercent, (write, key) -> {
+        synchronized (list) {
+          if (write) {
+            list.set(key, key);
+          } else {
+            list.get(key);
+          } // if/else
+        } // synchronized
+      });
+
+      SkipListService<Integer, Integer> service =
+          new SkipListService<Integer, Integer>((i, j) -> i - j);
+      run("SkipListService", clients, ops, writePercent, (write, key) -> {
+        if (write) {
+          service.set(key, key).join();
+        } else {
+          service.get(key);
+        } // if/else
+      });
+      System.out.printf("  (average batch %.1f)%n", service.averageBatchSize());
+      service.close();
+    } // for
+  } // main(String[])
+
+} // class SkipListServiceExpt
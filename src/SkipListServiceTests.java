@@ -0,0 +1,151 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Tests of the single-writer skip list service.
+ */
+public class SkipListServiceTests {
+
+  @Test
+  public void testReadYourWrites() throws Exception {
+    SkipListService<Integer, String> service =
+        new SkipListService<Integer, String>((i, j) -> i - j);
+    assertNull(service.set(1, "one").get());
+    assertEquals("one", service.get(1));
+    assertEquals("one", service.set(1, "uno").get());
+    assertEquals("uno", service.get(1));
+    assertEquals("uno", service.remove(1).get());
+    assertNull(service.get(1));
+    assertFalse(service.containsKey(1));
+    service.close();
+  } // testReadYourWrites()
+
+  @Test
+  public void testManyWriters() throws Exception {
+    SkipListService<Integer, Integer> service =
+        new SkipListService<Integer, Integer>((i, j) -> i - j, 64);
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int base = t * 1000;
+      Thread thread = new Thread(() -> {
+        ArrayList<CompletableFuture<Integer>> pending = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 1000; i++) {
+          pending.add(service.set(base + i, i));
+          service.get(base + i / 2);
+        } // for
+        for (CompletableFuture<Integer> f : pending) {
+          f.join();
+        } // for
+      });
+      threads.add(thread);
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    assertEquals(8000, service.size());
+    for (int i = 0; i < 8000; i++) {
+      assertEquals((Integer) (i % 1000), service.get(i));
+    } // for
+    assertTrue(service.averageBatchSize() >= 1.0);
+    service.close();
+    // both copies should agree
+    assertEquals(service.copies.get(0).size(), service.copies.get(1).size());
+  } // testManyWriters()
+
+  @Test
+  public void testCompute() throws Exception {
+    SkipListService<Integer, Integer> service =
+        new SkipListService<Integer, Integer>((i, j) -> i - j);
+    ArrayList<CompletableFuture<Integer>> pending = new ArrayList<CompletableFuture<Integer>>();
+    for (int i = 0; i < 1000; i++) {
+      pending.add(service.merge(i % 10, 1, Integer::sum));
+    } // for
+    for (CompletableFuture<Integer> f : pending) {
+      f.join();
+    } // for
+    for (int i = 0; i < 10; i++) {
+      assertEquals((Integer) 100, service.get(i));
+    } // for
+    assertNull(service.compute(3, (k, v) -> null).get());
+    assertFalse(service.containsKey(3));
+    service.close();
+    // both copies should agree, though each remapping ran once
+    for (int copy = 0; copy < 2; copy++) {
+      assertEquals(9, service.copies.get(copy).size());
+      assertEquals((Integer) 100, service.copies.get(copy).get(5));
+    } // for
+  } // testCompute()
+
+  @Test
+  public void testClosed() throws Exception {
+    SkipListService<Integer, String> service =
+        new SkipListService<Integer, String>((i, j) -> i - j);
+    CompletableFuture<String> last = service.set(1, "one");
+    service.close();
+    assertTrue(last.isDone());
+    assertTrue(service.set(2, "two").isCompletedExceptionally());
+  } // testClosed()
+
+  @Test
+  public void testThrowingCompute() throws Exception {
+    SkipListService<Integer, Integer> service =
+        new SkipListService<Integer, Integer>((i, j) -> i - j);
+    CompletableFuture<Integer> before = service.set(1, 1);
+    CompletableFuture<Integer> bad = service.compute(1, (k, v) -> {
+      throw new ArithmeticException("boom");
+    });
+    CompletableFuture<Integer> after = service.merge(1, 10, Integer::sum);
+    try {
+      bad.get(10, TimeUnit.SECONDS);
+      fail("the remapping function threw");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof ArithmeticException);
+    } // try/catch
+    assertNull(before.get(10, TimeUnit.SECONDS));
+    assertEquals((Integer) 11, after.get(10, TimeUnit.SECONDS));
+    // the writer survives, and later submits still complete
+    assertNull(service.set(2, 2).get(10, TimeUnit.SECONDS));
+    assertEquals((Integer) 11, service.get(1));
+    service.close();
+    for (int copy = 0; copy < 2; copy++) {
+      assertEquals((Integer) 11, service.copies.get(copy).get(1));
+      assertEquals(2, service.copies.get(copy).size());
+    } // for
+  } // testThrowingCompute()
+
+  @Test
+  public void testCloseWhileSubmitting() throws Exception {
+    for (int round = 0; round < 50; round++) {
+      SkipListService<Integer, Integer> service =
+          new SkipListService<Integer, Integer>((i, j) -> i - j);
+      ArrayList<CompletableFuture<Integer>> pending = new ArrayList<CompletableFuture<Integer>>();
+      Thread submitter = new Thread(() -> {
+        for (int i = 0; i < 2000; i++) {
+          CompletableFuture<Integer> f = service.set(i, i);
+          synchronized (pending) {
+            pending.add(f);
+          } // synchronized
+        } // for
+      });
+      submitter.start();
+      service.close();
+      submitter.join();
+      // every future completes, one way or the other
+      synchronized (pending) {
+        for (CompletableFuture<Integer> f : pending) {
+          try {
+            f.get(10, TimeUnit.SECONDS);
+          } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+          } // try/catch
+        } // for
+      } // synchronized
+    } // for
+  } // testCloseWhileSubmitting()
+
+} // class SkipListServiceTests
@@ -1,18 +1,23 @@
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.openjdk.jol.info.GraphLayout;
 
 /**
  * Some tests of skip lists.
  *
  * @author Samuel A. Rebelsky
  */
-public class SkipListTests {
+public class SkipListTests extends SimpleMapTests<Integer> {
 
   // +-----------+---------------------------------------------------
   // | Constants |
@@ -58,6 +63,20 @@ public class SkipListTests {
 
 
 
+  // +------------------------+--------------------------------------
+  // | SimpleMapTests methods |
+  // +------------------------+
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    return new SkipList<Integer, String>((i, j) -> i - j);
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
   // +---------+---------------------------------------------------------
   // | Helpers |
   // +---------+
@@ -332,7 +351,7 @@ public class SkipListTests {
     assertEquals(sl.get(0), "zero");
     assertEquals(sl.remove(0), "zero");
     assertEquals(sl.get(0), null);
-    assertEquals(sl.front.next.get(0), null);
+    assertEquals(sl.front.next(0), null);
   }
   
   /**
@@ -355,7 +374,7 @@ public class SkipListTests {
     assertEquals(sl.set(-1, "negative one"), null);
     assertEquals(sl.get(-1), "negative one");
     assertEquals(sl.remove(-1), "negative one");
-    assertEquals(sl.front.next.get(0).value, "zero");
+    assertEquals(sl.front.next(0).value, "zero");
   }
   
   /**
@@ -370,7 +389,7 @@ public class SkipListTests {
     assertEquals(sl.set("testafter",  "grizzly"), "bear");
     assertEquals(sl.get("testafter"), "grizzly");
     assertEquals(sl.remove("testafter"), "grizzly");
-    assertEquals(sl.front.next.get(0).next.get(0).next.get(0), null);
+    assertEquals(sl.front.next(0).next(0).next(0), null);
   }
    
   /**
@@ -464,6 +483,511 @@ public class SkipListTests {
     System.out.println(sl.size());
   }
   
+  /**
+   * The hot-key cache must never answer for a removed key.
+   */
+  @Test
+  public void testCache() {
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    sl.enableCache(16);
+    for (int i = 0; i < 100; i++) {
+      sl.set(i, value(i));
+    } // for
+    for (int i = 0; i < 100; i++) {
+      for (int round = 0; round < 3; round++) {
+        assertEquals(value(i), sl.get(i));
+      } // for
+    } // for
+    assertTrue(sl.cacheHitRate() > 0);
+    sl.set(5, "five again");
+    assertEquals("five again", sl.get(5));
+    assertEquals("five again", sl.remove(5));
+    assertEquals(null, sl.get(5));
+    sl.set(5, "back");
+    assertEquals("back", sl.get(5));
+  } // testCache()
+
+  /**
+   * Make sure the profile counts every comparator call and knows the level sizes.
+   */
+  @Test
+  public void testProfile() {
+    long[] calls = new long[1];
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> {
+      calls[0]++;
+      return i - j;
+    });
+    for (int i = 0; i < 1000; i++) {
+      sl.set(random.nextInt(2000), value(i));
+    } // for
+    SkipListProfile prof = sl.enableProfiling();
+    calls[0] = 0;
+    for (int i = 0; i < 500; i++) {
+      sl.get(random.nextInt(2000));
+      sl.set(random.nextInt(2000), value(i));
+      sl.remove(random.nextInt(2000));
+    } // for
+    double recorded = 0;
+    for (int op = 0; op < SkipListProfile.NAMES.length; op++) {
+      assertEquals(500, prof.operations(op));
+      recorded += prof.meanCompares(op) * prof.operations(op);
+    } // for
+    assertEquals(calls[0], Math.round(recorded));
+    long[] sizes = prof.levelSizes();
+    assertEquals(sl.size(), sizes[0]);
+    for (int i = 1; i < sizes.length; i++) {
+      assertTrue(sizes[i] <= sizes[i - 1]);
+    } // for
+    // a height above every tower is degenerate
+    sl.height = SkipList.MAX_HEIGHT;
+    assertTrue(prof.flags().stream().anyMatch((flag) -> flag.startsWith("height")));
+    sl.disableProfiling();
+    sl.get(0);
+    assertEquals(500, prof.operations(SkipListProfile.GET));
+  } // testProfile()
+
+  /**
+   * Check that every level of a list is in order and holds only keys from level 0, and that
+   * the size is right.
+   */
+  static <V> void assertWellFormed(SkipList<Integer, V> sl) {
+    ArrayList<Integer> all = new ArrayList<Integer>();
+    sl.keys().forEachRemaining(all::add);
+    assertEquals(sl.size(), all.size());
+    for (int i = 0; i <= SkipList.MAX_HEIGHT; i++) {
+      Integer prev = null;
+      for (SLNode<Integer, V> x = sl.front.next(i); x != null; x = x.next(i)) {
+        assertTrue(i <= sl.height);
+        assertTrue(all.contains(x.key));
+        assertTrue(prev == null || prev < x.key);
+        prev = x.key;
+      } // for
+    } // for
+  } // assertWellFormed(SkipList)
+
+  /**
+   * Remove ranges, and make sure exactly the right keys go.
+   */
+  @Test
+  public void testRemoveRange() {
+    setup();
+    for (int i = 0; i < 1000; i++) {
+      set(i);
+    } // for
+    assertEquals(100, ints.removeRange(200, 300));
+    assertEquals(0, ints.removeRange(200, 300));
+    assertEquals(0, ints.removeRange(500, 500));
+    assertEquals(0, ints.removeRange(600, 500));
+    assertEquals(10, ints.removeRange(null, 10));
+    assertEquals(100, ints.removeRange(900, null));
+    assertEquals(790, ints.size());
+    assertWellFormed(ints);
+    for (int i = 0; i < 1000; i++) {
+      boolean kept = (i >= 10 && i < 200) || (i >= 300 && i < 900);
+      assertEquals(kept ? value(i) : null, ints.get(i));
+    } // for
+    assertEquals(790, ints.removeRange(null, null));
+    assertEquals(0, ints.size());
+    assertEquals(0, ints.height);
+    set(5);
+    assertEquals(value(5), ints.get(5));
+  } // testRemoveRange()
+
+  /**
+   * Split lists apart and put them back together.
+   */
+  @Test
+  public void testSplitConcat() {
+    setup();
+    for (int i = 0; i < 500; i++) {
+      set(random.nextInt(1000));
+    } // for
+    int n = ints.size();
+    SkipList<Integer, String> upper = ints.split(400);
+    assertWellFormed(ints);
+    assertWellFormed(upper);
+    assertEquals(n, ints.size() + upper.size());
+    ints.forEach((k, v) -> assertTrue(k < 400));
+    upper.forEach((k, v) -> assertTrue(k >= 400));
+
+    SkipList<Integer, String> top = upper.split(2000);
+    assertEquals(0, top.size());
+    try {
+      upper.concat(ints);
+      fail("concatenated overlapping lists");
+    } catch (IllegalArgumentException e) {
+      // expected
+    } // try/catch
+    ints.concat(upper);
+    assertEquals(0, upper.size());
+    assertEquals(n, ints.size());
+    assertWellFormed(ints);
+    assertTrue(inOrder(ints.keys()));
+    upper.set(2000, "again");
+    assertEquals("again", upper.get(2000));
+  } // testSplitConcat()
+
+  /**
+   * Exercise the read-modify-write methods.
+   */
+  @Test
+  public void testCompute() {
+    setup();
+    SkipList<String, Integer> counts = new SkipList<String, Integer>((s, t) -> s.compareTo(t));
+    String[] words = {"to", "be", "or", "not", "to", "be"};
+    for (String word : words) {
+      counts.merge(word, 1, Integer::sum);
+    } // for
+    assertEquals(4, counts.size());
+    assertEquals((Integer) 2, counts.get("to"));
+    assertEquals((Integer) 1, counts.get("or"));
+    assertNull(counts.merge("or", 1, (a, b) -> null));
+    assertFalse(counts.containsKey("or"));
+
+    assertEquals((Integer) 20, counts.compute("to", (k, v) -> v * 10));
+    assertEquals((Integer) 5, counts.compute("new", (k, v) -> (v == null) ? 5 : v));
+    assertNull(counts.compute("absent", (k, v) -> null));
+    assertFalse(counts.containsKey("absent"));
+    assertNull(counts.compute("new", (k, v) -> null));
+    assertFalse(counts.containsKey("new"));
+
+    assertEquals((Integer) 1, counts.computeIfAbsent("not", (k) -> 99));
+    assertEquals((Integer) 3, counts.computeIfAbsent("the", (k) -> k.length()));
+    assertNull(counts.computeIfAbsent("nothing", (k) -> null));
+    assertEquals((Integer) 2, counts.putIfAbsent("be", 7));
+    assertNull(counts.putIfAbsent("question", 8));
+    assertEquals((Integer) 8, counts.get("question"));
+    assertEquals(5, counts.size());
+    assertTrue(inOrder(counts.keys()));
+
+    // randomized, against the default methods (on another kind of map)
+    SimpleMap<Integer, String> other = new DeterministicSkipList<Integer, String>((i, j) -> i - j);
+    for (int i = 0; i < 2000; i++) {
+      int key = random.nextInt(100);
+      String v = value(i);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(other.merge(key, v, (a, b) -> (a.length() > 10) ? null : a + b),
+              ints.merge(key, v, (a, b) -> (a.length() > 10) ? null : a + b));
+          break;
+        case 1:
+          assertEquals(other.computeIfAbsent(key, (k) -> v), ints.computeIfAbsent(key, (k) -> v));
+          break;
+        default:
+          assertEquals(other.compute(key, (k, old) -> (old == null) ? v : null),
+              ints.compute(key, (k, old) -> (old == null) ? v : null));
+      } // switch
+    } // for
+    assertWellFormed(ints);
+    assertEquals(other.size(), ints.size());
+    other.forEach((k, v) -> assertEquals(v, ints.get(k)));
+  } // testCompute()
+
+  /**
+   * Intersect, union, difference and join lists, against TreeMap.
+   */
+  @Test
+  public void testSetOperations() {
+    for (int round = 0; round < 20; round++) {
+      SkipList<Integer, String> left = new SkipList<Integer, String>((i, j) -> i - j);
+      SkipList<Integer, Integer> right = new SkipList<Integer, Integer>((i, j) -> i - j);
+      TreeMap<Integer, String> expectedLeft = new TreeMap<Integer, String>();
+      TreeMap<Integer, Integer> expectedRight = new TreeMap<Integer, Integer>();
+      // dense keys on the left, short clusters of keys on the right
+      for (int i = 0; i < random.nextInt(1000); i++) {
+        int key = random.nextInt(2000);
+        left.set(key, value(key));
+        expectedLeft.put(key, value(key));
+      } // for
+      for (int i = 0; i < random.nextInt(10); i++) {
+        int start = random.nextInt(2100) - 50;
+        for (int key = start; key < start + random.nextInt(40); key++) {
+          right.set(key, -key);
+          expectedRight.put(key, -key);
+        } // for
+      } // for
+
+      SkipList<Integer, String> both = left.intersect(right);
+      SkipList<Integer, String> difference = left.difference(right);
+      Iterator<SkipList.Match<Integer, String, Integer>> joined = left.mergeJoin(right);
+      for (Integer key : expectedLeft.keySet()) {
+        if (expectedRight.containsKey(key)) {
+          assertEquals(value(key), both.get(key));
+          assertTrue(joined.hasNext());
+          SkipList.Match<Integer, String, Integer> match = joined.next();
+          assertEquals(key, match.key());
+          assertEquals(value(key), match.left());
+          assertEquals((Integer) (-key), match.right());
+        } else {
+          assertEquals(value(key), difference.get(key));
+        } // if/else
+      } // for
+      assertFalse(joined.hasNext());
+      assertEquals(both.size() + difference.size(), left.size());
+      assertWellFormed(both);
+      assertWellFormed(difference);
+
+      SkipList<Integer, String> others = new SkipList<Integer, String>((i, j) -> i - j);
+      expectedRight.forEach((k, v) -> others.set(k, "r" + v));
+      SkipList<Integer, String> union = left.union(others);
+      TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+      expectedRight.forEach((k, v) -> expected.put(k, "r" + v));
+      expected.putAll(expectedLeft);
+      assertWellFormed(union);
+      assertEquals(expected.size(), union.size());
+      expected.forEach((k, v) -> assertEquals(v, union.get(k)));
+      assertEquals(expectedLeft.size(), left.size());
+    } // for
+
+    // intersecting a few keys with many should not look at most of them
+    SkipList<Integer, Integer> many = new SkipList<Integer, Integer>((i, j) -> i - j);
+    for (int i = 0; i < 100000; i++) {
+      many.set(i, i);
+    } // for
+    int[] calls = new int[1];
+    SkipList<Integer, Integer> few = new SkipList<Integer, Integer>((i, j) -> {
+      calls[0]++;
+      return i - j;
+    });
+    for (int i = 0; i < 10; i++) {
+      few.set(i * 9973, i);
+    } // for
+    calls[0] = 0;
+    SkipList<Integer, Integer> result = few.intersect(many);
+    assertEquals(10, result.size());
+    assertTrue(calls[0] < 2000);
+  } // testSetOperations()
+
+  /**
+   * Check the footprint estimates against JOL, for both kinds of nodes.
+   */
+  @Test
+  public void testMemoryFootprint() {
+    long[] footprints = new long[2];
+    for (int mode = 0; mode < 2; mode++) {
+      SkipList<Integer, Integer> sl = new SkipList<Integer, Integer>((i, j) -> i - j);
+      if (mode == 1) {
+        sl.enableCompactNodes();
+      } // if
+      Integer[] keys = new Integer[2000];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = 1000 + 7 * i;
+        sl.set(keys[i], keys[i]);
+      } // for
+      for (int i = 0; i < 500; i++) {
+        sl.remove(keys[i]);
+      } // for
+      Object[] entries = Arrays.copyOfRange(keys, 500, keys.length);
+      long everything = GraphLayout.parseInstance(sl.front).totalSize();
+      long nodes = everything - GraphLayout.parseInstance(entries).totalSize();
+      assertEquals(nodes, sl.memoryFootprint());
+      // the values are the keys, so count them once
+      assertEquals(everything, sl.memoryFootprint((k) -> SLNode.objectSize(0, 1), (v) -> 0));
+      footprints[mode] = nodes;
+    } // for
+    assertTrue(footprints[1] < footprints[0] / 2);
+  } // testMemoryFootprint()
+
+  /**
+   * Remove lazily, against TreeMap, and make sure compaction cleans up (and that the height
+   * comes all the way down once the list is empty).
+   */
+  @Test
+  public void testLazyDeletes() {
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    sl.enableLazyDeletes();
+    TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+    for (int i = 0; i < 20000; i++) {
+      int key = random.nextInt(2000);
+      String v = value(i);
+      switch (random.nextInt(8)) {
+        case 0:
+        case 1:
+        case 2:
+          assertEquals(expected.remove(key), sl.remove(key));
+          break;
+        case 3:
+          assertEquals(expected.merge(key, v, (a, b) -> null), sl.merge(key, v, (a, b) -> null));
+          break;
+        case 4:
+          assertEquals(expected.containsKey(key), sl.containsKey(key));
+          assertEquals(expected.get(key), sl.get(key));
+          break;
+        default:
+          assertEquals(expected.put(key, v), sl.set(key, v));
+      } // switch
+      assertEquals(expected.size(), sl.size());
+      // compaction keeps up (roughly)
+      assertTrue(sl.tombstones() <= sl.size() + 2 * SkipList.SWEEP_STEP);
+    } // for
+    Iterator<Integer> keys = sl.keys();
+    for (Integer key : expected.keySet()) {
+      assertEquals(key, keys.next());
+    } // for
+    assertFalse(keys.hasNext());
+
+    for (Integer key : expected.keySet()) {
+      sl.remove(key);
+    } // for
+    assertEquals(0, sl.size());
+    assertFalse(sl.keys().hasNext());
+    assertTrue(sl.tombstones() > 0);
+    sl.compact();
+    assertEquals(0, sl.tombstones());
+    assertEquals(0, sl.height);
+    assertNull(sl.front.next(0));
+
+    // removing everything eagerly must bring the height down too
+    sl.disableLazyDeletes();
+    for (int i = 0; i < 1000; i++) {
+      sl.set(i, value(i));
+    } // for
+    sl.remove(500);
+    sl.enableLazyDeletes();
+    sl.remove(501);
+    assertEquals(998, sl.removeRange(null, null) + sl.tombstones());
+    assertWellFormed(sl);
+    sl.disableLazyDeletes();
+    for (int i = 0; i < 1000; i++) {
+      sl.set(i, value(i));
+      sl.remove(i);
+    } // for
+    assertEquals(0, sl.height);
+  } // testLazyDeletes()
+
+  /**
+   * Using the list as a priority queue, with duplicate keys, against a TreeMap of lists.
+   */
+  @Test
+  public void testPollFirst() {
+    SkipList<Integer, String> sl = new SkipList<Integer, String>((i, j) -> i - j);
+    sl.enableDuplicateKeys();
+    assertNull(sl.peekFirst());
+    assertNull(sl.pollFirst());
+    TreeMap<Integer, ArrayList<String>> expected = new TreeMap<Integer, ArrayList<String>>();
+    int count = 0;
+    for (int i = 0; i < 20000; i++) {
+      if (random.nextInt(3) == 0) {
+        int n = random.nextInt(5);
+        List<Map.Entry<Integer, String>> batch = new ArrayList<Map.Entry<Integer, String>>();
+        if (n == 1) {
+          Map.Entry<Integer, String> entry = sl.pollFirst();
+          if (entry != null) {
+            batch.add(entry);
+          } // if
+        } else {
+          batch = sl.pollFirstBatch(n);
+        } // if/else
+        assertEquals(Math.min(n, count), batch.size());
+        for (Map.Entry<Integer, String> entry : batch) {
+          Map.Entry<Integer, ArrayList<String>> first = expected.firstEntry();
+          assertEquals(first.getKey(), entry.getKey());
+          assertEquals(first.getValue().remove(0), entry.getValue());
+          if (first.getValue().isEmpty()) {
+            expected.remove(first.getKey());
+          } // if
+          count--;
+        } // for
+      } else {
+        int key = random.nextInt(1000);
+        String v = value(i);
+        assertNull(sl.set(key, v));
+        expected.computeIfAbsent(key, (k) -> new ArrayList<String>()).add(v);
+        count++;
+      } // if/else
+      assertEquals(count, sl.size());
+      if (count > 0) {
+        assertEquals(expected.firstKey(), sl.peekFirst().getKey());
+        assertEquals(expected.firstEntry().getValue().get(0), sl.peekFirst().getValue());
+      } // if
+    } // for
+    for (Integer key : expected.keySet()) {
+      assertEquals(expected.get(key).get(0), sl.get(key));
+    } // for
+    assertEquals(count, sl.pollFirstBatch(Integer.MAX_VALUE).size());
+    assertEquals(0, sl.height);
+    assertNull(sl.pollFirst());
+
+    // without duplicates, pollFirst must skip tombstones
+    sl.disableDuplicateKeys();
+    sl.enableLazyDeletes();
+    for (int i = 0; i < 100; i++) {
+      sl.set(i, value(i));
+      sl.set(i, value(i + 1));
+    } // for
+    for (int i = 0; i < 50; i++) {
+      sl.remove(i);
+    } // for
+    assertEquals(Integer.valueOf(50), sl.peekFirst().getKey());
+    assertEquals(value(51), sl.pollFirst().getValue());
+    assertEquals(0, sl.tombstones());
+    assertEquals(49, sl.pollFirstBatch(100).size());
+    assertEquals(0, sl.size());
+    try {
+      sl.enableDuplicateKeys();
+      fail("duplicate keys with lazy deletes");
+    } catch (IllegalStateException e) {
+      // expected
+    } // try/catch
+  } // testPollFirst()
+
+  /**
+   * Range counts estimated from the towers should be close, exact for small ranges, and
+   * cheap; histograms should cover every key.
+   */
+  @Test
+  public void testEstimateCount() {
+    int[] calls = new int[1];
+    SkipList<Integer, Integer> sl = new SkipList<Integer, Integer>((i, j) -> {
+      calls[0]++;
+      return i - j;
+    });
+    // estimates depend on the towers, so fix both the towers and the keys
+    sl.random = new Random(44);
+    Random random = new Random(44);
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 100000; i++) {
+      int key = random.nextInt(1000000);
+      sl.set(key, i);
+      expected.put(key, i);
+    } // for
+    double totalError = 0;
+    for (int i = 0; i < 200; i++) {
+      int from = random.nextInt(1000000);
+      int to = from + ((i % 2 == 0) ? random.nextInt(1000) : random.nextInt(1000000));
+      int actual = expected.subMap(from, to).size();
+      calls[0] = 0;
+      long estimate = sl.estimateCount(from, to);
+      assertTrue(calls[0] < 2000);
+      if (actual < SkipList.ESTIMATE_SAMPLE) {
+        assertEquals(actual, estimate);
+      } else {
+        double error = Math.abs(estimate - actual) / (double) actual;
+        assertTrue(error < 0.5);
+        totalError += error;
+      } // if/else
+    } // for
+    assertTrue(totalError / 200 < 0.15);
+    assertEquals(0, sl.estimateCount(5, 5));
+    assertEquals(expected.size(), sl.estimateCount(null, null), 0.25 * expected.size());
+
+    // level 1 buckets are exact; higher ones add up to about the right total
+    for (int level = 1; level < 6; level++) {
+      List<SkipList.Bucket<Integer>> buckets = sl.histogram(level);
+      long total = 0;
+      for (int b = 0; b < buckets.size(); b++) {
+        Integer lo = buckets.get(b).from();
+        assertTrue(lo == null || sl.findNode(lo).levels() > level);
+        if (level == 1) {
+          Integer hi = (b + 1 < buckets.size()) ? buckets.get(b + 1).from() : 1000000;
+          assertEquals(expected.subMap((lo == null) ? 0 : lo, hi).size(), buckets.get(b).count());
+        } // if
+        total += buckets.get(b).count();
+      } // for
+      assertEquals(expected.size(), total, 0.1 * expected.size());
+    } // for
+  } // testEstimateCount()
+
   public static void main(String[] args) {
     SkipListTests slt = new SkipListTests();
     slt.setup();
@@ -0,0 +1,61 @@
+/**
+ * Nodes in a StringSkipList.  A node that appears only on level 0 keeps the number of leading
+ * bytes it shares with its level-0 predecessor and the rest of its key; a taller node keeps its
+ * whole key in suffix (and shared is 0).
+ */
+class StrNode<V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of leading bytes shared with the previous key.
+   */
+  int shared;
+
+  /**
+   * The bytes after the shared prefix.
+   */
+  byte[] suffix;
+
+  /**
+   * The value.
+   */
+  V value;
+
+  /**
+   * Pointers to the next nodes.
+   */
+  StrNode<V>[] next;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new node of height n.
+   */
+  @SuppressWarnings("unchecked")
+  StrNode(int shared, byte[] suffix, V value, int n) {
+    this.shared = shared;
+    this.suffix = suffix;
+    this.value = value;
+    this.next = (StrNode<V>[]) new StrNode<?>[n + 1];
+  } // StrNode(int, byte[], V, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Estimate the bytes of heap taken by this node, its pointers and its key bytes (but not
+   * its value).
+   */
+  long footprint() {
+    // suffix, value and next; shared
+    return SLNode.objectSize(3, 1) + SLNode.arraySize(this.next.length)
+        + SLNode.byteArraySize(this.suffix.length);
+  } // footprint()
+
+} // StrNode<V>
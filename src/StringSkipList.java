@@ -0,0 +1,444 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * A skip list specialized for String keys that share long prefixes (URL paths, metric names,
+ * and the like).
+ *
+ * Keys are stored as UTF-8 bytes.  Nodes that appear only on level 0 are front-coded against
+ * their level-0 predecessor: they keep the length of the prefix they share with it and the
+ * rest of the key.  Taller nodes keep their full key, so the upper levels never need decoding.
+ * Keys are ordered by their unsigned UTF-8 bytes, which is code point order (the same as
+ * String.compareTo for keys without supplementary characters).
+ *
+ * Searches remember how many leading bytes the key shares with the nodes on either side of
+ * it, so comparisons skip bytes that are already known to match.
+ */
+public class StringSkipList<V> implements SimpleMap<String, V> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The maximum level of a node.
+   */
+  static final int MAX_HEIGHT = SkipList.MAX_HEIGHT;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Pointers to all the front elements.  The front's key is empty.
+   */
+  StrNode<V> front;
+
+  /**
+   * The number of values in the list.
+   */
+  int size;
+
+  /**
+   * The current height of the list.
+   */
+  int height;
+
+  /**
+   * The probability used to determine the height of nodes.
+   */
+  double prob = 0.5;
+
+  /**
+   * Record the cost of the 'get' method (in bytes compared).
+   */
+  int getCount = 0;
+
+  /**
+   * The full key of the node before the key of the last search.
+   */
+  byte[] predKey = new byte[64];
+
+  /**
+   * The length of predKey.
+   */
+  int predLen;
+
+  /**
+   * The common prefix length computed by the last call to compareFrom.
+   */
+  int lcp;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, list.
+   */
+  public StringSkipList() {
+    this.front = new StrNode<V>(0, new byte[0], null, MAX_HEIGHT);
+    this.size = 0;
+    this.height = 0;
+  } // StringSkipList()
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public V set(String key, V value) {
+    byte[] k = bytes(key);
+    StrNode<V>[] update = newUpdate();
+    StrNode<V> x = search(k, update);
+
+    // if the keys match, we update!
+    if (x != null) {
+      V temp = x.value;
+      x.value = value;
+      return temp;
+    } // if
+
+    // otherwise, we insert a new node
+    int newLevel = randomLevel();
+    if (newLevel > this.height) {
+      for (int i = this.height + 1; i <= newLevel; i++) {
+        update[i] = this.front;
+      } // for
+      this.height = newLevel;
+    } // if
+    if (newLevel == 0) {
+      int shared = prefix(this.predKey, this.predLen, k, k.length);
+      x = new StrNode<V>(shared, Arrays.copyOfRange(k, shared, k.length), value, 0);
+    } else {
+      x = new StrNode<V>(0, k, value, newLevel);
+    } // if/else
+    for (int i = 0; i <= newLevel; i++) {
+      x.next[i] = update[i].next[i];
+      update[i].next[i] = x;
+    } // for
+
+    // the successor was coded against our predecessor, so recode it against us
+    recode(x.next[0], this.predKey, k, k.length);
+    this.size++;
+    return null;
+  } // set(String, V)
+
+  @Override
+  public V get(String key) {
+    this.getCount = 0;
+    StrNode<V> x = search(bytes(key), null);
+    return (x == null) ? null : x.value;
+  } // get(String)
+
+  @Override
+  public int size() {
+    return this.size;
+  } // size()
+
+  @Override
+  public boolean containsKey(String key) {
+    return search(bytes(key), null) != null;
+  } // containsKey(String)
+
+  @Override
+  public V remove(String key) {
+    byte[] k = bytes(key);
+    StrNode<V>[] update = newUpdate();
+    StrNode<V> x = search(k, update);
+    if (x == null) {
+      return null;
+    } // if
+    for (int i = 0; i < x.next.length; i++) {
+      update[i].next[i] = x.next[i];
+    } // for
+
+    // the successor was coded against us, so recode it against our predecessor
+    recode(x.next[0], k, this.predKey, this.predLen);
+    while (this.height > 0 && this.front.next[this.height] == null) {
+      this.height--;
+    } // while
+    this.size--;
+    return x.value;
+  } // remove(String)
+
+  @Override
+  public Iterator<String> keys() {
+    return new Iterator<String>() {
+      Cursor<V> cursor = new Cursor<V>(StringSkipList.this.front);
+
+      @Override
+      public boolean hasNext() {
+        return this.cursor.hasNext();
+      } // hasNext()
+
+      @Override
+      public String next() {
+        this.cursor.advance();
+        return this.cursor.key();
+      } // next()
+    };
+  } // keys()
+
+  @Override
+  public Iterator<V> values() {
+    return new Iterator<V>() {
+      StrNode<V> next = StringSkipList.this.front.next[0];
+
+      @Override
+      public boolean hasNext() {
+        return this.next != null;
+      } // hasNext()
+
+      @Override
+      public V next() {
+        if (this.next == null) {
+          throw new NoSuchElementException();
+        } // if
+        V result = this.next.value;
+        this.next = this.next.next[0];
+        return result;
+      } // next()
+    };
+  } // values()
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super V> action) {
+    Cursor<V> cursor = new Cursor<V>(this.front);
+    while (cursor.hasNext()) {
+      cursor.advance();
+      action.accept(cursor.key(), cursor.node.value);
+    } // while
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Estimate the number of bytes used by the list itself (everything but the values),
+   * following HotSpot's object layout for the running JVM, as SkipList.memoryFootprint does.
+   */
+  public long memoryFootprint() {
+    // front and predKey; size, height, getCount, predLen, lcp and the two halves of prob
+    long total = SLNode.objectSize(2, 7) + SLNode.byteArraySize(this.predKey.length);
+    for (StrNode<V> n = this.front; n != null; n = n.next[0]) {
+      total += n.footprint();
+    } // for
+    return total;
+  } // memoryFootprint()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Convert a key to bytes.
+   */
+  static byte[] bytes(String key) {
+    if (key == null) {
+      throw new NullPointerException("null key");
+    } // if
+    return key.getBytes(StandardCharsets.UTF_8);
+  } // bytes(String)
+
+  /**
+   * Make an array for the nodes we will have to update.
+   */
+  @SuppressWarnings("unchecked")
+  static <V> StrNode<V>[] newUpdate() {
+    return (StrNode<V>[]) new StrNode<?>[MAX_HEIGHT + 1];
+  } // newUpdate()
+
+  /**
+   * Pick a random level for a new node between 0 and MAX_HEIGHT.
+   */
+  int randomLevel() {
+    int newLevel = 0;
+    while (SkipList.rand.nextDouble() < this.prob) {
+      newLevel++;
+    } // while
+    return Math.min(newLevel, MAX_HEIGHT);
+  } // randomLevel()
+
+  /**
+   * Get the length of the common prefix of a[0..alen) and b[0..blen).
+   */
+  static int prefix(byte[] a, int alen, byte[] b, int blen) {
+    int end = Math.min(alen, blen);
+    int i = Arrays.mismatch(a, 0, end, b, 0, end);
+    return (i < 0) ? end : i;
+  } // prefix(byte[], int, byte[], int)
+
+  /**
+   * Compare a[from..alen) with key[from..), given that the first from bytes match.  Sets
+   * this.lcp to the length of the common prefix of the two.
+   */
+  int compareFrom(byte[] a, int aoff, int alen, byte[] key, int from) {
+    int end = Math.min(alen, key.length);
+    int m = end;
+    if (from < end) {
+      int i = Arrays.mismatch(a, aoff + from, aoff + end, key, from, end);
+      this.getCount += (i < 0) ? end - from : i + 1;
+      if (i >= 0) {
+        m = from + i;
+      } // if
+    } // if
+    this.lcp = m;
+    if (m == end) {
+      return alen - key.length;
+    } // if
+    return Byte.toUnsignedInt(a[aoff + m]) - Byte.toUnsignedInt(key[m]);
+  } // compareFrom(byte[], int, int, byte[], int)
+
+  /**
+   * Search for a key.  Returns the node with the key, or null if there is none.  Either way,
+   * leaves the full key of the node just before the key in predKey, and (if update is
+   * non-null) the last node before the key on each level in update.
+   */
+  StrNode<V> search(byte[] key, StrNode<V>[] update) {
+    StrNode<V> x = this.front;
+    int lo = 0; // length of the common prefix of key and x
+    int hi = 0; // length of the common prefix of key and the node that stopped us
+
+    // Upper levels: every node here stores its full key.  Anything between x and the node
+    // that stopped us shares min(lo, hi) bytes with the key.
+    for (int i = this.height; i >= 1; i--) {
+      StrNode<V> n = x.next[i];
+      while (n != null) {
+        int c = compareFrom(n.suffix, 0, n.suffix.length, key, Math.min(lo, hi));
+        if (c >= 0) {
+          hi = this.lcp;
+          break;
+        } // if
+        x = n;
+        lo = this.lcp;
+        n = x.next[i];
+      } // while
+      if (update != null) {
+        update[i] = x;
+      } // if
+    } // for
+
+    // Level 0: keep x's full key in predKey, decoding front-coded nodes as we pass them.
+    int len = x.suffix.length;
+    ensure(Math.max(len, key.length));
+    System.arraycopy(x.suffix, 0, this.predKey, 0, len);
+    StrNode<V> n = x.next[0];
+    StrNode<V> found = null;
+    while (n != null) {
+      int c;
+      int nLen = n.shared + n.suffix.length;
+      if (n.next.length > 1) {
+        // a tall node keeps its full key
+        c = compareFrom(n.suffix, 0, nLen, key, Math.min(lo, hi));
+      } else if (n.shared < lo) {
+        // n leaves x before x leaves the key, and n > x, so n > key
+        break;
+      } else if (n.shared > lo) {
+        // n agrees with x where x falls below the key, so n < key
+        c = -1;
+        this.lcp = lo;
+      } else {
+        // n agrees with the key for exactly lo bytes; compare the rest
+        c = compareFrom(n.suffix, -lo, nLen, key, lo);
+      } // if/else
+
+      if (c == 0) {
+        found = n;
+        break;
+      } else if (c > 0) {
+        break;
+      } // if/else
+      ensure(nLen);
+      System.arraycopy(n.suffix, 0, this.predKey, n.shared, n.suffix.length);
+      len = nLen;
+      lo = this.lcp;
+      x = n;
+      n = x.next[0];
+    } // while
+    if (update != null) {
+      update[0] = x;
+    } // if
+    this.predLen = len;
+    return found;
+  } // search(byte[], StrNode[])
+
+  /**
+   * Make sure predKey can hold at least len bytes.
+   */
+  void ensure(int len) {
+    if (this.predKey.length < len) {
+      this.predKey = Arrays.copyOf(this.predKey, Math.max(len, this.predKey.length * 2));
+    } // if
+  } // ensure(int)
+
+  /**
+   * Recode a node (if it is front-coded) against a new predecessor key.  The node's current
+   * predecessor key is oldPred.
+   */
+  static <V> void recode(StrNode<V> node, byte[] oldPred, byte[] newPred, int newLen) {
+    if (node == null || node.next.length > 1) {
+      return;
+    } // if
+    byte[] full = new byte[node.shared + node.suffix.length];
+    System.arraycopy(oldPred, 0, full, 0, node.shared);
+    System.arraycopy(node.suffix, 0, full, node.shared, node.suffix.length);
+    int shared = prefix(newPred, newLen, full, full.length);
+    node.shared = shared;
+    node.suffix = Arrays.copyOfRange(full, shared, full.length);
+  } // recode(StrNode, byte[], byte[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Walks level 0, decoding keys as it goes.
+   */
+  static class Cursor<V> {
+
+    /**
+     * The current node.
+     */
+    StrNode<V> node;
+
+    /**
+     * The key of the current node.
+     */
+    byte[] buf = new byte[64];
+
+    /**
+     * The length of the key of the current node.
+     */
+    int len = 0;
+
+    Cursor(StrNode<V> front) {
+      this.node = front;
+    } // Cursor(StrNode)
+
+    boolean hasNext() {
+      return this.node.next[0] != null;
+    } // hasNext()
+
+    void advance() {
+      if (this.node.next[0] == null) {
+        throw new NoSuchElementException();
+      } // if
+      this.node = this.node.next[0];
+      this.len = this.node.shared + this.node.suffix.length;
+      if (this.buf.length < this.len) {
+        this.buf = Arrays.copyOf(this.buf, this.len * 2);
+      } // if
+      System.arraycopy(this.node.suffix, 0, this.buf, this.node.shared, this.node.suffix.length);
+    } // advance()
+
+    String key() {
+      return new String(this.buf, 0, this.len, StandardCharsets.UTF_8);
+    } // key()
+  } // class Cursor
+
+} // class StringSkipList
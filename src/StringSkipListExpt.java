@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compare the memory used per entry and the lookup latency of StringSkipList and
+ * SkipList<String, V> on keys with long shared prefixes.
+ *
+ * Usage: java StringSkipListExpt [entries]
+ */
+public class StringSkipListExpt {
+
+  /**
+   * Build a key shaped like a URL path or metric name.
+   */
+  static String key(int i) {
+    return "/metrics/cluster-" + (i % 4) + "/host-" + (i % 97) + "/service/requests/latency/"
+        + i;
+  } // key(int)
+
+  /**
+   * Get the heap in use after a few rounds of garbage collection.
+   */
+  static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    } // for
+    return rt.totalMemory() - rt.freeMemory();
+  } // usedHeap()
+
+  /**
+   * Time a full pass of lookups, returning the average nanoseconds per lookup.
+   */
+  static double timeLookups(SimpleMap<String, Integer> map, ArrayList<String> probes) {
+    long start = System.nanoTime();
+    int found = 0;
+    for (String probe : probes) {
+      if (map.get(probe) != null) {
+        found++;
+      } // if
+    } // for
+    long elapsed = System.nanoTime() - start;
+    if (found != probes.size()) {
+      throw new IllegalStateException("missing keys");
+    } // if
+    return (double) elapsed / probes.size();
+  } // timeLookups(SimpleMap, ArrayList)
+
+  public static void main(String[] args) {
+    int n = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    ArrayList<String> keys = new ArrayList<String>();
+    for (int i = 0; i < n; i++) {
+      keys.add(key(i));
+    } // for
+    Collections.shuffle(keys, new Random(207));
+    // Build the probes from fresh String objects, as a request handler would.
+    ArrayList<String> probes = new ArrayList<String>();
+    for (String k : keys) {
+      probes.add(new String(k.toCharArray()));
+    } // for
+
+    long before = usedHeap();
+    SkipList<String, Integer> plain = new SkipList<String, Integer>((s, t) -> s.compareTo(t));
+    for (int i = 0; i < n; i++) {
+      // copy the key so the list owns it, as it would when keys come off the wire
+      plain.set(new String(keys.get(i).toCharArray()), i);
+    } // for
+    long plainBytes = usedHeap() - before;
+
+    before = usedHeap();
+    StringSkipList<Integer> compressed = new StringSkipList<Integer>();
+    for (int i = 0; i < n; i++) {
+      compressed.set(keys.get(i), i);
+    } // for
+    long compressedBytes = usedHeap() - before;
+
+    System.out.println("entries: " + n);
+    System.out.printf("SkipList<String,V>  heap/entry: %6.1f bytes%n",
+        (double) plainBytes / n);
+    System.out.printf("StringSkipList<V>   heap/entry: %6.1f bytes (estimate %.1f)%n",
+        (double) compressedBytes / n, (double) compressed.memoryFootprint() / n);
+
+    // warm up, then measure
+    for (int round = 0; round < 5; round++) {
+      double a = timeLookups(plain, probes);
+      double b = timeLookups(compressed, probes);
+      if (round >= 2) {
+        System.out.printf("round %d: SkipList %7.1f ns/get   StringSkipList %7.1f ns/get%n",
+            round - 2, a, b);
+      } // if
+    } // for
+  } // main(String[])
+
+} // class StringSkipListExpt
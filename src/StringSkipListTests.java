@@ -0,0 +1,129 @@
+import static org.junit.Assert.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Tests of the prefix-compressed skip lists.
+ */
+public class StringSkipListTests extends SimpleMapTests<String> {
+
+  @Override
+  SimpleMap<String, String> newMap() {
+    // (the shared prefix exercises the front coding)
+    return new StringSkipList<String>();
+  } // newMap()
+
+  @Override
+  String key(int i) {
+    return String.format("/metrics/%05d", i);
+  } // key(int)
+
+  /**
+   * Make a key that shares a long prefix with its neighbors.
+   */
+  static String path(int i) {
+    return "/api/v1/customers/" + (i % 7) + "/orders/" + i + "/items";
+  } // path(int)
+
+  /**
+   * Make sure the list has exactly the same contents as a TreeMap.
+   */
+  static void assertSame(TreeMap<String, Integer> expected, StringSkipList<Integer> sl) {
+    assertEquals(expected.size(), sl.size());
+    Iterator<String> keys = sl.keys();
+    Iterator<Integer> values = sl.values();
+    for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getKey(), keys.next());
+      assertEquals(entry.getValue(), values.next());
+      assertEquals(entry.getValue(), sl.get(entry.getKey()));
+    } // for
+    assertFalse(keys.hasNext());
+  } // assertSame(TreeMap, StringSkipList)
+
+  @Test
+  public void testSimple() {
+    StringSkipList<Integer> sl = new StringSkipList<Integer>();
+    assertNull(sl.set("/a/b/c", 1));
+    assertNull(sl.set("/a/b", 2));
+    assertNull(sl.set("/a/b/d", 3));
+    assertNull(sl.set("", 4));
+    assertEquals((Integer) 1, sl.set("/a/b/c", 5));
+    assertEquals((Integer) 5, sl.get("/a/b/c"));
+    assertEquals((Integer) 4, sl.get(""));
+    assertNull(sl.get("/a/b/"));
+    assertNull(sl.get("/a/c"));
+    assertTrue(sl.containsKey("/a/b"));
+    assertEquals((Integer) 2, sl.remove("/a/b"));
+    assertNull(sl.remove("/a/b"));
+    assertEquals((Integer) 5, sl.get("/a/b/c"));
+    assertEquals((Integer) 3, sl.get("/a/b/d"));
+    assertEquals(3, sl.size());
+  } // testSimple()
+
+  @Test
+  public void testNonAscii() {
+    StringSkipList<Integer> sl = new StringSkipList<Integer>();
+    TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+    String[] keys = {"caf\u00e9", "cafe", "caf\u00e9s", "caf", "\u00fcber", "z"};
+    for (int i = 0; i < keys.length; i++) {
+      sl.set(keys[i], i);
+      expected.put(keys[i], i);
+    } // for
+    assertSame(expected, sl);
+  } // testNonAscii()
+
+  @Test
+  public void testRandomAgainstTreeMap() {
+    Random random = new Random(207);
+    StringSkipList<Integer> sl = new StringSkipList<Integer>();
+    TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+    for (int i = 0; i < 5000; i++) {
+      String key = path(random.nextInt(500));
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), sl.remove(key));
+      } else {
+        assertEquals(expected.put(key, i), sl.set(key, i));
+      } // if/else
+    } // for
+    assertSame(expected, sl);
+  } // testRandomAgainstTreeMap()
+
+  @Test
+  public void testFrontCoding() {
+    StringSkipList<Integer> sl = new StringSkipList<Integer>();
+    long keyBytes = 0;
+    for (int i = 0; i < 1000; i++) {
+      sl.set(path(i), i);
+      keyBytes += path(i).length();
+    } // for
+    long stored = 0;
+    for (StrNode<Integer> n = sl.front.next[0]; n != null; n = n.next[0]) {
+      stored += n.suffix.length;
+    } // for
+    // About half the nodes are front-coded, and they share most of their bytes.
+    assertTrue(stored < keyBytes * 3 / 4);
+  } // testFrontCoding()
+
+  /**
+   * Check the footprint estimate against JOL.
+   */
+  @Test
+  public void testMemoryFootprint() {
+    StringSkipList<Integer> sl = new StringSkipList<Integer>();
+    Integer value = 100000;
+    for (int i = 0; i < 2000; i++) {
+      sl.set(path(i), value);
+    } // for
+    for (int i = 0; i < 500; i++) {
+      sl.remove(path(3 * i));
+    } // for
+    long everything = GraphLayout.parseInstance(sl).totalSize();
+    assertEquals(everything - GraphLayout.parseInstance(value).totalSize(),
+        sl.memoryFootprint());
+  } // testMemoryFootprint()
+
+} // class StringSkipListTests
@@ -0,0 +1,92 @@
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A SimpleMap that guards another SimpleMap with a single lock.  (The baseline that the
+ * concurrent maps are measured against.)
+ */
+public class SynchronizedMap<K, V> implements SimpleMap<K, V> {
+
+  /**
+   * The underlying map.
+   */
+  final SimpleMap<K, V> map;
+
+  /**
+   * Wrap a map.
+   */
+  public SynchronizedMap(SimpleMap<K, V> map) {
+    this.map = map;
+  } // SynchronizedMap(SimpleMap)
+
+  @Override
+  public synchronized V set(K key, V value) {
+    return this.map.set(key, value);
+  } // set(K, V)
+
+  @Override
+  public synchronized V get(K key) {
+    return this.map.get(key);
+  } // get(K)
+
+  @Override
+  public synchronized int size() {
+    return this.map.size();
+  } // size()
+
+  @Override
+  public synchronized boolean containsKey(K key) {
+    return this.map.containsKey(key);
+  } // containsKey(K)
+
+  @Override
+  public synchronized V remove(K key) {
+    return this.map.remove(key);
+  } // remove(K)
+
+  /**
+   * Get an iterator for the keys.  The caller must synchronize on this map while using it.
+   */
+  @Override
+  public Iterator<K> keys() {
+    return this.map.keys();
+  } // keys()
+
+  /**
+   * Get an iterator for the values.  The caller must synchronize on this map while using it.
+   */
+  @Override
+  public Iterator<V> values() {
+    return this.map.values();
+  } // values()
+
+  @Override
+  public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+    this.map.forEach(action);
+  } // forEach(BiConsumer)
+
+  @Override
+  public synchronized V compute(K key,
+      BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return this.map.compute(key, remapping);
+  } // compute(K, BiFunction)
+
+  @Override
+  public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+    return this.map.computeIfAbsent(key, mapping);
+  } // computeIfAbsent(K, Function)
+
+  @Override
+  public synchronized V merge(K key, V value,
+      BiFunction<? super V, ? super V, ? extends V> remapping) {
+    return this.map.merge(key, value, remapping);
+  } // merge(K, V, BiFunction)
+
+  @Override
+  public synchronized V putIfAbsent(K key, V value) {
+    return this.map.putIfAbsent(key, value);
+  } // putIfAbsent(K, V)
+
+} // class SynchronizedMap
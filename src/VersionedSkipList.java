@@ -0,0 +1,449 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * A multi-version skip list.  Every set and remove creates a new version of the map, and
+ * readers can look at the map as of any version they hold a snapshot for, while writers keep
+ * going.  The SimpleMap methods work on the latest version.
+ *
+ * Each key lives in a single SLNode of an ordinary SkipList; its value is a chain of
+ * versions, newest first.  Versions that no reader can see any more are dropped when the key
+ * is next written, and by periodic sweeps of the whole list.
+ *
+ * All methods are synchronized, but they only hold the lock for a single operation, so a
+ * long-running reader never holds up writers.
+ */
+public class VersionedSkipList<K, V> implements SimpleMap<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The version chains, one per key.
+   */
+  SkipList<K, Version<V>> chains;
+
+  /**
+   * The latest version number.
+   */
+  long version;
+
+  /**
+   * The number of keys present in the latest version.
+   */
+  int size;
+
+  /**
+   * The versions held by open snapshots, with a count of the snapshots holding each.
+   */
+  TreeMap<Long, Integer> readers = new TreeMap<Long, Integer>();
+
+  /**
+   * The number of versions written since the last full sweep.
+   */
+  int writesSinceSweep;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new versioned skip list that orders keys using the specified comparator.
+   */
+  public VersionedSkipList(Comparator<K> comparator) {
+    this.chains = new SkipList<K, Version<V>>(comparator);
+    this.version = 0;
+    this.size = 0;
+  } // VersionedSkipList(Comparator<K>)
+
+  /**
+   * Create a new versioned skip list that uses the default SkipList comparator.
+   */
+  public VersionedSkipList() {
+    this((k1, k2) -> k1.toString().compareTo(k2.toString()));
+  } // VersionedSkipList()
+
+  // +-------------------+-------------------------------------------
+  // | SimpleMap methods |
+  // +-------------------+
+
+  @Override
+  public synchronized V set(K key, V value) {
+    SLNode<K, Version<V>> node = this.chains.findNode(key);
+    long v = ++this.version;
+    if (node == null) {
+      this.chains.set(key, new Version<V>(v, value, false, null));
+      this.size++;
+      return null;
+    } // if
+    Version<V> latest = node.value;
+    node.value = new Version<V>(v, value, false, latest);
+    prune(node);
+    noteWrite();
+    if (latest.removed) {
+      this.size++;
+      return null;
+    } // if
+    return latest.value;
+  } // set(K, V)
+
+  @Override
+  public synchronized V get(K key) {
+    return get(key, this.version);
+  } // get(K)
+
+  @Override
+  public synchronized int size() {
+    return this.size;
+  } // size()
+
+  @Override
+  public synchronized boolean containsKey(K key) {
+    SLNode<K, Version<V>> node = this.chains.findNode(key);
+    return node != null && !node.value.removed;
+  } // containsKey(K)
+
+  @Override
+  public synchronized V remove(K key) {
+    SLNode<K, Version<V>> node = this.chains.findNode(key);
+    if (node == null || node.value.removed) {
+      return null;
+    } // if
+    Version<V> latest = node.value;
+    node.value = new Version<V>(++this.version, null, true, latest);
+    this.size--;
+    prune(node);
+    noteWrite();
+    return latest.value;
+  } // remove(K)
+
+  /**
+   * Replace the latest value associated with key by remapping.apply(key, oldValue), as one
+   * new version (or none, if the value does not change).  computeIfAbsent, merge and
+   * putIfAbsent all come here, so they are atomic too.
+   */
+  @Override
+  public synchronized V compute(K key,
+      BiFunction<? super K, ? super V, ? extends V> remapping) {
+    return SimpleMap.super.compute(key, remapping);
+  } // compute(K, BiFunction)
+
+  @Override
+  public Iterator<K> keys() {
+    // (forEach closes its snapshot even if copying fails)
+    ArrayList<K> result = new ArrayList<K>();
+    forEach((k, v) -> result.add(k));
+    return result.iterator();
+  } // keys()
+
+  @Override
+  public Iterator<V> values() {
+    ArrayList<V> result = new ArrayList<V>();
+    forEach((k, v) -> result.add(v));
+    return result.iterator();
+  } // values()
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    Snapshot snap = snapshot();
+    try {
+      snap.forEach(action);
+    } finally {
+      snap.close();
+    } // try/finally
+  } // forEach(BiConsumer)
+
+  // +----------------------+----------------------------------------
+  // | Other public methods |
+  // +----------------------+
+
+  /**
+   * Get the latest version number.
+   */
+  public synchronized long version() {
+    return this.version;
+  } // version()
+
+  /**
+   * Open a snapshot of the latest version.  The versions it can see are kept until it is
+   * closed.
+   */
+  public synchronized Snapshot snapshot() {
+    this.readers.merge(this.version, 1, Integer::sum);
+    return new Snapshot(this.version);
+  } // snapshot()
+
+  /**
+   * Get the value associated with key as of readVersion.  The version must be the latest
+   * version or one held by an open snapshot; older versions may have been collected.
+   */
+  public synchronized V get(K key, long readVersion) {
+    SLNode<K, Version<V>> node = this.chains.findNode(key);
+    if (node == null) {
+      return null;
+    } // if
+    Version<V> ver = node.value.at(readVersion);
+    return (ver == null || ver.removed) ? null : ver.value;
+  } // get(K, long)
+
+  /**
+   * Apply an action to each key/value pair with from <= key < to (either bound may be null,
+   * for no bound), as of readVersion.  The list is scanned in batches, so writers can make
+   * progress during a long scan.
+   */
+  public void forEachInRange(K from, K to, long readVersion,
+      BiConsumer<? super K, ? super V> action) {
+    final int batch = 256;
+    ArrayList<K> keys = new ArrayList<K>(batch);
+    ArrayList<V> vals = new ArrayList<V>(batch);
+    K resume = from;
+    boolean inclusive = true;
+    while (true) {
+      keys.clear();
+      vals.clear();
+      boolean more;
+      synchronized (this) {
+        more = collect(resume, inclusive, to, readVersion, batch, keys, vals);
+      } // synchronized
+      for (int i = 0; i < keys.size(); i++) {
+        action.accept(keys.get(i), vals.get(i));
+      } // for
+      if (!more) {
+        return;
+      } // if
+      resume = keys.get(keys.size() - 1);
+      inclusive = false;
+    } // while
+  } // forEachInRange(K, K, long, BiConsumer)
+
+  /**
+   * Drop every version that no open snapshot can see.
+   */
+  public synchronized void gc() {
+    ArrayList<K> dead = new ArrayList<K>();
+    Iterator<SLNode<K, Version<V>>> it = this.chains.nodes();
+    while (it.hasNext()) {
+      SLNode<K, Version<V>> node = it.next();
+      if (prune(node)) {
+        dead.add(node.key);
+      } // if
+    } // while
+    for (K key : dead) {
+      this.chains.remove(key);
+    } // for
+    this.writesSinceSweep = 0;
+  } // gc()
+
+  /**
+   * Count the versions currently retained (for monitoring garbage collection).
+   */
+  public synchronized int retainedVersions() {
+    int count = 0;
+    Iterator<Version<V>> it = this.chains.values();
+    while (it.hasNext()) {
+      for (Version<V> ver = it.next(); ver != null; ver = ver.older) {
+        count++;
+      } // for
+    } // while
+    return count;
+  } // retainedVersions()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the oldest version some reader may still look at.
+   */
+  long oldestVisible() {
+    return this.readers.isEmpty() ? this.version : this.readers.firstKey();
+  } // oldestVisible()
+
+  /**
+   * Drop the versions of a node that no reader can see.  Returns true if the key is gone in
+   * every visible version (so the node itself can go).
+   */
+  boolean prune(SLNode<K, Version<V>> node) {
+    Version<V> visible = node.value.at(oldestVisible());
+    if (visible == null) {
+      return false;
+    } // if
+    visible.older = null;
+    return visible == node.value && visible.removed;
+  } // prune(SLNode)
+
+  /**
+   * Note that a version was written, sweeping the whole list once enough have piled up.
+   */
+  void noteWrite() {
+    if (++this.writesSinceSweep > Math.max(64, this.chains.size())) {
+      gc();
+    } // if
+  } // noteWrite()
+
+  /**
+   * Release a snapshot's hold on a version.
+   */
+  synchronized void release(long v) {
+    Integer count = this.readers.get(v);
+    if (count == null) {
+      return;
+    } // if
+    if (count == 1) {
+      this.readers.remove(v);
+    } else {
+      this.readers.put(v, count - 1);
+    } // if/else
+  } // release(long)
+
+  /**
+   * Collect up to max visible key/value pairs in [from, to) as of readVersion.  If inclusive
+   * is false, from itself is skipped.  Returns true if there may be more.
+   */
+  boolean collect(K from, boolean inclusive, K to, long readVersion, int max,
+      ArrayList<K> keys, ArrayList<V> vals) {
+    SLNode<K, Version<V>> node = (from == null) ? this.chains.front.next(0)
+        : this.chains.ceilingNode(from);
+    Comparator<K> comparator = this.chains.comparator;
+    if (!inclusive && node != null && comparator.compare(node.key, from) == 0) {
+      node = node.next(0);
+    } // if
+    while (node != null && (to == null || comparator.compare(node.key, to) < 0)) {
+      if (keys.size() == max) {
+        return true;
+      } // if
+      Version<V> ver = node.value.at(readVersion);
+      if (ver != null && !ver.removed) {
+        keys.add(node.key);
+        vals.add(ver.value);
+      } // if
+      node = node.next(0);
+    } // while
+    return false;
+  } // collect(K, boolean, K, long, int, ArrayList, ArrayList)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A consistent, read-only view of the map as of one version.
+   */
+  public class Snapshot implements AutoCloseable {
+
+    /**
+     * The version this snapshot sees.
+     */
+    final long version;
+
+    /**
+     * Whether the snapshot has been closed.
+     */
+    boolean closed = false;
+
+    Snapshot(long version) {
+      this.version = version;
+    } // Snapshot(long)
+
+    /**
+     * Get the version this snapshot sees.
+     */
+    public long version() {
+      return this.version;
+    } // version()
+
+    /**
+     * Get the value associated with key in this snapshot.
+     */
+    public V get(K key) {
+      check();
+      return VersionedSkipList.this.get(key, this.version);
+    } // get(K)
+
+    /**
+     * Apply an action to each key/value pair in this snapshot.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+      forEachInRange(null, null, action);
+    } // forEach(BiConsumer)
+
+    /**
+     * Apply an action to each key/value pair in this snapshot with from <= key < to.
+     */
+    public void forEachInRange(K from, K to, BiConsumer<? super K, ? super V> action) {
+      check();
+      VersionedSkipList.this.forEachInRange(from, to, this.version, action);
+    } // forEachInRange(K, K, BiConsumer)
+
+    /**
+     * Release the snapshot, so the versions only it could see can be collected.
+     */
+    @Override
+    public void close() {
+      if (!this.closed) {
+        this.closed = true;
+        release(this.version);
+      } // if
+    } // close()
+
+    /**
+     * Make sure the snapshot is still open.
+     */
+    void check() {
+      if (this.closed) {
+        throw new IllegalStateException("snapshot closed");
+      } // if
+    } // check()
+  } // class Snapshot
+
+} // class VersionedSkipList
+
+/**
+ * One version of the value of a key.
+ */
+class Version<V> {
+
+  /**
+   * The version number at which this value was written.
+   */
+  final long version;
+
+  /**
+   * The value (null for a removal).
+   */
+  final V value;
+
+  /**
+   * Whether this version removed the key.
+   */
+  final boolean removed;
+
+  /**
+   * The next older version.
+   */
+  Version<V> older;
+
+  Version(long version, V value, boolean removed, Version<V> older) {
+    this.version = version;
+    this.value = value;
+    this.removed = removed;
+    this.older = older;
+  } // Version(long, V, boolean, Version)
+
+  /**
+   * Find the newest version visible at readVersion (or null, if there is none).
+   */
+  Version<V> at(long readVersion) {
+    Version<V> ver = this;
+    while (ver != null && ver.version > readVersion) {
+      ver = ver.older;
+    } // while
+    return ver;
+  } // at(long)
+
+} // class Version
@@ -0,0 +1,86 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Test;
+
+/**
+ * Tests of multi-version skip lists.
+ */
+public class VersionedSkipListTests extends SimpleMapTests<Integer> {
+
+  @Override
+  SimpleMap<Integer, String> newMap() {
+    return new VersionedSkipList<Integer, String>((i, j) -> i - j);
+  } // newMap()
+
+  @Override
+  Integer key(int i) {
+    return i;
+  } // key(int)
+
+  @Test
+  public void testLatestVersion() {
+    VersionedSkipList<Integer, String> vl = new VersionedSkipList<Integer, String>((i, j) -> i - j);
+    assertNull(vl.set(1, "one"));
+    assertNull(vl.set(2, "two"));
+    assertEquals("one", vl.set(1, "uno"));
+    assertEquals("uno", vl.get(1));
+    assertEquals("two", vl.remove(2));
+    assertNull(vl.remove(2));
+    assertNull(vl.get(2));
+    assertFalse(vl.containsKey(2));
+    assertEquals(1, vl.size());
+    assertNull(vl.set(2, "dos"));
+    assertEquals(2, vl.size());
+  } // testLatestVersion()
+
+  @Test
+  public void testSnapshotIsolation() {
+    VersionedSkipList<Integer, String> vl = new VersionedSkipList<Integer, String>((i, j) -> i - j);
+    for (int i = 0; i < 10; i++) {
+      vl.set(i, "v" + i);
+    } // for
+    VersionedSkipList<Integer, String>.Snapshot snap = vl.snapshot();
+    vl.set(3, "changed");
+    vl.remove(4);
+    vl.set(20, "new");
+    assertEquals("v3", snap.get(3));
+    assertEquals("v4", snap.get(4));
+    assertNull(snap.get(20));
+    assertEquals("changed", vl.get(3));
+
+    ArrayList<Integer> seen = new ArrayList<Integer>();
+    snap.forEachInRange(2, 6, (k, v) -> seen.add(k));
+    assertEquals("[2, 3, 4, 5]", seen.toString());
+    snap.close();
+  } // testSnapshotIsolation()
+
+  @Test
+  public void testGarbageCollection() {
+    VersionedSkipList<Integer, String> vl = new VersionedSkipList<Integer, String>((i, j) -> i - j);
+    vl.set(1, "a");
+    VersionedSkipList<Integer, String>.Snapshot snap = vl.snapshot();
+    for (int i = 0; i < 10; i++) {
+      vl.set(1, "b" + i);
+    } // for
+    vl.gc();
+    // The snapshot still needs "a"
+    assertEquals("a", snap.get(1));
+    assertEquals(11, vl.retainedVersions());
+    snap.close();
+    vl.gc();
+    assertEquals(1, vl.retainedVersions());
+    vl.remove(1);
+    vl.gc();
+    assertEquals(0, vl.retainedVersions());
+    assertEquals(0, vl.chains.size());
+  } // testGarbageCollection()
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosedSnapshot() {
+    VersionedSkipList<Integer, String> vl = new VersionedSkipList<Integer, String>((i, j) -> i - j);
+    VersionedSkipList<Integer, String>.Snapshot snap = vl.snapshot();
+    snap.close();
+    snap.get(1);
+  } // testClosedSnapshot()
+
+} // class VersionedSkipListTests
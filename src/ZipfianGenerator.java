@@ -0,0 +1,66 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates integers in [0, n) following a Zipfian distribution: the probability of k is
+ * proportional to 1/(k+1)^theta, so 0 is the most popular value.  Uses a precomputed table
+ * of the cumulative distribution, so any theta (including theta > 1) works.
+ */
+public class ZipfianGenerator {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * cdf[k] is the probability of a value <= k.
+   */
+  final double[] cdf;
+
+  /**
+   * The source of randomness.
+   */
+  final Random random;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a generator for values in [0, n) with skew theta.
+   */
+  public ZipfianGenerator(int n, double theta, Random random) {
+    this.cdf = new double[n];
+    double sum = 0;
+    for (int k = 0; k < n; k++) {
+      sum += 1.0 / Math.pow(k + 1, theta);
+      this.cdf[k] = sum;
+    } // for
+    for (int k = 0; k < n; k++) {
+      this.cdf[k] /= sum;
+    } // for
+    this.random = random;
+  } // ZipfianGenerator(int, double, Random)
+
+  /**
+   * Create a generator with the same distribution as other but its own source of randomness
+   * (so that each thread can have one without rebuilding the table).
+   */
+  public ZipfianGenerator(ZipfianGenerator other, Random random) {
+    this.cdf = other.cdf;
+    this.random = random;
+  } // ZipfianGenerator(ZipfianGenerator, Random)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the next value.
+   */
+  public int next() {
+    int i = Arrays.binarySearch(this.cdf, this.random.nextDouble());
+    return Math.min((i >= 0) ? i : -i - 1, this.cdf.length - 1);
+  } // next()
+
+} // class ZipfianGenerator